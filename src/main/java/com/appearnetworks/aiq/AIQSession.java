@@ -0,0 +1,173 @@
+package com.appearnetworks.aiq;
+
+import org.apache.http.client.HttpClient;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+
+/**
+ * Configuration, HTTP client and access token shared by all goals executed within one Maven invocation.
+ *
+ * Maven keeps the plugin class realm for the whole build, so sessions registered here are created by the first goal
+ * that needs them and borrowed by every following goal of the reactor, instead of each goal re-reading the properties
+ * file, creating its own client and authenticating again. Sessions are safe to use from parallel module builds.
+ *
+ * A class realm may outlive the build, such as in a build daemon or an embedded Maven, so the sessions of a build are
+ * dropped when a goal of another build opens a session, and a session is opened again when its properties file has
+ * changed since it was read.
+ */
+public class AIQSession {
+
+    /**
+     * Open sessions keyed by integration supervisor URL and canonical properties file path.
+     */
+    private static final Map<String, AIQSession> SESSIONS = new HashMap<>();
+
+    /**
+     * The build of the open sessions.
+     */
+    private static Object currentBuild;
+
+    private final URL url;
+
+    private final String aiqUrl;
+
+    private final String orgName;
+
+    private final String username;
+
+    private final String password;
+
+    private final HttpClient client;
+
+    private final long propertiesModified;
+
+    private AccessToken accessToken;
+
+    private AIQSession(final URL url,
+                       final Properties properties,
+                       final long propertiesModified,
+                       final HttpClient client) {
+        this.url = url;
+        this.propertiesModified = propertiesModified;
+        this.aiqUrl = properties.getProperty("aiq.url");
+        this.orgName = properties.getProperty("aiq.orgname");
+        this.username = properties.getProperty("aiq.username");
+        this.password = properties.getProperty("aiq.password");
+        this.client = client;
+    }
+
+    /**
+     * Returns the session of given build for given integration supervisor and properties file, opening it if needed.
+     *
+     * @param build identifies the build, such as its start time, or null if not known.
+     * @param url URL to the integration supervisor, may be null.
+     * @param propertiesPath path to the file with the server properties, must not be null.
+     * @param pool pool of connections used by the session client, must not be null.
+     * @return the session, will not be null.
+     * @throws IOException if the properties file could not be loaded.
+     */
+    public static synchronized AIQSession open(final Object build,
+                                               final URL url,
+                                               final String propertiesPath,
+                                               final HttpConnectionPool pool) throws IOException {
+        if (propertiesPath == null) {
+            throw new IOException("Properties path is not set");
+        }
+
+        if (!Objects.equals(build, currentBuild)) {
+            SESSIONS.clear();
+            currentBuild = build;
+        }
+
+        final File file = new File(propertiesPath);
+        final String key = url + "\n" + file.getCanonicalPath();
+        final long modified = file.lastModified();
+        AIQSession session = SESSIONS.get(key);
+        if (session == null || session.propertiesModified != modified) {
+            final Properties properties = PropertiesUtil.getInstance().loadProperties(propertiesPath);
+            session = new AIQSession(url, properties, modified, pool.getClient());
+            SESSIONS.put(key, session);
+        }
+        return session;
+    }
+
+    /**
+     * @return URL to the integration supervisor, may be null.
+     */
+    public URL getUrl() {
+        return url;
+    }
+
+    /**
+     * @return URL of the server with which to authenticate, may be null if not configured.
+     */
+    public String getAiqUrl() {
+        return aiqUrl;
+    }
+
+    /**
+     * @return the name of the organization, may be null if not configured.
+     */
+    public String getOrgName() {
+        return orgName;
+    }
+
+    /**
+     * @return the name of the user, may be null if not configured.
+     */
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * @return the password of the user, may be null if not configured.
+     */
+    public String getPassword() {
+        return password;
+    }
+
+    /**
+     * @return pooled HTTP client shared by all goals, will not be null.
+     */
+    public HttpClient getClient() {
+        return client;
+    }
+
+    /**
+     * Returns the access token of this session if it is not about to expire.
+     *
+     * @return access token, or null if the session has no valid token.
+     */
+    public synchronized AccessToken getAccessToken() {
+        if (accessToken != null && !accessToken.isValidFor(TokenCache.EXPIRY_MARGIN)) {
+            accessToken = null;
+        }
+        return accessToken;
+    }
+
+    /**
+     * Sets the access token of this session.
+     *
+     * @param accessToken access token, must not be null.
+     */
+    public synchronized void setAccessToken(final AccessToken accessToken) {
+        this.accessToken = accessToken;
+    }
+
+    /**
+     * Drops given access token from this session unless it has already been replaced by another one.
+     *
+     * @param accessToken the rejected access token, must not be null.
+     */
+    public synchronized void invalidateAccessToken(final AccessToken accessToken) {
+        if (this.accessToken == accessToken) {
+            this.accessToken = null;
+        }
+    }
+}
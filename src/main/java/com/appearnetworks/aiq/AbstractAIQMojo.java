@@ -14,14 +14,17 @@ import org.apache.http.client.HttpClient;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.utils.URIBuilder;
 import org.apache.http.entity.ContentType;
-import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.EntityUtils;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Parameter;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
@@ -31,7 +34,9 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLEncoder;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public abstract class AbstractAIQMojo extends AbstractMojo {
 
@@ -50,6 +55,11 @@ public abstract class AbstractAIQMojo extends AbstractMojo {
      */
     private static final String ACCESS_TOKEN_FIELD = "access_token";
 
+    /**
+     * The name of the response document field that stores the lifetime of the access token in seconds.
+     */
+    private static final String EXPIRES_IN_FIELD = "expires_in";
+
     /**
      * Prefix used in requests to the integration supervisor.
      */
@@ -60,6 +70,78 @@ public abstract class AbstractAIQMojo extends AbstractMojo {
      */
     private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
+    /**
+     * On-disk cache of access tokens shared by all goals.
+     */
+    private static final TokenCache TOKEN_CACHE = new TokenCache();
+
+    /**
+     * URL to the integration supervisor.
+     */
+    @Parameter(property = "url")
+    private URL url;
+
+    /**
+     * Path to the file with the server URL, organization name and user credentials.
+     */
+    @Parameter(property = "propertiesPath")
+    private String propertiesPath;
+
+    /**
+     * Maximum number of pooled connections.
+     */
+    @Parameter(property = "http.maxConnections", defaultValue = "20")
+    private int maxConnections = 20;
+
+    /**
+     * Maximum number of pooled connections to a single host.
+     */
+    @Parameter(property = "http.maxConnectionsPerRoute", defaultValue = "8")
+    private int maxConnectionsPerRoute = 8;
+
+    /**
+     * Number of seconds to keep connections alive when the server does not specify it.
+     */
+    @Parameter(property = "http.keepAlive", defaultValue = "30")
+    private int keepAlive = 30;
+
+    /**
+     * Number of seconds after which idle pooled connections are closed.
+     */
+    @Parameter(property = "http.idleTimeout", defaultValue = "60")
+    private int idleTimeout = 60;
+
+    /**
+     * Number of seconds to wait for a connection to the server to be established, or 0 to wait forever.
+     */
+    @Parameter(property = "http.connectTimeout", defaultValue = "30")
+    private int connectTimeout = 30;
+
+    /**
+     * Number of seconds to wait for data from the server, or 0 to wait forever.
+     */
+    @Parameter(property = "http.socketTimeout", defaultValue = "300")
+    private int socketTimeout = 300;
+
+    /**
+     * Number of seconds to wait for a pooled connection when all connections to the server are in use, or 0 to wait
+     * forever.
+     */
+    @Parameter(property = "http.connectionRequestTimeout", defaultValue = "60")
+    private int connectionRequestTimeout = 60;
+
+    /**
+     * Whether access tokens should be cached on disk between goals and builds.
+     */
+    @Parameter(property = "tokenCache", defaultValue = "true")
+    private boolean tokenCache = true;
+
+    /**
+     * The running build, whose goals share the sessions.
+     */
+    @Parameter(defaultValue = "${session}", readonly = true)
+    private MavenSession mavenSession;
+
     /**
      * Builds an URI to the integration supervisor for the given organization and action name.
      *
@@ -101,49 +183,201 @@ public abstract class AbstractAIQMojo extends AbstractMojo {
     }
 
     /**
-     * Authenticates and authorizes given user within the server and adds authentication header to the given request.
+     * Returns the session shared by all goals using the configured integration supervisor and properties file.
+     *
+     * @return the session, will not be null.
+     * @throws MojoFailureException in case when the properties file could not be loaded.
+     */
+    protected AIQSession getSession() throws MojoFailureException {
+        return getSession(null, null);
+    }
+
+    /**
+     * Returns the session shared by all goals using given integration supervisor and properties file.
+     *
+     * @param url URL to the integration supervisor, or null for the configured one.
+     * @param propertiesPath path to the properties file, or null for the configured one.
+     * @return the session, will not be null.
+     * @throws MojoFailureException in case when the properties file could not be loaded.
+     */
+    protected AIQSession getSession(final URL url, final String propertiesPath) throws MojoFailureException {
+        try {
+            return AIQSession.open(mavenSession != null ? mavenSession.getStartTime() : null,
+                                   url != null ? url : this.url,
+                                   propertiesPath != null ? propertiesPath : this.propertiesPath,
+                                   getConnectionPool());
+        } catch (IOException e) {
+            throw new MojoFailureException("Could not load properties file");
+        }
+    }
+
+    /**
+     * @return the running build, or null if not known.
+     */
+    protected MavenSession getMavenSession() {
+        return mavenSession;
+    }
+
+    /**
+     * Returns the connection pool shared by all goals, creating it on first use and applying the configured settings.
+     *
+     * @return the connection pool, will not be null.
+     */
+    protected HttpConnectionPool getConnectionPool() {
+        return HttpConnectionPool.shared(maxConnections,
+                                         maxConnectionsPerRoute,
+                                         keepAlive * 1000L,
+                                         idleTimeout * 1000L,
+                                         connectTimeout * 1000,
+                                         socketTimeout * 1000,
+                                         connectionRequestTimeout * 1000L);
+    }
+
+    /**
+     * Raises the connection limits of the pool so that every log streamed at once holds its own connection and one
+     * more connection per supervisor is left for authentication and polls, as a log waiting for a connection held by
+     * another stream would wait forever.
+     *
+     * @param urls URLs to the integration supervisors of the streamed logs, one per log, must not be null.
+     */
+    protected void reserveStreamConnections(final List<URL> urls) {
+        final Map<String, Integer> streams = new HashMap<>();
+        int perRoute = 0;
+        for (URL url : urls) {
+            final String route = url == null ? "" : url.getProtocol() + "://" + url.getHost() + ":" + url.getPort();
+            final Integer count = streams.get(route);
+            final int routeStreams = count == null ? 1 : count + 1;
+            streams.put(route, routeStreams);
+            perRoute = Math.max(perRoute, routeStreams + 1);
+        }
+
+        final HttpConnectionPool pool = getConnectionPool();
+        if (perRoute > pool.getMaxPerRoute()) {
+            getLog().info("Raising the connection limit per supervisor to " + perRoute + " for " + urls.size() +
+                          " streamed logs");
+        }
+        pool.ensureCapacity(perRoute, urls.size() + streams.size());
+    }
+
+    /**
+     * Adds authentication header with the access token of given session to the given request.
      *
      * @param request The request to which to add the authentication header, must not be null.
+     * @param session session on behalf of which to authenticate, must not be null.
+     * @return access token added to the request, will not be null.
+     * @throws MojoExecutionException in case when provided data is invalid.
+     * @throws MojoFailureException in case when authentication fails.
+     */
+    protected AccessToken addAuthenticationHeader(final HttpRequest request, final AIQSession session)
+            throws MojoExecutionException, MojoFailureException {
+        final AccessToken token = fetchAccessToken(session);
+        request.setHeader(HttpHeaders.AUTHORIZATION, "BEARER " + token.getValue());
+        return token;
+    }
+
+    /**
+     * Returns the access token of given session, authenticating and authorizing the session user within the server
+     * if the session has no valid token yet. Concurrent callers sharing the session authenticate only once.
+     *
+     * @param session session for which to return the token, must not be null.
+     * @return access token for the session user, will not be null.
+     * @throws MojoExecutionException in case when provided data is invalid.
+     * @throws MojoFailureException in case when authentication fails.
+     */
+    protected AccessToken fetchAccessToken(final AIQSession session)
+            throws MojoExecutionException, MojoFailureException {
+        synchronized (session) {
+            AccessToken token = session.getAccessToken();
+            if (token == null) {
+                token = fetchAccessToken(session.getClient(),
+                                         session.getAiqUrl(),
+                                         session.getUsername(),
+                                         session.getPassword(),
+                                         session.getOrgName());
+                session.setAccessToken(token);
+            }
+            return token;
+        }
+    }
+
+    /**
+     * Authenticates and authorizes given user within the server and returns the access token associated with the
+     * user session.
+     *
+     * @param client client with which to perform the authentication requests, must not be null.
      * @param baseUrl URL of the server with which to authenticate, must not be null.
      * @param username The name of the user which to authenticate, must not be null.
      * @param password The password of the user to authenticate, must not be null.
-     * @param orgName The name of the organization to which the given user belogs, must not be null.
+     * @param orgName The name of the organization to which the given user belongs, must not be null.
+     * @return access token for given user, will not be null.
      * @throws MojoExecutionException in case when provided data is invalid.
      * @throws MojoFailureException in case when authentication fails.
      */
-    protected void addAuthenticationHeader(final HttpRequest request,
+    protected AccessToken fetchAccessToken(final HttpClient client,
                                            final String baseUrl,
                                            final String username,
                                            final String password,
                                            final String orgName)
             throws MojoExecutionException, MojoFailureException {
-        request.setHeader(
-                HttpHeaders.AUTHORIZATION,
-                "BEARER " + fetchAccessToken(baseUrl, username, password, orgName));
+        validateCredentials(baseUrl, username, password, orgName);
+
+        if (tokenCache) {
+            try {
+                final AccessToken token = TOKEN_CACHE.get(baseUrl, orgName, username);
+                if (token != null) {
+                    getLog().debug("Using cached access token of user [" + username + "] in org [" + orgName + "]");
+                    return token;
+                }
+            } catch (IOException e) {
+                getLog().warn("Could not read the access token cache: " + e.getMessage());
+            }
+        }
+
+        return authenticate(client, baseUrl, username, password, orgName);
     }
 
     /**
-     * Authenticates and authorizes given user within the server and returns the access token associated with the
-     * user session.
+     * Authenticates the user of given session anew and replaces the access token of the session and of the on-disk
+     * cache with the freshly issued one. The session is not locked while authenticating, so that requests on behalf of
+     * the session keep using the current token in the meantime.
+     *
+     * @param session session for which to refresh the token, must not be null.
+     * @return the new access token, will not be null.
+     * @throws MojoExecutionException in case when provided data is invalid.
+     * @throws MojoFailureException in case when authentication fails.
+     */
+    protected AccessToken refreshAccessToken(final AIQSession session)
+            throws MojoExecutionException, MojoFailureException {
+        validateCredentials(session.getAiqUrl(), session.getUsername(), session.getPassword(), session.getOrgName());
+
+        final AccessToken token = authenticate(session.getClient(),
+                                               session.getAiqUrl(),
+                                               session.getUsername(),
+                                               session.getPassword(),
+                                               session.getOrgName());
+        session.setAccessToken(token);
+        return token;
+    }
+
+    /**
+     * Authenticates and authorizes given user within the server, bypassing the on-disk cache, and stores the issued
+     * access token in the cache.
      *
+     * @param client client with which to perform the authentication requests, must not be null.
      * @param baseUrl URL of the server with which to authenticate, must not be null.
      * @param username The name of the user which to authenticate, must not be null.
      * @param password The password of the user to authenticate, must not be null.
      * @param orgName The name of the organization to which the given user belongs, must not be null.
-     * @return access token string for given user, will not be null.
+     * @return access token for given user, will not be null.
      * @throws MojoExecutionException in case when provided data is invalid.
      * @throws MojoFailureException in case when authentication fails.
      */
-    protected String fetchAccessToken(final String baseUrl,
-                                      final String username,
-                                      final String password,
-                                      final String orgName)
+    private AccessToken authenticate(final HttpClient client,
+                                     final String baseUrl,
+                                     final String username,
+                                     final String password,
+                                     final String orgName)
             throws MojoExecutionException, MojoFailureException {
-        validate("URL", baseUrl);
-        validate("username", username);
-        validate("password", password);
-        validate("organization", orgName);
-
         final JsonFactory factory = OBJECT_MAPPER.getFactory();
 
         HttpUriRequest request;
@@ -154,7 +388,7 @@ public abstract class AbstractAIQMojo extends AbstractMojo {
             throw new MojoExecutionException(e.getMessage());
         }
 
-        final String tokenUrl = requestAndGetValue(factory, request, "links", "token");
+        final String tokenUrl = requestAndGetValue(client, factory, request, "links", "token");
 
         try {
             final URL url = new URL(tokenUrl);
@@ -168,7 +402,84 @@ public abstract class AbstractAIQMojo extends AbstractMojo {
 
         getLog().debug("Authenticating user [" + username + "] in org [" + orgName + "]");
 
-        return requestAndGetValue(factory, request, ACCESS_TOKEN_FIELD);
+        final JsonNode document = requestAndGetDocument(client, factory, request);
+
+        final long expiresIn = document.path(EXPIRES_IN_FIELD).asLong(0);
+        final AccessToken token = new AccessToken(
+                getValue(document, ACCESS_TOKEN_FIELD),
+                expiresIn > 0 ? System.currentTimeMillis() + expiresIn * 1000 : 0);
+
+        if (tokenCache) {
+            try {
+                TOKEN_CACHE.put(baseUrl, orgName, username, token);
+            } catch (IOException e) {
+                getLog().warn("Could not write the access token cache: " + e.getMessage());
+            }
+        }
+
+        return token;
+    }
+
+    /**
+     * Drops given access token from the session and from the on-disk cache, so that the next call to
+     * {@link #fetchAccessToken(AIQSession)} authenticates with the server again.
+     *
+     * @param session session which holds the token, must not be null.
+     * @param token the token rejected by the server, must not be null.
+     */
+    protected void invalidateAccessToken(final AIQSession session, final AccessToken token) {
+        session.invalidateAccessToken(token);
+        if (tokenCache &&
+            session.getAiqUrl() != null &&
+            session.getUsername() != null &&
+            session.getOrgName() != null) {
+            getLog().debug("Invalidating cached access token of user [" + session.getUsername() +
+                           "] in org [" + session.getOrgName() + "]");
+            TOKEN_CACHE.invalidate(session.getAiqUrl(), session.getOrgName(), session.getUsername());
+        }
+    }
+
+    /**
+     * Executes given request on behalf of the user of given session. If the server rejects the access token with
+     * 401 Unauthorized the token is invalidated and the request is retried once with a freshly issued token.
+     *
+     * @param session session on behalf of which to execute the request, must not be null.
+     * @param request request to execute, must not be null and its entity, if any, must be repeatable.
+     * @return response from the server, will not be null.
+     * @throws MojoExecutionException in case when provided data is invalid.
+     * @throws MojoFailureException in case when authentication fails.
+     * @throws IOException in case when the request fails.
+     */
+    protected HttpResponse executeAuthenticated(final AIQSession session, final HttpRequestBase request)
+            throws MojoExecutionException, MojoFailureException, IOException {
+        final AccessToken token = addAuthenticationHeader(request, session);
+
+        final HttpResponse response = session.getClient().execute(request);
+        if (response.getStatusLine().getStatusCode() != HttpStatus.SC_UNAUTHORIZED) {
+            return response;
+        }
+
+        EntityUtils.consume(response.getEntity());
+        invalidateAccessToken(session, token);
+        request.reset();
+
+        addAuthenticationHeader(request, session);
+        return session.getClient().execute(request);
+    }
+
+    /**
+     * Validates given user credentials.
+     *
+     * @throws MojoExecutionException when validation fails.
+     */
+    private static void validateCredentials(final String baseUrl,
+                                            final String username,
+                                            final String password,
+                                            final String orgName) throws MojoExecutionException {
+        validate("URL", baseUrl);
+        validate("username", username);
+        validate("password", password);
+        validate("organization", orgName);
     }
 
     /**
@@ -222,6 +533,7 @@ public abstract class AbstractAIQMojo extends AbstractMojo {
     /**
      * Performs given request and retrieves value of a field identified by given path from the response.
      *
+     * @param client client with which to perform the request, must not be null.
      * @param factory used to create a JSON parser, must not be null.
      * @param request request to perform, must not be null.
      * @param path path to the field to retrieve from the response, must not be null and must exist within the response
@@ -230,65 +542,119 @@ public abstract class AbstractAIQMojo extends AbstractMojo {
      * @throws MojoExecutionException in case when provided data is invalid.
      * @throws MojoFailureException in case when the request fails.
      */
-    private static String requestAndGetValue(final JsonFactory factory,
+    private static String requestAndGetValue(final HttpClient client,
+                                             final JsonFactory factory,
                                              final HttpUriRequest request,
                                              final String... path)
         throws MojoExecutionException, MojoFailureException {
+        return getValue(requestAndGetDocument(client, factory, request), path);
+    }
+
+    /**
+     * Performs given request and parses the response document.
+     *
+     * @param client client with which to perform the request, must not be null.
+     * @param factory used to create a JSON parser, must not be null.
+     * @param request request to perform, must not be null.
+     * @return root node of the response document, will not be null.
+     * @throws MojoExecutionException in case when provided data is invalid.
+     * @throws MojoFailureException in case when the request fails.
+     */
+    private static JsonNode requestAndGetDocument(final HttpClient client,
+                                                  final JsonFactory factory,
+                                                  final HttpUriRequest request)
+        throws MojoExecutionException, MojoFailureException {
         final HttpResponse response;
         try {
-            final HttpClient client = new DefaultHttpClient();
             response = client.execute(request);
         } catch (IOException e) {
             throw new MojoFailureException(e.getMessage());
         }
 
-        final int statusCode = response.getStatusLine().getStatusCode();
-        if (statusCode != HttpStatus.SC_OK) {
-            final String message;
-            if (statusCode == HttpStatus.SC_BAD_REQUEST) {
-                message = getValue(response, factory, ERROR_DESCRIPTION_FIELD);
-            } else {
-                message = response.getStatusLine().getReasonPhrase();
+        try {
+            final int statusCode = response.getStatusLine().getStatusCode();
+            if (statusCode != HttpStatus.SC_OK) {
+                final String message;
+                if (statusCode == HttpStatus.SC_BAD_REQUEST) {
+                    message = getValue(readDocument(response, factory), ERROR_DESCRIPTION_FIELD);
+                } else {
+                    message = response.getStatusLine().getReasonPhrase();
+                }
+
+                throw new MojoFailureException(
+                        "Failed to authenticate, the status code is [" +
+                        statusCode +
+                        "] and error message is [" +
+                        message + "]");
             }
 
-            throw new MojoFailureException(
-                    "Failed to authenticate, the status code is [" +
-                    statusCode +
-                    "] and error message is [" +
-                    message + "]");
+            return readDocument(response, factory);
+        } finally {
+            consume(response);
+        }
+    }
+
+    /**
+     * Fully consumes the entity of given response, so that the underlying connection can be reused.
+     *
+     * @param response response to consume, may be null.
+     */
+    protected static void consume(final HttpResponse response) {
+        if (response == null) {
+            return;
         }
 
-        return getValue(response, factory, path);
+        try {
+            EntityUtils.consume(response.getEntity());
+        } catch (IOException ignore) {
+            // the connection is discarded instead of reused
+        }
     }
 
     /**
-     * Returns value of a response field with given path.
+     * Reads the response document.
      *
-     * @param response response from which to read the field, must not be nil and must represent a valid JSON document.
+     * @param response response from which to read the document, must not be nil and must represent a valid JSON
+     *                 document.
      * @param factory factory used to create a JSON parser, must not be null.
-     * @param path path the field for which to return the value, must not be null and must identify an existing field
-     *             within the response document.
-     * @return string value of the field, will not be null.
-     * @throws MojoExecutionException if the field could not be read from the response.
+     * @return root node of the document, will not be null.
+     * @throws MojoExecutionException if the document could not be read from the response.
      */
-    private static String getValue(final HttpResponse response, final JsonFactory factory, final String ... path)
+    private static JsonNode readDocument(final HttpResponse response, final JsonFactory factory)
             throws MojoExecutionException {
         try {
             final JsonParser parser = factory.createParser(response.getEntity().getContent());
-
-            JsonNode node = parser.readValueAsTree();
-            for (final String field : path) {
-                node = node.path(field);
+            try {
+                final JsonNode node = parser.readValueAsTree();
+                return node == null ? OBJECT_MAPPER.createObjectNode() : node;
+            } finally {
+                parser.close();
             }
-
-            if (node.isMissingNode()) {
-                throw new MojoExecutionException("Field not found in the response");
-            }
-
-            return node.textValue();
         } catch (IOException e) {
             throw new MojoExecutionException(e.getMessage());
         }
     }
 
+    /**
+     * Returns value of a document field with given path.
+     *
+     * @param document document from which to read the field, must not be null.
+     * @param path path the field for which to return the value, must not be null and must identify an existing field
+     *             within the document.
+     * @return string value of the field, will not be null.
+     * @throws MojoExecutionException if the field could not be found in the document.
+     */
+    private static String getValue(final JsonNode document, final String ... path) throws MojoExecutionException {
+        JsonNode node = document;
+        for (final String field : path) {
+            node = node.path(field);
+        }
+
+        if (node.isMissingNode()) {
+            throw new MojoExecutionException("Field not found in the response");
+        }
+
+        return node.textValue();
+    }
+
 }
@@ -0,0 +1,39 @@
+package com.appearnetworks.aiq;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+
+import java.io.IOException;
+
+public abstract class AbstractCleanServerMojo extends AbstractAIQMojo {
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        final AIQSession session = getSession();
+        final String org = session.getOrgName();
+
+        getLog().info("Cleaning data for org [" + org + "]");
+
+        final HttpPost post = new HttpPost(buildIntegrationURI(session.getUrl(), org, "server.clean"));
+
+        try {
+            final HttpResponse response = executeAuthenticated(session, post);
+            try {
+                if(response.getStatusLine().getStatusCode() == HttpStatus.SC_OK) {
+                    getLog().info("Data cleaned successfully.");
+                } else {
+                    throw new MojoFailureException("Failed to clean data, the status code is [" +
+                            response.getStatusLine().getStatusCode() + "] and error message is [" +
+                            response.getStatusLine().getReasonPhrase() + "]");
+                }
+            } finally {
+                consume(response);
+            }
+        } catch (IOException e) {
+            throw new MojoFailureException(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package com.appearnetworks.aiq;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.mime.MultipartEntity;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+
+public abstract class AbstractDeployMojo extends AbstractAIQMojo {
+    @Parameter(property = "deploy.file")
+    private File file;
+
+    /**
+     * Whether to deploy the artifact even if the same content has already been deployed to the organization.
+     */
+    @Parameter(property = "deploy.force", defaultValue = "false")
+    private boolean force;
+
+    /**
+     * Whether to upload the artifact in chunks which are retried individually and resumed after an interruption.
+     */
+    @Parameter(property = "deploy.chunked", defaultValue = "false")
+    private boolean chunked;
+
+    /**
+     * Size of a chunk in bytes when uploading in chunks.
+     */
+    @Parameter(property = "deploy.chunkSize", defaultValue = "8388608")
+    private long chunkSize = 8 * 1024 * 1024;
+
+    /**
+     * Number of chunks uploaded concurrently.
+     */
+    @Parameter(property = "deploy.parallelUploads", defaultValue = "4")
+    private int parallelUploads = 4;
+
+    /**
+     * Number of times failed chunks are retried before the upload fails.
+     */
+    @Parameter(property = "deploy.chunkRetries", defaultValue = "3")
+    private int chunkRetries = 3;
+
+    /**
+     * Whether to compress the upload with gzip on the fly.
+     */
+    @Parameter(property = "deploy.compress", defaultValue = "false")
+    private boolean compress;
+
+    /**
+     * Whether to upload only the entries which changed since the last deployment, falling back to a full upload if
+     * the server rejects the patch.
+     */
+    @Parameter(property = "deploy.delta", defaultValue = "false")
+    private boolean delta;
+
+    /**
+     * Directory in which the module keeps the record of its last deployment.
+     */
+    @Parameter(defaultValue = "${project.build.directory}", readonly = true)
+    private File buildDirectory;
+
+    /**
+     * The name of the module, used in the deployment summary.
+     */
+    @Parameter(defaultValue = "${project.artifactId}", readonly = true)
+    private String moduleName;
+
+    /**
+     * The module being built.
+     */
+    @Parameter(defaultValue = "${project}", readonly = true)
+    private MavenProject project;
+
+    /**
+     * All modules of the reactor, used to log the deployment summary after the last deploying one.
+     */
+    @Parameter(defaultValue = "${reactorProjects}", readonly = true)
+    private List<MavenProject> reactorProjects;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        DeploymentSummary.Status status = DeploymentSummary.Status.FAILED;
+        try {
+            status = deployIfChanged();
+        } finally {
+            final MavenSession mavenSession = getMavenSession();
+            final int recorded = DeploymentSummary.record(mavenSession != null ? mavenSession.getStartTime() : null,
+                                                          moduleName != null ? moduleName : String.valueOf(file),
+                                                          status);
+            final int deploying = DeploymentSummary.countDeployingModules(goals(mavenSession), reactorProjects);
+            if (deploying >= 0 ? recorded >= deploying : isLastModule()) {
+                DeploymentSummary.log(getLog());
+            }
+        }
+    }
+
+    /**
+     * @return the goals given on the command line, which deploy every module when they include a deployment goal, or
+     * null if not known.
+     */
+    @SuppressWarnings("unchecked")
+    private static List<String> goals(final MavenSession mavenSession) {
+        return mavenSession != null ? (List<String>) mavenSession.getGoals() : null;
+    }
+
+    /**
+     * @return whether this module is the last of the reactor, or the reactor is unknown.
+     */
+    private boolean isLastModule() {
+        return reactorProjects == null || reactorProjects.isEmpty() ||
+               reactorProjects.get(reactorProjects.size() - 1) == project;
+    }
+
+    /**
+     * Deploys the artifact unless it is unchanged since the last deployment to the organization.
+     *
+     * @return outcome of the deployment, will not be null.
+     * @throws MojoExecutionException in case when provided data is invalid.
+     * @throws MojoFailureException in case when the deployment fails.
+     */
+    private DeploymentSummary.Status deployIfChanged() throws MojoExecutionException, MojoFailureException {
+        final AIQSession session = getSession();
+        final String org = session.getOrgName();
+
+        if (file == null || !file.isFile()) {
+            throw new MojoExecutionException("Invalid deploy file [" + file + "]");
+        }
+
+        final String url = String.valueOf(session.getUrl());
+        final File moduleRecordFile = buildDirectory != null ? new File(buildDirectory, "aiq-deploy.properties") : null;
+        if (!force && moduleRecordFile != null) {
+            final DeploymentRecord moduleRecord = loadRecord(moduleRecordFile);
+            if (moduleRecord != null && moduleRecord.matchesFile(url, org, file)) {
+                getLog().info("Integration adapter [" + file + "] was not repackaged since it was deployed to org [" +
+                              org + "], skipping deployment");
+                return DeploymentSummary.Status.UNCHANGED;
+            }
+        }
+
+        final String digest;
+        try {
+            digest = DigestUtil.sha256Hex(file);
+        } catch (IOException e) {
+            throw new MojoFailureException("Could not read deploy file [" + file + "]: " + e.getMessage());
+        }
+
+        final File recordFile = DeploymentRecord.userFile(url, org);
+        final DeploymentRecord record = loadRecord(recordFile);
+        if (!force && record != null && record.matches(url, org, digest)) {
+            getLog().info("Integration adapter [" + file + "] is up to date in org [" + org + "], skipping deployment");
+            recordDeployment(moduleRecordFile, url, org, digest);
+            return DeploymentSummary.Status.UP_TO_DATE;
+        }
+
+        getLog().info("Deploy integration adapter [" + file + "] for org [" + org + "]");
+
+        final File indexFile = DeploymentRecord.userIndexFile(url, org);
+        final ZipIndex index = delta ? readIndex() : null;
+
+        if (index != null && record != null && deployDelta(session, org, record, indexFile, index, digest)) {
+            getLog().info("Integration is deployed successfully.");
+        } else if (chunked) {
+            if (chunkSize <= 0 || parallelUploads <= 0) {
+                throw new MojoExecutionException("Invalid chunk size or number of parallel uploads");
+            }
+            new ChunkedUploader(this, session, file, digest, chunkSize, parallelUploads, chunkRetries).upload();
+            getLog().info("Integration is deployed successfully.");
+        } else {
+            deploy(session, org);
+        }
+
+        recordDeployment(recordFile, url, org, digest);
+        recordDeployment(moduleRecordFile, url, org, digest);
+
+        // the index must always describe the recorded archive, so a stale one is dropped
+        indexFile.delete();
+        if (index != null) {
+            try {
+                index.store(indexFile);
+            } catch (IOException e) {
+                getLog().warn("Could not write entry index [" + indexFile + "]: " + e.getMessage());
+            }
+        }
+
+        return DeploymentSummary.Status.DEPLOYED;
+    }
+
+    /**
+     * Uploads only the entries which differ from the last deployed archive.
+     *
+     * @param session session on behalf of which to deploy, must not be null.
+     * @param org The name of the organization, must not be null.
+     * @param record record of the last deployment to the organization, must not be null.
+     * @param indexFile file with the entry index of the last deployed archive, must not be null.
+     * @param index entry index of the archive to deploy, must not be null.
+     * @param digest hex encoded SHA-256 digest of the archive to deploy, must not be null.
+     * @return true if the server applied the patch, false if a full upload is needed.
+     * @throws MojoExecutionException in case when provided data is invalid.
+     * @throws MojoFailureException in case when authentication fails.
+     */
+    private boolean deployDelta(final AIQSession session,
+                                final String org,
+                                final DeploymentRecord record,
+                                final File indexFile,
+                                final ZipIndex index,
+                                final String digest)
+            throws MojoExecutionException, MojoFailureException {
+        final ZipIndex base;
+        try {
+            base = ZipIndex.load(indexFile);
+        } catch (IOException e) {
+            getLog().warn("Could not read entry index [" + indexFile + "]: " + e.getMessage());
+            return false;
+        }
+
+        if (base == null) {
+            getLog().info("No entry index of the deployed integration adapter, uploading the full archive");
+            return false;
+        }
+
+        final List<String> changed = index.changedSince(base);
+        final List<String> removed = index.removedSince(base);
+        getLog().info("Uploading delta of " + changed.size() + " changed and " + removed.size() +
+                      " removed entries out of " + index.size());
+
+        final HttpPost post = new HttpPost(buildIntegrationURI(
+                session.getUrl(),
+                org,
+                "ia.deploy.delta",
+                new BasicNameValuePair("base", record.getDigest()),
+                new BasicNameValuePair("sha256", digest)));
+
+        final MultipartEntity entity = new MultipartEntity();
+        entity.addPart("patch", new DeltaPatchBody(file, record.getDigest(), digest, changed, removed));
+        post.setEntity(entity);
+
+        try {
+            final HttpResponse response = executeAuthenticated(session, post);
+            try {
+                if (response.getStatusLine().getStatusCode() == HttpStatus.SC_OK) {
+                    return true;
+                }
+
+                getLog().info("Delta rejected, the status code is [" +
+                              response.getStatusLine().getStatusCode() + "] and error message is [" +
+                              response.getStatusLine().getReasonPhrase() + "], uploading the full archive");
+                return false;
+            } finally {
+                consume(response);
+            }
+        } catch (IOException e) {
+            getLog().info("Delta upload failed [" + e.getMessage() + "], uploading the full archive");
+            return false;
+        }
+    }
+
+    /**
+     * Reads the entry index of the archive to deploy.
+     *
+     * @return the index, or null if the archive is not a valid zip archive.
+     */
+    private ZipIndex readIndex() {
+        try {
+            return ZipIndex.read(file);
+        } catch (IOException e) {
+            getLog().warn("Could not read entries of [" + file + "], delta deployment disabled: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Uploads the artifact in a single multipart request.
+     *
+     * @param session session on behalf of which to deploy, must not be null.
+     * @param org The name of the organization, must not be null.
+     * @throws MojoExecutionException in case when provided data is invalid.
+     * @throws MojoFailureException in case when the deployment fails.
+     */
+    private void deploy(final AIQSession session, final String org)
+            throws MojoExecutionException, MojoFailureException {
+        HttpPost post = new HttpPost(buildIntegrationURI(session.getUrl(), org, "ia.deploy"));
+
+        MultipartEntity entity = new MultipartEntity();
+        entity.addPart("file", new BufferedFileBody(file));
+
+        final GzipUploadEntity compressedEntity = compress ? new GzipUploadEntity(entity) : null;
+        post.setEntity(compressedEntity != null ? compressedEntity : entity);
+
+        try {
+            HttpResponse response = executeAuthenticated(session, post);
+            try {
+                if (compressedEntity != null) {
+                    logCompression(compressedEntity);
+                }
+
+                if (response.getStatusLine().getStatusCode() == HttpStatus.SC_OK) {
+                    getLog().info("Integration is deployed successfully.");
+                } else {
+                    throw new MojoFailureException("Failed to deploy integration adapter, the status code is [" +
+                            response.getStatusLine().getStatusCode() + "] and error message is [" +
+                            response.getStatusLine().getReasonPhrase() + "]");
+                }
+            } finally {
+                consume(response);
+            }
+        } catch (IOException e) {
+            throw new MojoFailureException(e.getMessage());
+        }
+    }
+
+    /**
+     * Logs the compression ratio and the effective throughput of a compressed upload.
+     *
+     * @param entity the uploaded entity, must not be null.
+     */
+    private void logCompression(final GzipUploadEntity entity) {
+        final long uncompressed = entity.getUncompressedBytes();
+        final long compressed = entity.getCompressedBytes();
+        final long millis = Math.max(1, entity.getElapsedMillis());
+
+        getLog().info(String.format(Locale.ENGLISH,
+                                    "Compressed %d bytes to %d bytes (%.1f%%) in %d ms, effective throughput %.2f MB/s",
+                                    uncompressed,
+                                    compressed,
+                                    uncompressed > 0 ? 100.0 * compressed / uncompressed : 100.0,
+                                    millis,
+                                    uncompressed * 1000.0 / millis / (1024 * 1024)));
+    }
+
+    /**
+     * Loads the record of the last deployment to the organization.
+     *
+     * @param recordFile file with the deployment record, must not be null.
+     * @return the record, or null if there is none.
+     */
+    private DeploymentRecord loadRecord(final File recordFile) {
+        try {
+            return DeploymentRecord.load(recordFile);
+        } catch (IOException e) {
+            getLog().warn("Could not read deployment record [" + recordFile + "]: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Records a successful deployment of the artifact to the organization.
+     *
+     * @param recordFile file with the deployment record, may be null in which case nothing is recorded.
+     * @param url URL of the integration supervisor, must not be null.
+     * @param org The name of the organization, must not be null.
+     * @param digest hex encoded SHA-256 digest of the artifact, must not be null.
+     */
+    private void recordDeployment(final File recordFile, final String url, final String org, final String digest) {
+        if (recordFile == null) {
+            return;
+        }
+
+        try {
+            new DeploymentRecord(url,
+                                 org,
+                                 file.getAbsolutePath(),
+                                 file.length(),
+                                 file.lastModified(),
+                                 digest,
+                                 System.currentTimeMillis()).store(recordFile);
+        } catch (IOException e) {
+            getLog().warn("Could not write deployment record [" + recordFile + "]: " + e.getMessage());
+        }
+    }
+}
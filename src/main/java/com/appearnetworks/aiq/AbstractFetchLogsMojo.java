@@ -1,27 +1,118 @@
 package com.appearnetworks.aiq;
 
-import org.apache.commons.io.IOUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
-import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.message.BasicNameValuePair;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Parameter;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URL;
-import java.util.Properties;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
 
 public abstract class AbstractFetchLogsMojo extends AbstractAIQMojo {
 
-    @Parameter(property = "url")
-    private URL url;
+    /**
+     * Size of the array through which the logs are copied to the output.
+     */
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Number of bytes per line assumed when first requesting the end of a log for its last lines.
+     */
+    private static final long ESTIMATED_LINE_LENGTH = 256;
+
+    /**
+     * Factor by which the end of a log requested grows when it holds too few lines.
+     */
+    private static final long SUFFIX_GROWTH = 4;
+
+    /**
+     * File to which to write the logs instead of the console. The file is replaced if it exists.
+     */
+    @Parameter(property = "logs.output")
+    private File output;
+
+    /**
+     * Number of bytes written to the output file after which it is rotated, or 0 to not rotate by size.
+     */
+    @Parameter(property = "logs.rotateSize", defaultValue = "0")
+    private long rotateSize;
+
+    /**
+     * Number of milliseconds after which the output file is rotated, or 0 to not rotate by age.
+     */
+    @Parameter(property = "logs.rotateInterval", defaultValue = "0")
+    private long rotateInterval;
+
+    /**
+     * Whether to gzip the output file as it is written.
+     */
+    @Parameter(property = "logs.gzip", defaultValue = "false")
+    private boolean gzip;
 
-    @Parameter(property = "propertiesPath")
-    private String propertiesPath;
+    /**
+     * Whether to write a gzip compressed response to a gzipped output file as received, instead of decompressing and
+     * compressing it again. Only applies when the output file is not rotated.
+     */
+    @Parameter(property = "logs.keepCompressed", defaultValue = "false")
+    private boolean keepCompressed;
+
+    /**
+     * Lowest level of the log entries to fetch, such as {@code warn} or {@code error}.
+     */
+    @Parameter(property = "logs.level")
+    private String level;
+
+    /**
+     * Time of the oldest log entries to fetch, either a duration before now such as {@code 10m}, {@code 2h} or
+     * {@code 1d}, or a time such as {@code 2014-01-01T12:00:00} in the time zone of the logs.
+     */
+    @Parameter(property = "logs.since")
+    private String since;
+
+    /**
+     * Time before which the log entries to fetch are, in the same form as the since time.
+     */
+    @Parameter(property = "logs.until")
+    private String until;
+
+    /**
+     * Time zone in which the timestamps of the logs are written, such as {@code UTC} or {@code Europe/Stockholm}. Used
+     * to compare the timestamps with the since and until times, and to read those times when not given as durations.
+     */
+    @Parameter(property = "logs.timeZone", defaultValue = "UTC")
+    private String timeZone;
+
+    /**
+     * Literal patterns of which the log lines to fetch contain any.
+     */
+    @Parameter(property = "logs.patterns")
+    private String[] patterns;
+
+    /**
+     * Number of last lines of the log to fetch, or 0 to fetch the whole log.
+     */
+    @Parameter(property = "logs.lines", defaultValue = "0")
+    private int lines;
+
+    private LogFilterOutputStream.Level minLevel;
+
+    private Date sinceTime;
+
+    private Date untilTime;
+
+    private TimeZone logTimeZone;
 
     /**
      * Executes the mojo for given action.
@@ -32,38 +123,220 @@ public abstract class AbstractFetchLogsMojo extends AbstractAIQMojo {
      * @throws MojoFailureException in case when execution fails.
      */
     protected void execute(final String action) throws MojoExecutionException, MojoFailureException {
-        final Properties properties;
+        final AIQSession session = getSession();
+        final String org = session.getOrgName();
+
+        getLog().info("Fetching logs from the org [" + org + "]");
+
+        if (rotateSize < 0 || rotateInterval < 0) {
+            throw new MojoExecutionException("Invalid rotation, the size and interval must not be negative");
+        }
+
+        final boolean filtered = parseFilters();
+        if (lines < 0) {
+            throw new MojoExecutionException("Invalid number of lines, must not be negative");
+        }
+
+        // only the end of the log is requested for its last lines, unless the lines are filtered, and the end requested
+        // grows until it holds enough lines, while a server supporting it is asked for just the last lines either way
+        long suffix = lines > 0 && !filtered ? lines * ESTIMATED_LINE_LENGTH : -1;
         try {
-            properties = PropertiesUtil.getInstance().loadProperties(propertiesPath);
+            while (!fetch(session, action, filtered, suffix)) {
+                suffix *= SUFFIX_GROWTH;
+                getLog().debug("The end of the log holds fewer than " + lines + " lines, fetching the last " + suffix +
+                               " bytes");
+            }
         } catch (IOException e) {
-            throw new MojoFailureException("Could not load properties file");
+            throw new MojoFailureException(e.getMessage());
         }
+    }
 
-        final String org = properties.getProperty("aiq.orgname");
-        final String username = properties.getProperty("aiq.username");
-        final String password = properties.getProperty("aiq.password");
-        final String aiqUrl = properties.getProperty("aiq.url");
-
-        getLog().info("Fetching logs from the org [" + org + "]");
+    /**
+     * Fetches the log, or given number of bytes at its end.
+     *
+     * @return false if the end of the log fetched holds fewer lines than requested and a larger end must be fetched.
+     */
+    private boolean fetch(final AIQSession session, final String action, final boolean filtered, final long suffix)
+            throws MojoExecutionException, MojoFailureException, IOException {
+        final HttpGet get = new HttpGet(buildIntegrationURI(session.getUrl(),
+                                                            session.getOrgName(),
+                                                            action,
+                                                            queryParameters()));
+        if (suffix > 0) {
+            // ranges of a compressed response would be ranges of the compressed bytes
+            get.setHeader(HttpHeaders.RANGE, "bytes=-" + suffix);
+        } else {
+            ContentEncodingUtil.acceptCompressed(get);
+        }
 
-        final HttpClient client = new DefaultHttpClient();
-        final HttpGet get = new HttpGet(buildIntegrationURI(url, org, action));
+        final HttpResponse response = executeAuthenticated(session, get);
+        try {
+            final int statusCode = response.getStatusLine().getStatusCode();
+            if (statusCode == HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE && suffix > 0) {
+                // the log is empty
+                return true;
+            }
+            if (statusCode != HttpStatus.SC_OK && statusCode != HttpStatus.SC_PARTIAL_CONTENT) {
+                throw new MojoFailureException("Failed to fetch logs, the status code is [" +
+                        response.getStatusLine().getStatusCode() + "] and error message is [" +
+                        response.getStatusLine().getReasonPhrase() + "]");
+            }
 
-        addAuthenticationHeader(get, aiqUrl, username, password, org);
+            final boolean partial =
+                    suffix > 0 && statusCode == HttpStatus.SC_PARTIAL_CONTENT && rangeStart(response) > 0;
+            final boolean raw = !filtered && lines == 0 && isKeptCompressed(response);
+            if (!raw) {
+                ContentEncodingUtil.decompress(response);
+            }
 
-        try {
-            HttpResponse response = client.execute(get);
-            if (response.getStatusLine().getStatusCode() == HttpStatus.SC_OK) {
-                final InputStream input = response.getEntity().getContent();
-                IOUtils.copy(input, System.out);
+            final InputStream input = response.getEntity().getContent();
+            final long total;
+            if (lines > 0) {
+                final LastLinesOutputStream last = new LastLinesOutputStream(lines, partial);
+                try (OutputStream stream = filtered ? createFilter(last) : last) {
+                    total = copy(input, stream);
+                }
                 input.close();
+                if (partial && last.getLineCount() <= lines) {
+                    return false;
+                }
+
+                try (OutputStream sink = createSink(false)) {
+                    last.writeTo(sink);
+                }
             } else {
-                throw new MojoFailureException("Failed to fetch logs, the status code is [" +
-                                               response.getStatusLine().getStatusCode() + "] and error message is [" +
-                                               response.getStatusLine().getReasonPhrase() + "]");
+                try (OutputStream sink = createSink(raw);
+                     OutputStream stream = filtered ? createFilter(sink) : sink) {
+                    total = copy(input, stream);
+                }
+                input.close();
             }
-        } catch (IOException e) {
-            throw new MojoFailureException(e.getMessage());
+
+            if (output != null) {
+                getLog().info("Fetched " + total + (raw ? " compressed" : "") + " bytes of logs into [" + output + "]");
+            }
+            return true;
+        } finally {
+            consume(response);
+        }
+    }
+
+    /**
+     * Parses the filters of the log entries to fetch.
+     *
+     * @return true if any filter is set.
+     * @throws MojoExecutionException in case when a filter is invalid.
+     */
+    private boolean parseFilters() throws MojoExecutionException {
+        try {
+            minLevel = level != null ? LogFilterOutputStream.Level.parse(level) : null;
+        } catch (IllegalArgumentException e) {
+            throw new MojoExecutionException("Unknown level [" + level + "], must be trace, debug, info, warn, " +
+                                             "error or fatal");
+        }
+
+        logTimeZone = TimeZone.getTimeZone(timeZone);
+        if (logTimeZone.getID().equals("GMT") && !timeZone.equals("GMT")) {
+            // unknown time zones are taken to be GMT
+            throw new MojoExecutionException("Unknown time zone [" + timeZone + "]");
+        }
+
+        final long now = System.currentTimeMillis();
+        try {
+            sinceTime = since != null ? LogFilterOutputStream.parseTime(since, now, logTimeZone) : null;
+            untilTime = until != null ? LogFilterOutputStream.parseTime(until, now, logTimeZone) : null;
+        } catch (IllegalArgumentException e) {
+            throw new MojoExecutionException(e.getMessage());
+        }
+
+        if (patterns != null) {
+            for (String pattern : patterns) {
+                if (pattern == null || pattern.isEmpty()) {
+                    throw new MojoExecutionException("Invalid pattern, the patterns must not be empty");
+                }
+            }
+        }
+
+        return minLevel != null || sinceTime != null || untilTime != null || (patterns != null && patterns.length > 0);
+    }
+
+    /**
+     * Returns the filters and the number of lines as query parameters, which servers supporting them apply before
+     * sending the log. The filters are applied again to the received log for servers which do not, as whether a server
+     * did cannot be told from the log it sent. The number of lines is passed along a request for the end of the log as
+     * well, which holds enough lines whichever of the two limits the server applies first.
+     */
+    private BasicNameValuePair[] queryParameters() {
+        final List<BasicNameValuePair> params = new ArrayList<>();
+        if (minLevel != null) params.add(new BasicNameValuePair("level", minLevel.name()));
+        if (sinceTime != null) params.add(new BasicNameValuePair("since", LogFilterOutputStream.formatTime(sinceTime)));
+        if (untilTime != null) params.add(new BasicNameValuePair("until", LogFilterOutputStream.formatTime(untilTime)));
+        if (patterns != null) {
+            for (String pattern : patterns) {
+                params.add(new BasicNameValuePair("pattern", pattern));
+            }
+        }
+        if (lines > 0) {
+            params.add(new BasicNameValuePair("lines", Integer.toString(lines)));
+        }
+        return params.toArray(new BasicNameValuePair[params.size()]);
+    }
+
+    private OutputStream createFilter(final OutputStream sink) {
+        return new LogFilterOutputStream(sink,
+                                         minLevel,
+                                         sinceTime,
+                                         untilTime,
+                                         logTimeZone,
+                                         patterns != null ? Arrays.asList(patterns) : null);
+    }
+
+    private boolean isKeptCompressed(final HttpResponse response) throws IOException {
+        return keepCompressed && output != null && gzip && rotateSize == 0 && rotateInterval == 0 &&
+               ContentEncodingUtil.GZIP.equals(ContentEncodingUtil.getContentEncoding(response));
+    }
+
+    private OutputStream createSink(final boolean raw) throws IOException {
+        if (output == null) {
+            return new NonClosingOutputStream(System.out);
+        }
+        return raw ?
+               new RotatingFileOutputStream(output, 0, 0, false) :
+               new RotatingFileOutputStream(output, rotateSize, rotateInterval, gzip);
+    }
+
+    /**
+     * @return the offset of the first byte of a partial response, or -1 if not known.
+     */
+    private static long rangeStart(final HttpResponse response) {
+        final Header contentRange = response.getFirstHeader(HttpHeaders.CONTENT_RANGE);
+        final String range = contentRange != null ? contentRange.getValue().trim() : "";
+        final int space = range.indexOf(' ');
+        final int dash = range.indexOf('-');
+        if (!range.regionMatches(true, 0, "bytes ", 0, 6) || dash < space) {
+            return -1;
+        }
+
+        try {
+            return Long.parseLong(range.substring(space + 1, dash).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Copies given stream to the output.
+     *
+     * @return number of bytes read.
+     */
+    private static long copy(final InputStream input, final OutputStream output) throws IOException {
+        final byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        long total = 0;
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+            total += read;
         }
+        return total;
     }
 }
@@ -0,0 +1,174 @@
+package com.appearnetworks.aiq;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Fetches several logs of one or more organizations at once and writes them as a single stream ordered by the
+ * timestamps of their lines, with every line prefixed with the name of its log.
+ *
+ * All logs share the pooled HTTP client and every log is fetched by its own thread, which reads only a few lines ahead
+ * of the merge, so every fetched log holds a pooled connection until it is merged. The connection limits of the pool
+ * are raised to one connection per log, plus one per supervisor for authentication, as a log waiting for a connection
+ * held by a log blocked on the merge would wait forever.
+ */
+public abstract class AbstractMergeLogsMojo extends AbstractAIQMojo {
+
+    /**
+     * Size of the array through which a log is read, and of the buffer of the merged output.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The logs to merge, as {@code tailTarget} elements. The integration adapter and server logs of the organization
+     * of the goal if not set.
+     */
+    @Parameter
+    private List<TailTarget> targets;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        final List<LogMerger.Source> sources = new ArrayList<>();
+        final List<Runnable> fetches = new ArrayList<>();
+        final List<URL> urls = new ArrayList<>();
+        if (targets == null || targets.isEmpty()) {
+            addLog(null, null, "ia", null, sources, fetches, urls);
+            addLog(null, null, "server", null, sources, fetches, urls);
+        } else {
+            for (TailTarget target : targets) {
+                addLog(target.getUrl(),
+                       target.getPropertiesPath(),
+                       target.getLog(),
+                       target.getName(),
+                       sources,
+                       fetches,
+                       urls);
+            }
+        }
+        reserveStreamConnections(urls);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(fetches.size(), new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "aiq-log-merge");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        final OutputStream output = new BufferedOutputStream(new NonClosingOutputStream(System.out), BUFFER_SIZE);
+        try {
+            for (Runnable fetch : fetches) {
+                executor.execute(fetch);
+            }
+            LogMerger.merge(sources, output);
+        } catch (IOException e) {
+            throw new MojoFailureException(e.getMessage());
+        } catch (InterruptedException ignore) {
+            // just exit
+        } finally {
+            executor.shutdownNow();
+            try {
+                output.close();
+            } catch (IOException e) {
+                getLog().warn("Could not write the merged logs: " + e.getMessage());
+            }
+        }
+    }
+
+    private void addLog(final URL url,
+                        final String propertiesPath,
+                        final String log,
+                        final String name,
+                        final List<LogMerger.Source> sources,
+                        final List<Runnable> fetches,
+                        final List<URL> urls)
+            throws MojoExecutionException, MojoFailureException {
+        final String action;
+        if ("ia".equals(log)) {
+            action = "ia.logs";
+        } else if ("server".equals(log)) {
+            action = "server.logs";
+        } else {
+            throw new MojoExecutionException("Unknown log [" + log + "], must be ia or server");
+        }
+
+        final AIQSession session = getSession(url, propertiesPath);
+        final String sourceName = name != null ? name : session.getOrgName() + " " + log;
+        final LogMerger.Source source = new LogMerger.Source(sources.size(), sourceName);
+        sources.add(source);
+        urls.add(session.getUrl());
+
+        getLog().info("Merging " + log + " logs from the org [" + session.getOrgName() + "] as [" + sourceName + "]");
+
+        fetches.add(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    fetch(session, action, source);
+                    source.close();
+                } catch (IOException | MojoExecutionException | MojoFailureException e) {
+                    fail(source, new IOException("Failed to fetch [" + sourceName + "]: " + e.getMessage(), e));
+                }
+            }
+        });
+    }
+
+    private void fetch(final AIQSession session, final String action, final LogMerger.Source source)
+            throws MojoExecutionException, MojoFailureException, IOException {
+        final HttpGet get = new HttpGet(buildIntegrationURI(session.getUrl(), session.getOrgName(), action));
+        ContentEncodingUtil.acceptCompressed(get);
+
+        final HttpResponse response = executeAuthenticated(session, get);
+        boolean complete = false;
+        try {
+            if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
+                complete = true;
+                throw new MojoFailureException("the status code is [" + response.getStatusLine().getStatusCode() +
+                                               "] and error message is [" +
+                                               response.getStatusLine().getReasonPhrase() + "]");
+            }
+
+            ContentEncodingUtil.decompress(response);
+            final InputStream input = response.getEntity().getContent();
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                source.write(buffer, 0, read);
+            }
+            input.close();
+            complete = true;
+        } finally {
+            if (complete) {
+                consume(response);
+            } else {
+                // the rest of an abandoned log is not worth reading to reuse the connection
+                get.abort();
+            }
+        }
+    }
+
+    private static void fail(final LogMerger.Source source, final IOException failure) {
+        try {
+            source.fail(failure);
+        } catch (InterruptedIOException ignore) {
+            // the merge has been abandoned
+        }
+    }
+}
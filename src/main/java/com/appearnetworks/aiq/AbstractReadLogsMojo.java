@@ -1,27 +1,140 @@
 package com.appearnetworks.aiq;
 
-import org.apache.commons.io.IOUtils;
-import org.apache.http.HttpHeaders;
-import org.apache.http.HttpResponse;
-import org.apache.http.HttpStatus;
-import org.apache.http.client.HttpClient;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Parameter;
 
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
 import java.net.URL;
-import java.util.Properties;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Random;
+import java.util.Set;
 
 public abstract class AbstractReadLogsMojo extends AbstractAIQMojo {
-    @Parameter(property = "url")
-    private URL url;
 
-    @Parameter(property = "propertiesPath")
-    private String propertiesPath;
+    /**
+     * Size in bytes of a chunk of the buffer between the network and the output.
+     */
+    private static final int BUFFER_CHUNK_SIZE = 8 * 1024;
+
+    /**
+     * Maximum number of milliseconds to wait for pending webhook notifications when the tail stops.
+     */
+    private static final long WEBHOOK_CLOSE_TIMEOUT = 5 * 1000L;
+
+    /**
+     * The shortest interval between polls in milliseconds, approached while new log lines keep arriving.
+     */
+    @Parameter(property = "tail.minInterval", defaultValue = "1000")
+    private long minInterval = 1000;
+
+    /**
+     * The longest interval between polls in milliseconds, approached while the log does not change.
+     */
+    @Parameter(property = "tail.maxInterval", defaultValue = "30000")
+    private long maxInterval = 30000;
+
+    /**
+     * Factor by which the interval between polls grows while the log does not change, and shrinks while it does.
+     */
+    @Parameter(property = "tail.backoff", defaultValue = "2.0")
+    private double backoff = 2.0;
+
+    /**
+     * Whether to keep a single event stream open instead of polling, if the integration supervisor supports it.
+     */
+    @Parameter(property = "tail.stream", defaultValue = "false")
+    private boolean stream;
+
+    /**
+     * Number of milliseconds without any data, not even a keep-alive comment, after which a log stream is taken to be
+     * broken and reconnected. Must exceed the interval at which the integration supervisor sends keep-alive comments.
+     */
+    @Parameter(property = "tail.streamTimeout", defaultValue = "90000")
+    private int streamTimeout = 90000;
+
+    /**
+     * Number of {@value #BUFFER_CHUNK_SIZE} bytes chunks buffered between the network and the output, so that a slow
+     * output does not hold back the tail.
+     */
+    @Parameter(property = "tail.bufferChunks", defaultValue = "64")
+    private int bufferChunks = 64;
+
+    /**
+     * What to do when the buffer between the network and the output is full: {@code block} to wait for the output,
+     * {@code drop-oldest} to drop the oldest buffered output, or {@code sample} to keep only a sample of the new
+     * output. A checkpoint no longer moves once output has been dropped.
+     */
+    @Parameter(property = "tail.overflow", defaultValue = "block")
+    private String overflow = "block";
+
+    /**
+     * Whether to keep the position up to which each log has been tailed in {@code ~/.aiq/tails}, so that a restarted
+     * tail resumes where the previous one stopped instead of replaying the log.
+     */
+    @Parameter(property = "tail.checkpoint", defaultValue = "false")
+    private boolean checkpoint;
+
+    /**
+     * Minimum number of milliseconds between two saves of the tail position, which is saved at the latest this long
+     * after it moved and when the build is interrupted. A killed tail replays up to this much of the log when
+     * restarted.
+     */
+    @Parameter(property = "tail.checkpointInterval", defaultValue = "1000")
+    private long checkpointInterval = 1000;
+
+    /**
+     * Number of most recent distinct log entries among which repeated entries are suppressed, at most 65536, or 0 to
+     * write every line. Only lines starting with a timestamp are compared, and the lines following one without a
+     * timestamp, such as the frames of a stack trace, are written or suppressed with it.
+     */
+    @Parameter(property = "tail.dedupLines", defaultValue = "0")
+    private int dedupLines;
+
+    /**
+     * Literal patterns, such as error signatures, to look for in every line of the log.
+     */
+    @Parameter(property = "tail.patterns")
+    private String[] patterns;
+
+    /**
+     * Comma separated actions taken on a line in which any of the patterns is found: {@code highlight} to write it in
+     * bold red, {@code count} to log the number of matches of every pattern when the tail stops, {@code webhook} to
+     * post it to the webhook, and {@code fail} to stop tailing and fail the build.
+     */
+    @Parameter(property = "tail.actions", defaultValue = "highlight")
+    private String actions = "highlight";
+
+    /**
+     * URL to which every line in which any of the patterns is found is posted as a JSON document, if the actions
+     * include {@code webhook}.
+     */
+    @Parameter(property = "tail.webhook")
+    private URL webhook;
+
+    /**
+     * Number of milliseconds between two logged summaries of the tail metrics and two snapshots of them.
+     */
+    @Parameter(property = "tail.metricsInterval", defaultValue = "60000")
+    private long metricsInterval = 60000;
+
+    /**
+     * File to which a JSON snapshot of the tail metrics is written periodically, replacing the previous snapshot.
+     */
+    @Parameter(property = "tail.metricsFile")
+    private File metricsFile;
+
+    /**
+     * Whether to register the tail metrics as MBeans in the platform MBean server.
+     */
+    @Parameter(property = "tail.jmx", defaultValue = "true")
+    private boolean jmx = true;
+
+    private WebhookNotifier webhookNotifier;
 
     /**
      * Executes the mojo for given action.
@@ -32,51 +145,209 @@ public abstract class AbstractReadLogsMojo extends AbstractAIQMojo {
      * @throws MojoFailureException   in case when execution fails.
      */
     protected void execute(final String action) throws MojoExecutionException, MojoFailureException {
-        final Properties properties;
+        final AIQSession session = getSession();
+        final String org = session.getOrgName();
+
+        getLog().info("Tailing logs from the org [" + org + "]");
+
+        final PollScheduler scheduler = createScheduler();
+        final TailCheckpoint checkpoint = loadCheckpoint(session, action);
+        final TailMetricsReporter reporter = createMetricsReporter();
+        final TailMetrics metrics = new TailMetrics(org);
+        reporter.register(metrics);
+
+        final TokenRefresher refresher = new TokenRefresher(this);
+        refresher.register(session);
+
+        final RingBufferOutputStream output = createOutput(new NonClosingOutputStream(System.out), org);
         try {
-            properties = PropertiesUtil.getInstance().loadProperties(propertiesPath);
+            new LogTail(this, session, action, output, scheduler, checkpoint, metrics, streamTimeout).run(stream);
         } catch (IOException e) {
-            throw new MojoFailureException("Could not load properties file");
+            throw new MojoFailureException(e.getMessage());
+        } catch (InterruptedException ignore) {
+            // just exit
+        } finally {
+            closeQuietly(output);
+            closeWebhook();
+            refresher.close();
+            reporter.close();
         }
+    }
 
-        final String org = properties.getProperty("aiq.orgname");
-        final String username = properties.getProperty("aiq.username");
-        final String password = properties.getProperty("aiq.password");
-        final String aiqUrl = properties.getProperty("aiq.url");
-
-        final String accessToken = fetchAccessToken(aiqUrl, username, password, org);
+    /**
+     * Creates a scheduler for the polls of a single log with the configured intervals.
+     *
+     * @return the scheduler, will not be null.
+     * @throws MojoExecutionException in case when the configured intervals are invalid.
+     */
+    protected PollScheduler createScheduler() throws MojoExecutionException {
+        try {
+            return new PollScheduler(minInterval, maxInterval, backoff, new Random());
+        } catch (IllegalArgumentException e) {
+            throw new MojoExecutionException(e.getMessage());
+        }
+    }
 
-        getLog().info("Tailing logs from the org [" + org + "]");
+    /**
+     * Creates the buffered stream through which a single log is written to given sink, passing the configured output
+     * stages. The stream must be closed once the log is no longer tailed, which closes the sink.
+     *
+     * @param sink stream to write the log to, must not be null.
+     * @param source name of the log, must not be null.
+     * @return the buffered stream, will not be null.
+     * @throws MojoExecutionException in case when the configured output is invalid.
+     */
+    protected RingBufferOutputStream createOutput(final OutputStream sink, final String source)
+            throws MojoExecutionException {
+        OutputStream output = sink;
+        if (patterns != null && patterns.length > 0) {
+            final Set<PatternMatchOutputStream.Action> matchActions = parseActions();
+            try {
+                output = new PatternMatchOutputStream(output,
+                                                      Arrays.asList(patterns),
+                                                      matchActions,
+                                                      getWebhook(matchActions),
+                                                      source,
+                                                      getLog());
+            } catch (IllegalArgumentException e) {
+                throw new MojoExecutionException(e.getMessage());
+            }
+        }
+        if (dedupLines < 0) {
+            throw new MojoExecutionException("Invalid dedup window, must not be negative");
+        } else if (dedupLines > 0) {
+            try {
+                output = new DedupOutputStream(output, dedupLines, getLog());
+            } catch (IllegalArgumentException e) {
+                throw new MojoExecutionException(e.getMessage());
+            }
+        }
 
-        final HttpClient client = new DefaultHttpClient();
+        final RingBufferOutputStream.OverflowPolicy policy;
+        try {
+            policy = RingBufferOutputStream.OverflowPolicy.parse(overflow);
+        } catch (IllegalArgumentException e) {
+            throw new MojoExecutionException("Unknown overflow policy [" + overflow +
+                                             "], must be block, drop-oldest or sample");
+        }
 
-        String since = null;
+        try {
+            return new RingBufferOutputStream(output, bufferChunks, BUFFER_CHUNK_SIZE, policy, getLog());
+        } catch (IllegalArgumentException e) {
+            throw new MojoExecutionException(e.getMessage());
+        }
+    }
 
+    /**
+     * Creates the reporter of the tail metrics with the configured interval and outputs. The reporter must be closed
+     * once the logs are no longer tailed.
+     *
+     * @return the reporter, will not be null.
+     * @throws MojoExecutionException in case when the configured interval is invalid.
+     */
+    protected TailMetricsReporter createMetricsReporter() throws MojoExecutionException {
         try {
-            while (true) {
-                HttpGet get = new HttpGet(buildIntegrationURI(url, org, action));
-                get.setHeader(HttpHeaders.AUTHORIZATION, "BEARER " + accessToken);
-                if (since != null) get.setHeader(HttpHeaders.IF_MODIFIED_SINCE, since);
-                HttpResponse response = client.execute(get);
-                if (response.getStatusLine().getStatusCode() == HttpStatus.SC_OK) {
-                    since = response.getFirstHeader(HttpHeaders.LAST_MODIFIED).getValue();
-                    final InputStream input = response.getEntity().getContent();
-                    IOUtils.copy(input, System.out);
-                    input.close();
-                } else if (response.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
-                    // just wait
-                } else {
-                    throw new MojoFailureException("Failed to tail logs, the status code is [" +
-                            response.getStatusLine().getStatusCode() + "] and error message is [" +
-                            response.getStatusLine().getReasonPhrase() + "]");
-                }
-
-                Thread.sleep(5*1000);
+            return new TailMetricsReporter(getLog(), metricsInterval, metricsFile, jmx);
+        } catch (IllegalArgumentException e) {
+            throw new MojoExecutionException(e.getMessage());
+        }
+    }
+
+    /**
+     * Posts the pending webhook notifications, if any, and stops the notifier.
+     */
+    protected synchronized void closeWebhook() {
+        if (webhookNotifier != null) {
+            webhookNotifier.close(WEBHOOK_CLOSE_TIMEOUT);
+            webhookNotifier = null;
+        }
+    }
+
+    private Set<PatternMatchOutputStream.Action> parseActions() throws MojoExecutionException {
+        final Set<PatternMatchOutputStream.Action> parsed = EnumSet.noneOf(PatternMatchOutputStream.Action.class);
+        for (String action : actions.split(",")) {
+            if (action.trim().isEmpty()) {
+                continue;
             }
+            try {
+                parsed.add(PatternMatchOutputStream.Action.parse(action));
+            } catch (IllegalArgumentException e) {
+                throw new MojoExecutionException("Unknown action [" + action.trim() +
+                                                 "], must be highlight, count, webhook or fail");
+            }
+        }
+        return parsed;
+    }
+
+    private synchronized WebhookNotifier getWebhook(final Set<PatternMatchOutputStream.Action> matchActions)
+            throws MojoExecutionException {
+        if (!matchActions.contains(PatternMatchOutputStream.Action.WEBHOOK)) {
+            return null;
+        }
+        if (webhook == null) {
+            throw new MojoExecutionException("The webhook action requires the webhook URL");
+        }
+
+        if (webhookNotifier == null) {
+            try {
+                webhookNotifier = new WebhookNotifier(getConnectionPool().getClient(), webhook.toURI(), getLog());
+            } catch (URISyntaxException e) {
+                throw new MojoExecutionException(e.getMessage());
+            }
+        }
+        return webhookNotifier;
+    }
+
+    /**
+     * Loads the position up to which given log has been tailed, if checkpoints are enabled.
+     *
+     * @param session session on behalf of which the log is tailed, must not be null.
+     * @param action The name of the action serving the log, must not be null.
+     * @return the checkpoint, or null if checkpoints are disabled.
+     * @throws MojoFailureException in case when the checkpoint could not be read.
+     */
+    protected TailCheckpoint loadCheckpoint(final AIQSession session, final String action)
+            throws MojoFailureException {
+        if (!checkpoint) {
+            return null;
+        }
+
+        try {
+            return TailCheckpoint.load(TailCheckpoint.userFile(session.getUrl().toString(),
+                                                               session.getOrgName(),
+                                                               action),
+                                       checkpointInterval);
         } catch (IOException e) {
-            throw new MojoFailureException(e.getMessage());
-        } catch (InterruptedException ignore) {
-            // just exit
+            throw new MojoFailureException("Could not load tail checkpoint: " + e.getMessage());
         }
     }
+
+    /**
+     * Closes given stream, logging instead of throwing a failure.
+     *
+     * @param output stream to close, must not be null.
+     */
+    protected void closeQuietly(final OutputStream output) {
+        try {
+            output.close();
+        } catch (PatternMatchOutputStream.MatchException ignore) {
+            // already reported as the failure of the tail
+        } catch (IOException e) {
+            getLog().warn("Failed to write log output: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return whether logs should be streamed if the integration supervisor supports it.
+     */
+    protected boolean isStream() {
+        return stream;
+    }
+
+    /**
+     * @return number of milliseconds without any data after which a log stream is reconnected.
+     */
+    protected int getStreamTimeout() {
+        return streamTimeout;
+    }
 }
@@ -0,0 +1,38 @@
+package com.appearnetworks.aiq;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+
+import java.io.IOException;
+
+public abstract class AbstractStopMojo extends AbstractAIQMojo {
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        final AIQSession session = getSession();
+        final String org = session.getOrgName();
+
+        getLog().info("Stop integration adapter for org [" + org + "]");
+
+        HttpPost post = new HttpPost(buildIntegrationURI(session.getUrl(), org, "ia.stop"));
+
+        try {
+            HttpResponse response = executeAuthenticated(session, post);
+            try {
+                if(response.getStatusLine().getStatusCode() == HttpStatus.SC_OK) {
+                    getLog().info("Integration adapter stopped successfully.");
+                } else {
+                    throw new MojoFailureException("Failed to stop integration adapter, the status code is [" +
+                            response.getStatusLine().getStatusCode() + "] and error message is [" +
+                            response.getStatusLine().getReasonPhrase() + "]");
+                }
+            } finally {
+                consume(response);
+            }
+        } catch (IOException e) {
+            throw new MojoFailureException(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.appearnetworks.aiq;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Tails several logs of one or more organizations at once, writing the lines of every log prefixed with its name.
+ *
+ * All logs share the pooled HTTP client, and every log is tailed by its own thread, so that a slow log does not hold
+ * back the others. A log streamed by the integration supervisor holds a pooled connection for as long as it is tailed,
+ * so when streaming the connection limits of the pool are raised to one connection per streamed log, plus one per
+ * supervisor for authentication and polls.
+ */
+public abstract class AbstractTailLogsMojo extends AbstractReadLogsMojo {
+
+    /**
+     * The logs to tail, as {@code tailTarget} elements.
+     */
+    @Parameter
+    private List<TailTarget> targets;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (targets == null || targets.isEmpty()) {
+            throw new MojoExecutionException("No logs to tail, the targets must not be empty");
+        }
+
+        if (isStream()) {
+            reserveStreamConnections();
+        }
+
+        final TailMetricsReporter reporter = createMetricsReporter();
+        final TokenRefresher refresher = new TokenRefresher(this);
+        try {
+            final OutputStream console = new NonClosingOutputStream(System.out);
+            final List<Callable<Void>> tails = new ArrayList<>(targets.size());
+            for (TailTarget target : targets) {
+                tails.add(createTail(target, console, reporter, refresher));
+            }
+
+            final ThreadFactory threadFactory = new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "aiq-log-tail");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            };
+            final ExecutorService executor = Executors.newFixedThreadPool(tails.size(), threadFactory);
+
+            try {
+                final CompletionService<Void> completion = new ExecutorCompletionService<>(executor);
+                for (Callable<Void> tail : tails) {
+                    completion.submit(tail);
+                }
+
+                int failed = 0;
+                for (int i = 0; i < tails.size(); i++) {
+                    try {
+                        completion.take().get();
+                    } catch (ExecutionException e) {
+                        if (e.getCause() instanceof PatternMatchOutputStream.MatchException) {
+                            // a pattern failing the build stops all logs
+                            throw new MojoFailureException(e.getCause().getMessage());
+                        }
+                        getLog().error(e.getCause().getMessage());
+                        failed++;
+                    }
+                }
+
+                if (failed > 0) {
+                    throw new MojoFailureException("Failed to tail " + failed + " of " + tails.size() + " logs");
+                }
+            } catch (InterruptedException ignore) {
+                // just exit
+            } finally {
+                executor.shutdownNow();
+                closeWebhook();
+            }
+        } finally {
+            refresher.close();
+            reporter.close();
+        }
+    }
+
+    /**
+     * Raises the connection limits of the pool to one streamed connection per log.
+     *
+     * @throws MojoFailureException in case when the properties file of a log could not be loaded.
+     */
+    private void reserveStreamConnections() throws MojoFailureException {
+        final List<URL> urls = new ArrayList<>(targets.size());
+        for (TailTarget target : targets) {
+            urls.add(getSession(target.getUrl(), target.getPropertiesPath()).getUrl());
+        }
+        reserveStreamConnections(urls);
+    }
+
+    private Callable<Void> createTail(final TailTarget target,
+                                      final OutputStream console,
+                                      final TailMetricsReporter reporter,
+                                      final TokenRefresher refresher)
+            throws MojoExecutionException, MojoFailureException {
+        final String action;
+        if ("ia".equals(target.getLog())) {
+            action = "ia.logs.tail";
+        } else if ("server".equals(target.getLog())) {
+            action = "server.logs.tail";
+        } else {
+            throw new MojoExecutionException("Unknown log [" + target.getLog() + "], must be ia or server");
+        }
+
+        final AIQSession session = getSession(target.getUrl(), target.getPropertiesPath());
+        refresher.register(session);
+        final String name = target.getName() != null ?
+                            target.getName() : session.getOrgName() + " " + target.getLog();
+        final PollScheduler scheduler = createScheduler();
+        final TailCheckpoint checkpoint = loadCheckpoint(session, action);
+        final RingBufferOutputStream output =
+                createOutput(new LinePrefixOutputStream(console, "[" + name + "] "), name);
+        final TailMetrics metrics = new TailMetrics(name);
+        reporter.register(metrics);
+        final LogTail tail = new LogTail(this, session, action, output, scheduler, checkpoint, metrics,
+                                         getStreamTimeout());
+
+        getLog().info("Tailing " + target.getLog() + " logs from the org [" + session.getOrgName() + "] as [" +
+                      name + "]");
+
+        return new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                try {
+                    tail.run(isStream());
+                } catch (PatternMatchOutputStream.MatchException e) {
+                    throw e;
+                } catch (IOException | MojoFailureException e) {
+                    throw new MojoFailureException("Failed to tail [" + name + "]: " + e.getMessage());
+                } finally {
+                    closeQuietly(output);
+                }
+                return null;
+            }
+        };
+    }
+}
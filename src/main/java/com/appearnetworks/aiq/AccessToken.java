@@ -0,0 +1,56 @@
+package com.appearnetworks.aiq;
+
+/**
+ * Access token issued by the server together with the time at which it expires.
+ */
+public final class AccessToken {
+
+    private final String value;
+
+    private final long expiresAt;
+
+    /**
+     * Creates a new token.
+     *
+     * @param value the token string, must not be null.
+     * @param expiresAt time in milliseconds since epoch at which the token expires, or 0 if unknown.
+     */
+    public AccessToken(final String value, final long expiresAt) {
+        this.value = value;
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * @return the token string, will not be null.
+     */
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * @return time in milliseconds since epoch at which the token expires, or 0 if unknown.
+     */
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * Checks whether the token expiry is known.
+     *
+     * @return true if the server reported the lifetime of the token.
+     */
+    public boolean hasExpiry() {
+        return expiresAt > 0;
+    }
+
+    /**
+     * Checks whether the token is still usable for at least given number of milliseconds. Tokens with unknown expiry
+     * are considered usable until the server rejects them.
+     *
+     * @param margin number of milliseconds for which the token must remain valid.
+     * @return true if the token does not expire within the margin.
+     */
+    public boolean isValidFor(final long margin) {
+        return !hasExpiry() || System.currentTimeMillis() + margin < expiresAt;
+    }
+}
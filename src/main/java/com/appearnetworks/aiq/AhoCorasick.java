@@ -0,0 +1,159 @@
+package com.appearnetworks.aiq;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Aho-Corasick automaton finding any of a set of literal byte patterns in one pass over the input, whatever the number
+ * of patterns.
+ *
+ * The failure links are resolved at compile time into a complete transition table of 256 entries per state, so that
+ * scanning costs a single array lookup per input byte.
+ */
+public final class AhoCorasick {
+
+    private static final int ALPHABET = 256;
+
+    private final int[] transitions;
+
+    private final int[][] outputs;
+
+    private final int patterns;
+
+    private AhoCorasick(final int[] transitions, final int[][] outputs, final int patterns) {
+        this.transitions = transitions;
+        this.outputs = outputs;
+        this.patterns = patterns;
+    }
+
+    /**
+     * Compiles given patterns into an automaton.
+     *
+     * @param patterns patterns to find, must not be null nor contain empty patterns.
+     * @return the automaton, will not be null.
+     * @throws IllegalArgumentException if a pattern is empty.
+     */
+    public static AhoCorasick compile(final List<byte[]> patterns) {
+        final List<int[]> trie = new ArrayList<>();
+        final List<List<Integer>> ends = new ArrayList<>();
+        trie.add(newState());
+        ends.add(new ArrayList<Integer>());
+
+        for (int p = 0; p < patterns.size(); p++) {
+            final byte[] pattern = patterns.get(p);
+            if (pattern.length == 0) {
+                throw new IllegalArgumentException("Patterns must not be empty");
+            }
+
+            int state = 0;
+            for (byte b : pattern) {
+                final int c = b & 0xff;
+                if (trie.get(state)[c] < 0) {
+                    trie.get(state)[c] = trie.size();
+                    trie.add(newState());
+                    ends.add(new ArrayList<Integer>());
+                }
+                state = trie.get(state)[c];
+            }
+            ends.get(state).add(p);
+        }
+
+        final int states = trie.size();
+        final int[] transitions = new int[states * ALPHABET];
+        final int[] failure = new int[states];
+        final int[][] outputs = new int[states][];
+
+        // breadth first, so that the failure state of every state is complete before the state itself
+        final Deque<Integer> queue = new ArrayDeque<>();
+        outputs[0] = toArray(ends.get(0));
+        for (int c = 0; c < ALPHABET; c++) {
+            final int next = trie.get(0)[c];
+            if (next < 0) {
+                transitions[c] = 0;
+            } else {
+                transitions[c] = next;
+                failure[next] = 0;
+                queue.add(next);
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            final int state = queue.poll();
+            outputs[state] = merge(ends.get(state), outputs[failure[state]]);
+
+            for (int c = 0; c < ALPHABET; c++) {
+                final int next = trie.get(state)[c];
+                if (next < 0) {
+                    transitions[state * ALPHABET + c] = transitions[failure[state] * ALPHABET + c];
+                } else {
+                    transitions[state * ALPHABET + c] = next;
+                    failure[next] = transitions[failure[state] * ALPHABET + c];
+                    queue.add(next);
+                }
+            }
+        }
+
+        return new AhoCorasick(transitions, outputs, patterns.size());
+    }
+
+    /**
+     * @return number of patterns of the automaton.
+     */
+    public int getPatternCount() {
+        return patterns;
+    }
+
+    /**
+     * Scans given bytes, marking every pattern found.
+     *
+     * @param data bytes to scan, must not be null.
+     * @param offset index of the first byte to scan.
+     * @param length number of bytes to scan.
+     * @param matched flags of the patterns found, set for every pattern found and left as is for the others, must not
+     *                be null and must have an element per pattern.
+     * @return true if any pattern has been found.
+     */
+    public boolean scan(final byte[] data, final int offset, final int length, final boolean[] matched) {
+        boolean found = false;
+        int state = 0;
+        final int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            state = transitions[(state << 8) | (data[i] & 0xff)];
+            final int[] output = outputs[state];
+            if (output.length > 0) {
+                for (int pattern : output) {
+                    matched[pattern] = true;
+                }
+                found = true;
+            }
+        }
+        return found;
+    }
+
+    private static int[] newState() {
+        final int[] state = new int[ALPHABET];
+        Arrays.fill(state, -1);
+        return state;
+    }
+
+    private static int[] toArray(final List<Integer> values) {
+        final int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+
+    private static int[] merge(final List<Integer> own, final int[] inherited) {
+        if (own.isEmpty()) {
+            return inherited;
+        }
+
+        final int[] merged = Arrays.copyOf(toArray(own), own.size() + inherited.length);
+        System.arraycopy(inherited, 0, merged, own.size(), inherited.length);
+        return merged;
+    }
+}
@@ -0,0 +1,50 @@
+package com.appearnetworks.aiq;
+
+import org.apache.http.entity.mime.content.FileBody;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * File part of a multipart upload which copies the file through a large buffer.
+ *
+ * {@link FileBody} copies the file through a 4 KB array, issuing a read system call and a write to the connection for
+ * every block, so uploading large artifacts costs many small system calls and TLS records. The blocking client hands
+ * the entity a stream rather than the socket channel, so a copy into the stream is needed whatever the buffer, and a
+ * larger buffer is what reduces the cost per byte.
+ */
+public class BufferedFileBody extends FileBody {
+
+    /**
+     * Size of the array through which the file is written to the stream.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Creates a new body.
+     *
+     * @param file file to upload, must not be null.
+     */
+    public BufferedFileBody(final File file) {
+        super(file);
+    }
+
+    @Override
+    public void writeTo(final OutputStream output) throws IOException {
+        if (output == null) {
+            throw new IllegalArgumentException("Output stream may not be null");
+        }
+
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream input = new FileInputStream(getFile())) {
+            int read;
+            while ((read = input.read(buffer)) >= 0) {
+                output.write(buffer, 0, read);
+            }
+        }
+        output.flush();
+    }
+}
@@ -0,0 +1,327 @@
+package com.appearnetworks.aiq;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Uploads an integration adapter artifact in fixed-size chunks, several at a time.
+ *
+ * Each chunk is sent to the {@code ia.deploy.chunk} action together with the upload identifier, its index and offset.
+ * Once all chunks are accepted the {@code ia.deploy.complete} action asks the supervisor to assemble and deploy the
+ * artifact. Accepted chunks are recorded in a local manifest, so that only failed chunks are retried and an
+ * interrupted upload resumes where it stopped.
+ */
+public class ChunkedUploader {
+
+    private static final String UPLOAD_ID_KEY = "uploadId";
+    private static final String DIGEST_KEY = "sha256";
+    private static final String SIZE_KEY = "size";
+    private static final String CHUNK_SIZE_KEY = "chunkSize";
+    private static final String COMPLETED_KEY = "completed";
+
+    private final AbstractAIQMojo mojo;
+
+    private final AIQSession session;
+
+    private final File file;
+
+    private final String digest;
+
+    private final long chunkSize;
+
+    private final int parallelism;
+
+    private final int retries;
+
+    private final File manifestFile;
+
+    private final SortedSet<Integer> completed = new TreeSet<>();
+
+    private String uploadId;
+
+    /**
+     * Creates a new uploader.
+     *
+     * @param mojo goal on behalf of which to upload, must not be null.
+     * @param session session on behalf of which to upload, must not be null.
+     * @param file artifact to upload, must not be null.
+     * @param digest hex encoded SHA-256 digest of the artifact, must not be null.
+     * @param chunkSize size of a chunk in bytes, must be positive.
+     * @param parallelism number of chunks uploaded concurrently, must be positive.
+     * @param retries number of times failed chunks are retried.
+     */
+    public ChunkedUploader(final AbstractAIQMojo mojo,
+                           final AIQSession session,
+                           final File file,
+                           final String digest,
+                           final long chunkSize,
+                           final int parallelism,
+                           final int retries) {
+        this(mojo, session, file, digest, chunkSize, parallelism, retries,
+             new File(new File(System.getProperty("user.home"), ".aiq"), "uploads"));
+    }
+
+    /**
+     * Creates a new uploader keeping its manifest in given directory.
+     *
+     * @param mojo goal on behalf of which to upload, must not be null.
+     * @param session session on behalf of which to upload, must not be null.
+     * @param file artifact to upload, must not be null.
+     * @param digest hex encoded SHA-256 digest of the artifact, must not be null.
+     * @param chunkSize size of a chunk in bytes, must be positive.
+     * @param parallelism number of chunks uploaded concurrently, must be positive.
+     * @param retries number of times failed chunks are retried.
+     * @param directory directory of the upload manifests, must not be null.
+     */
+    ChunkedUploader(final AbstractAIQMojo mojo,
+                    final AIQSession session,
+                    final File file,
+                    final String digest,
+                    final long chunkSize,
+                    final int parallelism,
+                    final int retries,
+                    final File directory) {
+        this.mojo = mojo;
+        this.session = session;
+        this.file = file;
+        this.digest = digest;
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism;
+        this.retries = retries;
+        this.manifestFile = new File(
+                directory,
+                DigestUtil.sha256Hex(session.getUrl() + "\n" + session.getOrgName() + "\n" + digest) + ".properties");
+    }
+
+    /**
+     * Uploads all chunks which have not been uploaded yet and completes the deployment.
+     *
+     * @throws MojoExecutionException in case when provided data is invalid.
+     * @throws MojoFailureException in case when the upload fails.
+     */
+    public void upload() throws MojoExecutionException, MojoFailureException {
+        final long size = file.length();
+        final int chunks = (int) Math.max(1, (size + chunkSize - 1) / chunkSize);
+
+        loadManifest(size);
+        if (!completed.isEmpty()) {
+            mojo.getLog().info("Resuming upload [" + uploadId + "], " + completed.size() + " of " + chunks +
+                               " chunks already uploaded");
+        }
+
+        final ThreadFactory threadFactory = new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "aiq-chunk-upload");
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, chunks), threadFactory);
+
+        try {
+            for (int attempt = 0; attempt <= retries; attempt++) {
+                final List<Integer> pending = pending(chunks);
+                if (pending.isEmpty()) {
+                    break;
+                }
+
+                if (attempt > 0) {
+                    mojo.getLog().info("Retrying " + pending.size() + " failed chunks");
+                }
+
+                uploadChunks(executor, pending, size, chunks);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        final List<Integer> failed = pending(chunks);
+        if (!failed.isEmpty()) {
+            throw new MojoFailureException("Failed to upload " + failed.size() + " of " + chunks +
+                                           " chunks of integration adapter, run the goal again to resume the upload");
+        }
+
+        complete(size, chunks);
+    }
+
+    /**
+     * Uploads given chunks concurrently and records the ones accepted by the server.
+     */
+    private void uploadChunks(final ExecutorService executor,
+                              final List<Integer> pending,
+                              final long size,
+                              final int chunks) throws MojoFailureException {
+        final List<Future<Integer>> futures = new ArrayList<>(pending.size());
+        for (final Integer index : pending) {
+            futures.add(executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    uploadChunk(index, size, chunks);
+                    return index;
+                }
+            }));
+        }
+
+        for (Future<Integer> future : futures) {
+            try {
+                final Integer index = future.get();
+                synchronized (completed) {
+                    completed.add(index);
+                }
+                storeManifest(size);
+            } catch (ExecutionException e) {
+                mojo.getLog().warn("Chunk upload failed: " + e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MojoFailureException("Upload interrupted");
+            }
+        }
+    }
+
+    /**
+     * Uploads a single chunk.
+     */
+    private void uploadChunk(final int index, final long size, final int chunks)
+            throws MojoExecutionException, MojoFailureException, IOException {
+        final long offset = index * chunkSize;
+        final long length = Math.min(chunkSize, size - offset);
+
+        final HttpPost post = new HttpPost(mojo.buildIntegrationURI(
+                session.getUrl(),
+                session.getOrgName(),
+                "ia.deploy.chunk",
+                new BasicNameValuePair("upload", uploadId),
+                new BasicNameValuePair("index", Integer.toString(index)),
+                new BasicNameValuePair("offset", Long.toString(offset)),
+                new BasicNameValuePair("total", Integer.toString(chunks))));
+        post.setEntity(new FileRangeEntity(file, offset, length));
+
+        final HttpResponse response = mojo.executeAuthenticated(session, post);
+        try {
+            if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
+                throw new MojoFailureException("Failed to upload chunk [" + index + "], the status code is [" +
+                                               response.getStatusLine().getStatusCode() + "] and error message is [" +
+                                               response.getStatusLine().getReasonPhrase() + "]");
+            }
+        } finally {
+            AbstractAIQMojo.consume(response);
+        }
+
+        mojo.getLog().debug("Uploaded chunk [" + index + "] of [" + chunks + "]");
+    }
+
+    /**
+     * Asks the server to assemble the uploaded chunks and deploy the artifact.
+     */
+    private void complete(final long size, final int chunks) throws MojoExecutionException, MojoFailureException {
+        final HttpPost post = new HttpPost(mojo.buildIntegrationURI(
+                session.getUrl(),
+                session.getOrgName(),
+                "ia.deploy.complete",
+                new BasicNameValuePair("upload", uploadId),
+                new BasicNameValuePair("chunks", Integer.toString(chunks)),
+                new BasicNameValuePair("size", Long.toString(size)),
+                new BasicNameValuePair("sha256", digest)));
+
+        try {
+            final HttpResponse response = mojo.executeAuthenticated(session, post);
+            try {
+                if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
+                    throw new MojoFailureException("Failed to complete upload, the status code is [" +
+                            response.getStatusLine().getStatusCode() + "] and error message is [" +
+                            response.getStatusLine().getReasonPhrase() + "]");
+                }
+            } finally {
+                AbstractAIQMojo.consume(response);
+            }
+        } catch (IOException e) {
+            throw new MojoFailureException(e.getMessage());
+        }
+
+        manifestFile.delete();
+    }
+
+    private List<Integer> pending(final int chunks) {
+        final List<Integer> pending = new ArrayList<>();
+        synchronized (completed) {
+            for (int i = 0; i < chunks; i++) {
+                if (!completed.contains(i)) {
+                    pending.add(i);
+                }
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * Loads the manifest of an interrupted upload of the same artifact, or starts a new upload.
+     */
+    private void loadManifest(final long size) {
+        try {
+            final Properties properties = PropertiesUtil.getInstance().loadProperties(manifestFile);
+            if (properties != null &&
+                digest.equals(properties.getProperty(DIGEST_KEY)) &&
+                Long.toString(size).equals(properties.getProperty(SIZE_KEY)) &&
+                Long.toString(chunkSize).equals(properties.getProperty(CHUNK_SIZE_KEY)) &&
+                properties.getProperty(UPLOAD_ID_KEY) != null) {
+                uploadId = properties.getProperty(UPLOAD_ID_KEY);
+                for (String index : properties.getProperty(COMPLETED_KEY, "").split(",")) {
+                    if (index.length() > 0) {
+                        completed.add(Integer.valueOf(index));
+                    }
+                }
+                return;
+            }
+        } catch (IOException | NumberFormatException e) {
+            mojo.getLog().warn("Could not read upload manifest [" + manifestFile + "]: " + e.getMessage());
+        }
+
+        uploadId = UUID.randomUUID().toString();
+        completed.clear();
+    }
+
+    private void storeManifest(final long size) {
+        final StringBuilder indices = new StringBuilder();
+        synchronized (completed) {
+            for (Integer index : completed) {
+                if (indices.length() > 0) {
+                    indices.append(',');
+                }
+                indices.append(index);
+            }
+        }
+
+        final Properties properties = new Properties();
+        properties.setProperty(UPLOAD_ID_KEY, uploadId);
+        properties.setProperty(DIGEST_KEY, digest);
+        properties.setProperty(SIZE_KEY, Long.toString(size));
+        properties.setProperty(CHUNK_SIZE_KEY, Long.toString(chunkSize));
+        properties.setProperty(COMPLETED_KEY, indices.toString());
+
+        try {
+            PropertiesUtil.getInstance().storeProperties(properties, manifestFile);
+        } catch (IOException e) {
+            mojo.getLog().warn("Could not write upload manifest [" + manifestFile + "]: " + e.getMessage());
+        }
+    }
+}
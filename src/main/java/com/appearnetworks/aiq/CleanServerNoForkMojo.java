@@ -0,0 +1,11 @@
+package com.appearnetworks.aiq;
+
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+
+/**
+ * Cleans the organization data without forking an initialize lifecycle.
+ */
+@Mojo(name = "server.clean-no-fork", defaultPhase = LifecyclePhase.PRE_INTEGRATION_TEST)
+public class CleanServerNoForkMojo extends AbstractCleanServerMojo {
+}
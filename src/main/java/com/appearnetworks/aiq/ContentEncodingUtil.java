@@ -0,0 +1,99 @@
+package com.appearnetworks.aiq;
+
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.entity.DeflateDecompressingEntity;
+import org.apache.http.client.entity.GzipDecompressingEntity;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Helpers for negotiating compressed responses. Logs are plain text which compresses about tenfold, so log requests
+ * accept gzip and deflate, and the content of a compressed response is decompressed incrementally as it is read,
+ * without ever holding more than a buffer of it in memory.
+ */
+public final class ContentEncodingUtil {
+
+    /**
+     * The name of the gzip content coding.
+     */
+    public static final String GZIP = "gzip";
+
+    /**
+     * The name of the deflate content coding.
+     */
+    public static final String DEFLATE = "deflate";
+
+    private static final String ACCEPTED_ENCODINGS = GZIP + ", " + DEFLATE;
+
+    private ContentEncodingUtil() {
+    }
+
+    /**
+     * Makes given request accept a compressed response.
+     *
+     * @param request request to accept compression, must not be null.
+     */
+    public static void acceptCompressed(final HttpRequest request) {
+        request.setHeader(HttpHeaders.ACCEPT_ENCODING, ACCEPTED_ENCODINGS);
+    }
+
+    /**
+     * Returns the content coding of given response.
+     *
+     * @param response response, must not be null.
+     * @return the content coding in lower case, or null if the content is not encoded.
+     * @throws IOException if the content is encoded more than once.
+     */
+    public static String getContentEncoding(final HttpResponse response) throws IOException {
+        final HttpEntity entity = response.getEntity();
+        final Header header = entity != null ? entity.getContentEncoding() : null;
+        if (header == null) {
+            return null;
+        }
+
+        final HeaderElement[] codings = header.getElements();
+        if (codings.length == 0) {
+            return null;
+        }
+        if (codings.length > 1) {
+            throw new IOException("Unsupported content encoding [" + header.getValue() + "]");
+        }
+
+        final String coding = codings[0].getName().toLowerCase(Locale.ENGLISH);
+        return "identity".equals(coding) ? null : coding;
+    }
+
+    /**
+     * Replaces the entity of given response with one which decompresses the content as it is read, if the content is
+     * compressed.
+     *
+     * @param response response to decompress, must not be null.
+     * @throws IOException if the content is encoded with an unsupported coding.
+     */
+    public static void decompress(final HttpResponse response) throws IOException {
+        final String coding = getContentEncoding(response);
+        if (coding == null) {
+            return;
+        }
+
+        final HttpEntity entity = response.getEntity();
+        if (GZIP.equals(coding) || "x-gzip".equals(coding)) {
+            response.setEntity(new GzipDecompressingEntity(entity));
+        } else if (DEFLATE.equals(coding)) {
+            response.setEntity(new DeflateDecompressingEntity(entity));
+        } else {
+            throw new IOException("Unsupported content encoding [" + coding + "]");
+        }
+
+        // the length and digest describe the compressed content
+        response.removeHeaders(HttpHeaders.CONTENT_LENGTH);
+        response.removeHeaders(HttpHeaders.CONTENT_ENCODING);
+        response.removeHeaders(HttpHeaders.CONTENT_MD5);
+    }
+}
@@ -0,0 +1,187 @@
+package com.appearnetworks.aiq;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Stream suppressing log entries which have already been written within a window of the most recent distinct entries,
+ * such as the entries replayed after a reconnect.
+ *
+ * An entry is a line starting with a timestamp, with the lines following it without a timestamp, such as the frames of
+ * a stack trace. Only the first line of an entry is compared, and the lines following it are written or suppressed
+ * with it, as they legitimately repeat across entries. Lines before the first timestamp are always written.
+ *
+ * Entries are identified by a 64-bit FNV-1a hash of their first line. The hashes of the window are kept in a ring, and
+ * in an open-addressing table with linear probing of at least twice the window size, so memory use is fixed by the
+ * window size and no memory is allocated per line.
+ */
+public class DedupOutputStream extends LineOutputStream {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static final long GOLDEN_RATIO = 0x9e3779b97f4a7c15L;
+
+    /**
+     * Marks an empty slot of the table, the hash of a line is never zero.
+     */
+    private static final long EMPTY = 0;
+
+    /**
+     * Largest window size, for which the table takes 2 MB.
+     */
+    public static final int MAX_WINDOW_SIZE = 1 << 16;
+
+    private final Log log;
+
+    private final byte[] timestamp = new byte[LogTimestamp.LENGTH];
+
+    private final long[] window;
+
+    private final long[] table;
+
+    private final int shift;
+
+    private final int mask;
+
+    private int next;
+
+    private int size;
+
+    private boolean suppressing;
+
+    private long suppressed;
+
+    /**
+     * Creates a new stream.
+     *
+     * @param output stream to write the distinct lines to, must not be null.
+     * @param windowSize number of most recent distinct entries among which duplicates are suppressed, must be positive
+     *                   and at most {@value #MAX_WINDOW_SIZE}.
+     * @param log log to report the number of suppressed lines to, must not be null.
+     */
+    public DedupOutputStream(final OutputStream output, final int windowSize, final Log log) {
+        super(output);
+        if (windowSize <= 0 || windowSize > MAX_WINDOW_SIZE) {
+            throw new IllegalArgumentException("Invalid dedup window size " + windowSize);
+        }
+
+        this.log = log;
+        this.window = new long[windowSize];
+
+        final int capacity = Integer.highestOneBit(windowSize) << 2;
+        this.table = new long[capacity];
+        this.shift = 64 - Integer.numberOfTrailingZeros(capacity);
+        this.mask = capacity - 1;
+    }
+
+    @Override
+    protected void writeLine(final byte[] line, final int length) throws IOException {
+        if (!LogTimestamp.parse(line, length, timestamp)) {
+            // a line continuing the current entry
+            if (suppressing) {
+                suppressed++;
+            } else {
+                output.write(line, 0, length);
+            }
+            return;
+        }
+
+        final long hash = hash(line, length);
+        suppressing = contains(hash);
+        if (suppressing) {
+            suppressed++;
+            return;
+        }
+
+        if (size == window.length) {
+            remove(window[next]);
+        } else {
+            size++;
+        }
+        window[next] = hash;
+        next = (next + 1) % window.length;
+        insert(hash);
+
+        output.write(line, 0, length);
+    }
+
+    @Override
+    public void close() throws IOException {
+        super.close();
+        if (suppressed > 0) {
+            log.info("Suppressed " + suppressed + " duplicate log lines");
+        }
+    }
+
+    /**
+     * @return number of lines suppressed so far.
+     */
+    public long getSuppressed() {
+        return suppressed;
+    }
+
+    private boolean contains(final long hash) {
+        for (int i = index(hash); table[i] != EMPTY; i = (i + 1) & mask) {
+            if (table[i] == hash) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void insert(final long hash) {
+        int i = index(hash);
+        while (table[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        table[i] = hash;
+    }
+
+    /**
+     * Removes given hash, shifting back the entries which follow it in its probe sequence so that no tombstones are
+     * needed.
+     */
+    private void remove(final long hash) {
+        int i = index(hash);
+        while (table[i] != hash) {
+            if (table[i] == EMPTY) {
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (table[j] == EMPTY) {
+                break;
+            }
+
+            // the entry at j may move to i only if its home slot is not cyclically within (i, j]
+            final int home = index(table[j]);
+            if (i <= j ? i < home && home <= j : i < home || home <= j) {
+                continue;
+            }
+            table[i] = table[j];
+            i = j;
+        }
+        table[i] = EMPTY;
+    }
+
+    private int index(final long hash) {
+        return (int) ((hash * GOLDEN_RATIO) >>> shift) & mask;
+    }
+
+    private static long hash(final byte[] line, final int length) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < length; i++) {
+            hash ^= line[i] & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return hash == EMPTY ? 1 : hash;
+    }
+}
@@ -0,0 +1,120 @@
+package com.appearnetworks.aiq;
+
+import org.apache.http.entity.mime.MIME;
+import org.apache.http.entity.mime.content.AbstractContentBody;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Multipart body carrying the difference between two versions of an integration adapter archive.
+ *
+ * The patch is a zip archive holding the added and changed entries of the new archive at their original paths, plus
+ * a {@value #DESCRIPTOR_NAME} entry listing the digests of the base and target archives and the names of removed
+ * entries. The patch is streamed straight from the new archive while it is uploaded.
+ */
+public class DeltaPatchBody extends AbstractContentBody {
+
+    /**
+     * The name of the patch entry describing the patch.
+     */
+    public static final String DESCRIPTOR_NAME = "META-INF/aiq-delta.txt";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File archive;
+
+    private final String baseDigest;
+
+    private final String targetDigest;
+
+    private final List<String> changed;
+
+    private final List<String> removed;
+
+    /**
+     * Creates a new body.
+     *
+     * @param archive the new archive, must not be null.
+     * @param baseDigest hex encoded SHA-256 digest of the deployed archive, must not be null.
+     * @param targetDigest hex encoded SHA-256 digest of the new archive, must not be null.
+     * @param changed names of the entries added or changed in the new archive, must not be null.
+     * @param removed names of the entries removed from the new archive, must not be null.
+     */
+    public DeltaPatchBody(final File archive,
+                          final String baseDigest,
+                          final String targetDigest,
+                          final List<String> changed,
+                          final List<String> removed) {
+        super("application/zip");
+        this.archive = archive;
+        this.baseDigest = baseDigest;
+        this.targetDigest = targetDigest;
+        this.changed = changed;
+        this.removed = removed;
+    }
+
+    @Override
+    public String getFilename() {
+        return archive.getName() + ".delta.zip";
+    }
+
+    @Override
+    public String getCharset() {
+        return null;
+    }
+
+    @Override
+    public String getTransferEncoding() {
+        return MIME.ENC_BINARY;
+    }
+
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(final OutputStream output) throws IOException {
+        final ZipOutputStream patch = new ZipOutputStream(new NonClosingOutputStream(output));
+        final byte[] buffer = new byte[BUFFER_SIZE];
+
+        try (ZipFile zip = new ZipFile(archive)) {
+            patch.putNextEntry(new ZipEntry(DESCRIPTOR_NAME));
+            patch.write(descriptor().getBytes(AbstractAIQMojo.UTF8_ENCODING));
+            patch.closeEntry();
+
+            for (String name : changed) {
+                final ZipEntry entry = zip.getEntry(name);
+                final ZipEntry copy = new ZipEntry(name);
+                copy.setTime(entry.getTime());
+                patch.putNextEntry(copy);
+                try (InputStream input = zip.getInputStream(entry)) {
+                    int read;
+                    while ((read = input.read(buffer)) != -1) {
+                        patch.write(buffer, 0, read);
+                    }
+                }
+                patch.closeEntry();
+            }
+        }
+
+        patch.close();
+    }
+
+    private String descriptor() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("base=").append(baseDigest).append('\n');
+        builder.append("target=").append(targetDigest).append('\n');
+        for (String name : removed) {
+            builder.append("removed=").append(name).append('\n');
+        }
+        return builder.toString();
+    }
+}
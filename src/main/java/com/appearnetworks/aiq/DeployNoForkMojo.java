@@ -0,0 +1,11 @@
+package com.appearnetworks.aiq;
+
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+
+/**
+ * Deploys the integration adapter without forking a package lifecycle.
+ */
+@Mojo(name = "ia.deploy-no-fork", defaultPhase = LifecyclePhase.PRE_INTEGRATION_TEST)
+public class DeployNoForkMojo extends AbstractDeployMojo {
+}
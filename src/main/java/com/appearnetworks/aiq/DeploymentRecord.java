@@ -0,0 +1,192 @@
+package com.appearnetworks.aiq;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+
+/**
+ * Record of an integration adapter artifact successfully deployed to an organization, persisted as a properties file.
+ */
+public class DeploymentRecord {
+
+    private static final String URL_KEY = "url";
+    private static final String ORG_KEY = "orgName";
+    private static final String PATH_KEY = "path";
+    private static final String SIZE_KEY = "size";
+    private static final String LAST_MODIFIED_KEY = "lastModified";
+    private static final String DIGEST_KEY = "sha256";
+    private static final String DEPLOYED_AT_KEY = "deployedAt";
+
+    private final String url;
+
+    private final String orgName;
+
+    private final String path;
+
+    private final long size;
+
+    private final long lastModified;
+
+    private final String digest;
+
+    private final long deployedAt;
+
+    /**
+     * Creates a new record.
+     *
+     * @param url URL of the integration supervisor, must not be null.
+     * @param orgName The name of the organization, must not be null.
+     * @param path absolute path of the deployed artifact, must not be null.
+     * @param size size of the deployed artifact in bytes.
+     * @param lastModified last modification time of the deployed artifact.
+     * @param digest hex encoded SHA-256 digest of the deployed artifact, must not be null.
+     * @param deployedAt time in milliseconds since epoch at which the artifact was deployed.
+     */
+    public DeploymentRecord(final String url,
+                            final String orgName,
+                            final String path,
+                            final long size,
+                            final long lastModified,
+                            final String digest,
+                            final long deployedAt) {
+        this.url = url;
+        this.orgName = orgName;
+        this.path = path;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.digest = digest;
+        this.deployedAt = deployedAt;
+    }
+
+    /**
+     * Returns the file in which the last deployment to given organization is recorded for the current user.
+     *
+     * @param url URL of the integration supervisor, must not be null.
+     * @param orgName The name of the organization, must not be null.
+     * @return record file, will not be null.
+     */
+    public static File userFile(final String url, final String orgName) {
+        return userFile(url, orgName, ".properties");
+    }
+
+    /**
+     * Returns the file in which the entry index of the archive last deployed to given organization is kept for the
+     * current user.
+     *
+     * @param url URL of the integration supervisor, must not be null.
+     * @param orgName The name of the organization, must not be null.
+     * @return index file, will not be null.
+     */
+    public static File userIndexFile(final String url, final String orgName) {
+        return userFile(url, orgName, ".entries");
+    }
+
+    private static File userFile(final String url, final String orgName, final String suffix) {
+        final File directory = new File(new File(System.getProperty("user.home"), ".aiq"), "deployments");
+        return new File(directory, DigestUtil.sha256Hex(url + '\n' + orgName) + suffix);
+    }
+
+    /**
+     * Loads a record from given file.
+     *
+     * @param file file to load, must not be null.
+     * @return the record, or null if the file does not exist or is not a valid record.
+     * @throws IOException if the file could not be read.
+     */
+    public static DeploymentRecord load(final File file) throws IOException {
+        final Properties properties = PropertiesUtil.getInstance().loadProperties(file);
+        if (properties == null ||
+            properties.getProperty(URL_KEY) == null ||
+            properties.getProperty(ORG_KEY) == null ||
+            properties.getProperty(DIGEST_KEY) == null) {
+            return null;
+        }
+
+        try {
+            return new DeploymentRecord(properties.getProperty(URL_KEY),
+                                        properties.getProperty(ORG_KEY),
+                                        properties.getProperty(PATH_KEY, ""),
+                                        Long.parseLong(properties.getProperty(SIZE_KEY, "-1")),
+                                        Long.parseLong(properties.getProperty(LAST_MODIFIED_KEY, "-1")),
+                                        properties.getProperty(DIGEST_KEY),
+                                        Long.parseLong(properties.getProperty(DEPLOYED_AT_KEY, "0")));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Stores this record to given file, replacing it atomically.
+     *
+     * @param file file to write, must not be null.
+     * @throws IOException if the file could not be written.
+     */
+    public void store(final File file) throws IOException {
+        final Properties properties = new Properties();
+        properties.setProperty(URL_KEY, url);
+        properties.setProperty(ORG_KEY, orgName);
+        properties.setProperty(PATH_KEY, path);
+        properties.setProperty(SIZE_KEY, Long.toString(size));
+        properties.setProperty(LAST_MODIFIED_KEY, Long.toString(lastModified));
+        properties.setProperty(DIGEST_KEY, digest);
+        properties.setProperty(DEPLOYED_AT_KEY, Long.toString(deployedAt));
+
+        PropertiesUtil.getInstance().storeProperties(properties, file);
+    }
+
+    /**
+     * Checks whether this record describes a deployment of given content to given organization.
+     *
+     * @param url URL of the integration supervisor, must not be null.
+     * @param orgName The name of the organization, must not be null.
+     * @param digest hex encoded SHA-256 digest of the artifact, must not be null.
+     * @return true if the same content has been deployed to the organization.
+     */
+    public boolean matches(final String url, final String orgName, final String digest) {
+        return this.url.equals(url) && this.orgName.equals(orgName) && this.digest.equals(digest);
+    }
+
+    /**
+     * Checks whether this record describes a deployment of given file, unmodified since, to given organization.
+     *
+     * @param url URL of the integration supervisor, must not be null.
+     * @param orgName The name of the organization, must not be null.
+     * @param file the artifact, must not be null.
+     * @return true if the file has the recorded path, size and modification time.
+     */
+    public boolean matchesFile(final String url, final String orgName, final File file) {
+        return this.url.equals(url) &&
+               this.orgName.equals(orgName) &&
+               path.equals(file.getAbsolutePath()) &&
+               size == file.length() &&
+               lastModified == file.lastModified();
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getOrgName() {
+        return orgName;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public String getDigest() {
+        return digest;
+    }
+
+    public long getDeployedAt() {
+        return deployedAt;
+    }
+}
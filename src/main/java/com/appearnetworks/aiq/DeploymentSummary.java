@@ -0,0 +1,160 @@
+package com.appearnetworks.aiq;
+
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginExecution;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Outcome of the deployments of all modules of the reactor, logged once the last module is done.
+ *
+ * The modules which deploy are the modules of the reactor binding a deployment goal, or all modules if a deployment
+ * goal is given on the command line. Modules may finish in any order in a parallel build, so the summary is logged by
+ * whichever deploying module records its outcome last. The outcomes are kept per build, so that the outcomes of a build
+ * which failed before logging its summary are dropped when another build running in the same JVM records one.
+ */
+public final class DeploymentSummary {
+
+    /**
+     * Outcome of a deployment.
+     */
+    public enum Status {
+        DEPLOYED("deployed"),
+        UNCHANGED("skipped, not repackaged"),
+        UP_TO_DATE("skipped, up to date"),
+        FAILED("failed");
+
+        private final String description;
+
+        Status(final String description) {
+            this.description = description;
+        }
+    }
+
+    /**
+     * The names of the goals deploying a module.
+     */
+    private static final String[] DEPLOY_GOALS = {"ia.deploy", "ia.deploy-no-fork"};
+
+    private static final String PLUGIN_ARTIFACT_ID = "integration-maven-plugin";
+
+    private static final List<String> MODULES = new ArrayList<>();
+
+    private static final List<Status> STATUSES = new ArrayList<>();
+
+    /**
+     * The build of the recorded outcomes.
+     */
+    private static Object currentBuild;
+
+    private DeploymentSummary() {
+    }
+
+    /**
+     * Records the outcome of the deployment of a module.
+     *
+     * @param build identifies the build, such as its start time, or null if not known.
+     * @param module the name of the module, must not be null.
+     * @param status outcome of the deployment, must not be null.
+     * @return number of deployments recorded since the summary was last logged.
+     */
+    public static synchronized int record(final Object build, final String module, final Status status) {
+        if (!Objects.equals(build, currentBuild)) {
+            MODULES.clear();
+            STATUSES.clear();
+            currentBuild = build;
+        }
+        MODULES.add(module);
+        STATUSES.add(status);
+        return MODULES.size();
+    }
+
+    /**
+     * Counts the modules of the reactor which run a deployment goal.
+     *
+     * @param goals goals given on the command line, may be null if unknown.
+     * @param projects the modules of the reactor, may be null if unknown.
+     * @return number of modules deploying, or -1 if it could not be determined.
+     */
+    public static int countDeployingModules(final List<String> goals, final List<MavenProject> projects) {
+        if (goals == null || projects == null || projects.isEmpty()) {
+            return -1;
+        }
+
+        for (String goal : goals) {
+            if (isDeployGoal(goal)) {
+                return projects.size();
+            }
+        }
+
+        int count = 0;
+        for (MavenProject project : projects) {
+            if (bindsDeployGoal(project)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Logs the outcome of all recorded deployments and starts a new summary.
+     *
+     * @param log log to write to, must not be null.
+     */
+    public static synchronized void log(final Log log) {
+        if (MODULES.isEmpty()) {
+            return;
+        }
+
+        int deployed = 0;
+        log.info("Integration adapter deployment summary:");
+        for (int i = 0; i < MODULES.size(); i++) {
+            log.info("  " + MODULES.get(i) + " ... " + STATUSES.get(i).description);
+            if (STATUSES.get(i) == Status.DEPLOYED) {
+                deployed++;
+            }
+        }
+        log.info("Deployed " + deployed + " of " + MODULES.size() + " integration adapters");
+
+        MODULES.clear();
+        STATUSES.clear();
+    }
+
+    /**
+     * @return whether the build plugins of given project run a deployment goal.
+     */
+    @SuppressWarnings("unchecked")
+    private static boolean bindsDeployGoal(final MavenProject project) {
+        for (Plugin plugin : (List<Plugin>) project.getBuildPlugins()) {
+            if (!PLUGIN_ARTIFACT_ID.equals(plugin.getArtifactId())) {
+                continue;
+            }
+            for (PluginExecution execution : (List<PluginExecution>) plugin.getExecutions()) {
+                for (String goal : (List<String>) execution.getGoals()) {
+                    if (isDeployGoal(goal)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return whether given goal, optionally qualified with the plugin and an execution, is a deployment goal.
+     */
+    private static boolean isDeployGoal(final String goal) {
+        final int execution = goal.indexOf('@');
+        final String name = goal.substring(goal.lastIndexOf(':') + 1, execution >= 0 ? execution : goal.length());
+        for (String deployGoal : DEPLOY_GOALS) {
+            if (deployGoal.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,92 @@
+package com.appearnetworks.aiq;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Helpers for computing hex encoded message digests.
+ */
+public final class DigestUtil {
+
+    /**
+     * The name of the digest algorithm used throughout the plugin.
+     */
+    public static final String SHA_256 = "SHA-256";
+
+    /**
+     * Size of the buffer used when digesting files.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private DigestUtil() {
+    }
+
+    /**
+     * Creates a new SHA-256 message digest.
+     *
+     * @return message digest, will not be null.
+     */
+    public static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance(SHA_256);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by the platform", e);
+        }
+    }
+
+    /**
+     * Returns hex encoded SHA-256 digest of the UTF-8 representation of given string.
+     *
+     * @param value string to digest, must not be null.
+     * @return hex encoded digest, will not be null.
+     */
+    public static String sha256Hex(final String value) {
+        try {
+            return toHex(newSha256().digest(value.getBytes(AbstractAIQMojo.UTF8_ENCODING)));
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns hex encoded SHA-256 digest of the content of given file. The file is streamed through the digest, so
+     * memory use does not depend on the file size.
+     *
+     * @param file file to digest, must not be null.
+     * @return hex encoded digest, will not be null.
+     * @throws IOException if the file could not be read.
+     */
+    public static String sha256Hex(final File file) throws IOException {
+        final MessageDigest digest = newSha256();
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream input = new FileInputStream(file)) {
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Encodes given bytes as a lower case hex string.
+     *
+     * @param bytes bytes to encode, must not be null.
+     * @return hex string, will not be null.
+     */
+    public static String toHex(final byte[] bytes) {
+        final char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0x0f];
+            chars[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0x0f];
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,17 @@
+package com.appearnetworks.aiq;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+
+/**
+ * Fetches the integration adapter logs without forking an initialize lifecycle.
+ */
+@Mojo(name = "ia.logs-no-fork")
+public class FetchIALogsNoForkMojo extends AbstractFetchLogsMojo {
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        execute("ia.logs");
+    }
+}
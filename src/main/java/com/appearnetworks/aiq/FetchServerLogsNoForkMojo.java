@@ -0,0 +1,17 @@
+package com.appearnetworks.aiq;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+
+/**
+ * Fetches the server logs without forking an initialize lifecycle.
+ */
+@Mojo(name = "server.logs-no-fork")
+public class FetchServerLogsNoForkMojo extends AbstractFetchLogsMojo {
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        execute("server.logs");
+    }
+}
@@ -0,0 +1,123 @@
+package com.appearnetworks.aiq;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Repeatable entity streaming a byte range of a file.
+ */
+public class FileRangeEntity extends AbstractHttpEntity {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+
+    private final long offset;
+
+    private final long length;
+
+    /**
+     * Creates a new entity.
+     *
+     * @param file file from which to read, must not be null.
+     * @param offset position of the first byte of the range within the file.
+     * @param length number of bytes in the range.
+     */
+    public FileRangeEntity(final File file, final long offset, final long length) {
+        this.file = file;
+        this.offset = offset;
+        this.length = length;
+        setContentType(ContentType.APPLICATION_OCTET_STREAM.toString());
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return length;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        final FileInputStream input = new FileInputStream(file);
+        try {
+            input.getChannel().position(offset);
+        } catch (IOException e) {
+            input.close();
+            throw e;
+        }
+        return new RangeInputStream(input, length);
+    }
+
+    @Override
+    public void writeTo(final OutputStream output) throws IOException {
+        try (InputStream input = getContent()) {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            output.flush();
+        }
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+    /**
+     * Stream returning at most given number of bytes from the underlying stream.
+     */
+    private static class RangeInputStream extends InputStream {
+
+        private final InputStream input;
+
+        private long remaining;
+
+        RangeInputStream(final InputStream input, final long length) {
+            this.input = input;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+
+            final int b = input.read();
+            if (b != -1) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+
+            final int read = input.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.appearnetworks.aiq;
+
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.protocol.HTTP;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Entity compressing the wrapped entity with gzip while it is written to the connection. Nothing is buffered beyond
+ * the compressor window, so the memory use does not depend on the size of the wrapped entity.
+ *
+ * The number of bytes before and after compression and the time spent writing are recorded for the last write.
+ */
+public class GzipUploadEntity extends HttpEntityWrapper {
+
+    private static final String GZIP_CODEC = "gzip";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private volatile long uncompressedBytes;
+
+    private volatile long compressedBytes;
+
+    private volatile long elapsed;
+
+    /**
+     * Creates a new entity.
+     *
+     * @param entity entity to compress, must not be null.
+     */
+    public GzipUploadEntity(final HttpEntity entity) {
+        super(entity);
+    }
+
+    @Override
+    public Header getContentEncoding() {
+        return new BasicHeader(HTTP.CONTENT_ENCODING, GZIP_CODEC);
+    }
+
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    @Override
+    public boolean isChunked() {
+        return true;
+    }
+
+    /**
+     * Returns the compressed content, compressed by a background thread as it is read, so that the content is
+     * available to callers which read the entity instead of writing it, such as wrappers logging or buffering it.
+     *
+     * @return stream of the compressed content, will not be null.
+     * @throws IOException if the stream could not be created, or, when reading it, if compressing failed.
+     */
+    @Override
+    public InputStream getContent() throws IOException {
+        final CompressedInputStream input = new CompressedInputStream();
+        final PipedOutputStream output = new PipedOutputStream(input);
+
+        final Thread compressor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    writeTo(output);
+                } catch (IOException e) {
+                    input.failure = e;
+                } finally {
+                    try {
+                        output.close();
+                    } catch (IOException ignore) {
+                        // the reader has gone
+                    }
+                }
+            }
+        }, "aiq-gzip-upload");
+        compressor.setDaemon(true);
+        compressor.start();
+        return input;
+    }
+
+    @Override
+    public void writeTo(final OutputStream output) throws IOException {
+        final long start = System.nanoTime();
+
+        final CountingOutputStream compressed = new CountingOutputStream(output) {
+            @Override
+            public void close() throws IOException {
+                // the connection stream is closed by the client once the entity is written
+                flush();
+            }
+        };
+        final CountingOutputStream uncompressed = new CountingOutputStream(
+                new GZIPOutputStream(compressed, BUFFER_SIZE));
+        wrappedEntity.writeTo(uncompressed);
+        uncompressed.close();
+
+        uncompressedBytes = uncompressed.getByteCount();
+        compressedBytes = compressed.getByteCount();
+        elapsed = System.nanoTime() - start;
+    }
+
+    /**
+     * @return number of bytes of the wrapped entity written by the last write.
+     */
+    public long getUncompressedBytes() {
+        return uncompressedBytes;
+    }
+
+    /**
+     * @return number of compressed bytes sent to the connection by the last write.
+     */
+    public long getCompressedBytes() {
+        return compressedBytes;
+    }
+
+    /**
+     * @return duration of the last write in milliseconds.
+     */
+    public long getElapsedMillis() {
+        return elapsed / 1000000;
+    }
+
+    /**
+     * Pipe receiving the compressed content, failing once drained if compressing failed.
+     */
+    private static class CompressedInputStream extends PipedInputStream {
+
+        private volatile IOException failure;
+
+        CompressedInputStream() {
+            super(BUFFER_SIZE);
+        }
+
+        @Override
+        public synchronized int read() throws IOException {
+            final int b = super.read();
+            if (b < 0 && failure != null) {
+                throw failure;
+            }
+            return b;
+        }
+
+        @Override
+        public synchronized int read(final byte[] buffer, final int offset, final int length) throws IOException {
+            final int read = super.read(buffer, offset, length);
+            if (read < 0 && failure != null) {
+                throw failure;
+            }
+            return read;
+        }
+    }
+}
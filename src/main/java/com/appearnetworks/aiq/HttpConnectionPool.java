@@ -0,0 +1,255 @@
+package com.appearnetworks.aiq;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.params.HttpClientParams;
+import org.apache.http.conn.ClientConnectionRequest;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool of persistent connections shared by the authentication requests and all goal requests of the plugin.
+ *
+ * Connections are kept alive for as long as the server allows, or for the configured keep-alive time when the server
+ * does not say, and a background thread evicts connections which stay idle for longer than the idle timeout. The
+ * thread only runs while the pool holds connections, so that an idle pool holds neither sockets nor threads once the
+ * build is over, also in an embedded or daemon Maven which keeps the plugin loaded.
+ *
+ * Connecting, waiting for data and waiting for a connection from the pool are all bounded by timeouts, so that a
+ * dropped connection or an exhausted pool fails the request instead of hanging the build.
+ */
+public class HttpConnectionPool {
+
+    private static HttpConnectionPool sharedInstance;
+
+    private final EvictingConnectionManager connectionManager;
+
+    private final DefaultHttpClient client;
+
+    private final KeepAliveStrategy keepAliveStrategy;
+
+    private int maxPerRoute;
+
+    /**
+     * Creates a new pool.
+     *
+     * @param maxTotal maximum number of connections in the pool.
+     * @param maxPerRoute maximum number of connections to a single host.
+     * @param keepAlive number of milliseconds to keep connections alive when the server does not specify it.
+     * @param idleTimeout number of milliseconds after which idle connections are closed.
+     * @param connectTimeout number of milliseconds to wait for a connection to be established, or 0 to wait forever.
+     * @param socketTimeout number of milliseconds to wait for data from the server, or 0 to wait forever.
+     * @param connectionRequestTimeout number of milliseconds to wait for a connection from the pool, or 0 to wait
+     *                                 forever.
+     */
+    public HttpConnectionPool(final int maxTotal,
+                              final int maxPerRoute,
+                              final long keepAlive,
+                              final long idleTimeout,
+                              final int connectTimeout,
+                              final int socketTimeout,
+                              final long connectionRequestTimeout) {
+        connectionManager = new EvictingConnectionManager(idleTimeout);
+        connectionManager.setMaxTotal(maxTotal);
+        connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+        this.maxPerRoute = maxPerRoute;
+        keepAliveStrategy = new KeepAliveStrategy(keepAlive);
+
+        client = new DefaultHttpClient(connectionManager);
+        client.setKeepAliveStrategy(keepAliveStrategy);
+
+        configure(maxTotal, maxPerRoute, keepAlive, idleTimeout, connectTimeout, socketTimeout,
+                  connectionRequestTimeout);
+    }
+
+    /**
+     * Returns the pool shared by the whole build, creating it with given settings on first use. Later calls apply
+     * their settings to the shared pool, except that the connection limits are only ever raised, so that a goal never
+     * starves another one running in parallel.
+     *
+     * @param maxTotal maximum number of connections in the pool.
+     * @param maxPerRoute maximum number of connections to a single host.
+     * @param keepAlive number of milliseconds to keep connections alive when the server does not specify it.
+     * @param idleTimeout number of milliseconds after which idle connections are closed.
+     * @param connectTimeout number of milliseconds to wait for a connection to be established, or 0 to wait forever.
+     * @param socketTimeout number of milliseconds to wait for data from the server, or 0 to wait forever.
+     * @param connectionRequestTimeout number of milliseconds to wait for a connection from the pool, or 0 to wait
+     *                                 forever.
+     * @return the shared pool, will not be null.
+     */
+    public static synchronized HttpConnectionPool shared(final int maxTotal,
+                                                         final int maxPerRoute,
+                                                         final long keepAlive,
+                                                         final long idleTimeout,
+                                                         final int connectTimeout,
+                                                         final int socketTimeout,
+                                                         final long connectionRequestTimeout) {
+        if (sharedInstance == null) {
+            sharedInstance = new HttpConnectionPool(maxTotal, maxPerRoute, keepAlive, idleTimeout, connectTimeout,
+                                                    socketTimeout, connectionRequestTimeout);
+        } else {
+            sharedInstance.configure(maxTotal, maxPerRoute, keepAlive, idleTimeout, connectTimeout, socketTimeout,
+                                     connectionRequestTimeout);
+        }
+        return sharedInstance;
+    }
+
+    /**
+     * @return client executing requests over the pooled connections, will not be null.
+     */
+    public HttpClient getClient() {
+        return client;
+    }
+
+    /**
+     * @return maximum number of connections to a single host.
+     */
+    public synchronized int getMaxPerRoute() {
+        return maxPerRoute;
+    }
+
+    /**
+     * Raises the connection limits so that at least given numbers of connections can be leased at once, for goals
+     * holding one connection per log for as long as they run.
+     *
+     * @param perRoute number of connections to a single host required at once.
+     * @param total number of connections to all hosts required at once.
+     */
+    public synchronized void ensureCapacity(final int perRoute, final int total) {
+        if (perRoute > maxPerRoute) {
+            maxPerRoute = perRoute;
+            connectionManager.setDefaultMaxPerRoute(perRoute);
+        }
+        if (Math.max(perRoute, total) > connectionManager.getMaxTotal()) {
+            connectionManager.setMaxTotal(Math.max(perRoute, total));
+        }
+    }
+
+    private synchronized void configure(final int maxTotal,
+                                        final int maxPerRoute,
+                                        final long keepAlive,
+                                        final long idleTimeout,
+                                        final int connectTimeout,
+                                        final int socketTimeout,
+                                        final long connectionRequestTimeout) {
+        ensureCapacity(maxPerRoute, maxTotal);
+        connectionManager.setIdleTimeout(idleTimeout);
+        keepAliveStrategy.setKeepAlive(keepAlive);
+
+        final HttpParams params = client.getParams();
+        HttpConnectionParams.setConnectionTimeout(params, connectTimeout);
+        HttpConnectionParams.setSoTimeout(params, socketTimeout);
+        HttpClientParams.setConnectionManagerTimeout(params, connectionRequestTimeout);
+    }
+
+    /**
+     * Keeps connections alive for the time announced by the server in the Keep-Alive header, or for the default time
+     * if the server does not announce it.
+     */
+    private static class KeepAliveStrategy implements ConnectionKeepAliveStrategy {
+
+        private final ConnectionKeepAliveStrategy delegate = new DefaultConnectionKeepAliveStrategy();
+
+        private volatile long keepAlive;
+
+        KeepAliveStrategy(final long keepAlive) {
+            this.keepAlive = keepAlive;
+        }
+
+        void setKeepAlive(final long keepAlive) {
+            this.keepAlive = keepAlive;
+        }
+
+        @Override
+        public long getKeepAliveDuration(final HttpResponse response, final HttpContext context) {
+            final long duration = delegate.getKeepAliveDuration(response, context);
+            return duration > 0 ? duration : keepAlive;
+        }
+    }
+
+    /**
+     * Connection manager which periodically closes expired connections and connections which have been idle for too
+     * long, so that the pool never hands out a connection the server has already dropped. The evicting thread is
+     * started when a connection is leased and stops once the pool holds no more connections.
+     */
+    private static class EvictingConnectionManager extends PoolingClientConnectionManager {
+
+        private volatile long idleTimeout;
+
+        private Thread evictor;
+
+        EvictingConnectionManager(final long idleTimeout) {
+            this.idleTimeout = idleTimeout;
+        }
+
+        void setIdleTimeout(final long idleTimeout) {
+            this.idleTimeout = idleTimeout;
+        }
+
+        @Override
+        public ClientConnectionRequest requestConnection(final HttpRoute route, final Object state) {
+            final ClientConnectionRequest request = super.requestConnection(route, state);
+            return new ClientConnectionRequest() {
+                @Override
+                public ManagedClientConnection getConnection(final long timeout, final TimeUnit unit)
+                        throws InterruptedException, ConnectionPoolTimeoutException {
+                    final ManagedClientConnection connection = request.getConnection(timeout, unit);
+                    startEvictor();
+                    return connection;
+                }
+
+                @Override
+                public void abortRequest() {
+                    request.abortRequest();
+                }
+            };
+        }
+
+        private synchronized void startEvictor() {
+            if (evictor == null) {
+                evictor = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        evict();
+                    }
+                }, "aiq-idle-connection-evictor");
+                evictor.setDaemon(true);
+                evictor.start();
+            }
+        }
+
+        private void evict() {
+            try {
+                do {
+                    Thread.sleep(Math.max(1000, idleTimeout / 2));
+                    closeExpiredConnections();
+                    closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+                } while (!stopEvictorIfEmpty());
+            } catch (InterruptedException ignore) {
+                synchronized (this) {
+                    evictor = null;
+                }
+            }
+        }
+
+        private synchronized boolean stopEvictorIfEmpty() {
+            final PoolStats stats = getTotalStats();
+            if (stats.getLeased() + stats.getAvailable() + stats.getPending() > 0) {
+                return false;
+            }
+            evictor = null;
+            return true;
+        }
+    }
+}
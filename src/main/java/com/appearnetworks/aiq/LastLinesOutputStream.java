@@ -0,0 +1,189 @@
+package com.appearnetworks.aiq;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Stream keeping only the last lines written to it, to be written out by {@link #writeTo(OutputStream)} once the whole
+ * log has been written.
+ *
+ * The bytes of the kept lines are held in a circular arena, and the positions at which the kept lines start in a ring
+ * of one entry per line, so that memory is bounded by the size of the kept lines whatever the size of the log. Every
+ * new line drops the oldest kept line once the requested number of lines is kept. The arena and the ring start small
+ * and only grow when the kept lines do not fit in them, so that a log shorter than requested takes little memory.
+ */
+public class LastLinesOutputStream extends OutputStream {
+
+    /**
+     * Initial number of bytes of the arena per kept line.
+     */
+    private static final int INITIAL_LINE_LENGTH = 128;
+
+    /**
+     * Largest initial number of bytes of the arena.
+     */
+    private static final int MAX_INITIAL_ARENA_SIZE = 64 * 1024;
+
+    /**
+     * Largest initial number of lines of the ring.
+     */
+    private static final int MAX_INITIAL_LINES = 1024;
+
+    /**
+     * Largest number of bytes of an array.
+     */
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private final int maxLines;
+
+    private final boolean skipFirstLine;
+
+    private long[] starts;
+
+    private byte[] arena;
+
+    private int first;
+
+    private int count;
+
+    private long written;
+
+    private long lines;
+
+    private boolean lineStart = true;
+
+    /**
+     * Creates a new stream.
+     *
+     * @param lines number of lines to keep, must be positive.
+     * @param skipFirstLine whether the first line written is incomplete and must never be kept.
+     */
+    public LastLinesOutputStream(final int lines, final boolean skipFirstLine) {
+        if (lines <= 0) {
+            throw new IllegalArgumentException("Invalid number of lines, must be positive");
+        }
+
+        this.maxLines = lines;
+        this.skipFirstLine = skipFirstLine;
+        this.starts = new long[Math.min(lines, MAX_INITIAL_LINES)];
+        this.arena = new byte[(int) Math.min(MAX_INITIAL_ARENA_SIZE, (long) lines * INITIAL_LINE_LENGTH)];
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IOException if the kept lines have grown too long to be held in memory.
+     */
+    @Override
+    public void write(final byte[] buffer, final int offset, final int length) throws IOException {
+        int position = offset;
+        final int end = offset + length;
+        while (position < end) {
+            if (lineStart) {
+                startLine();
+            }
+
+            int next = position;
+            while (next < end && buffer[next] != '\n') {
+                next++;
+            }
+            lineStart = next < end;
+            if (lineStart) {
+                next++;
+            }
+
+            append(buffer, position, next - position);
+            position = next;
+        }
+    }
+
+    /**
+     * @return number of lines written so far, including the incomplete first line and a last line without line feed.
+     */
+    public long getLineCount() {
+        return lines;
+    }
+
+    /**
+     * Writes the kept lines.
+     *
+     * @param output stream to write the lines to, must not be null.
+     * @throws IOException if the lines could not be written.
+     */
+    public void writeTo(final OutputStream output) throws IOException {
+        long from = count > 0 ? starts[first] : written;
+        if (skipFirstLine && lines == count && count > 0) {
+            // the oldest kept line is the incomplete first line
+            from = count > 1 ? starts[(first + 1) % starts.length] : written;
+        }
+
+        final int begin = (int) (from % arena.length);
+        final int size = (int) (written - from);
+        final int head = Math.min(size, arena.length - begin);
+        output.write(arena, begin, head);
+        output.write(arena, 0, size - head);
+        output.flush();
+    }
+
+    private void startLine() {
+        if (count == maxLines) {
+            first = (first + 1) % starts.length;
+            count--;
+        } else if (count == starts.length) {
+            growStarts();
+        }
+        starts[(first + count) % starts.length] = written;
+        count++;
+        lines++;
+    }
+
+    private void growStarts() {
+        final long[] grown = new long[(int) Math.min(maxLines, 2L * starts.length)];
+        final int head = starts.length - first;
+        System.arraycopy(starts, first, grown, 0, head);
+        System.arraycopy(starts, 0, grown, head, first);
+        starts = grown;
+        first = 0;
+    }
+
+    private void append(final byte[] buffer, final int offset, final int length) throws IOException {
+        final long kept = written - starts[first];
+        if (kept + length > arena.length) {
+            grow(kept + length);
+        }
+
+        int position = offset;
+        int remaining = length;
+        while (remaining > 0) {
+            final int index = (int) (written % arena.length);
+            final int chunk = Math.min(remaining, arena.length - index);
+            System.arraycopy(buffer, position, arena, index, chunk);
+            position += chunk;
+            remaining -= chunk;
+            written += chunk;
+        }
+    }
+
+    private void grow(final long required) throws IOException {
+        if (required > MAX_ARRAY_SIZE) {
+            throw new IOException("Failed to keep the last " + maxLines + " lines of the log, they are longer than " +
+                                  MAX_ARRAY_SIZE + " bytes");
+        }
+
+        final byte[] grown = new byte[(int) Math.min(MAX_ARRAY_SIZE, Math.max(required, 2L * arena.length))];
+        long position = starts[first];
+        while (position < written) {
+            final int from = (int) (position % arena.length);
+            final int to = (int) (position % grown.length);
+            final int chunk = (int) Math.min(written - position, Math.min(arena.length - from, grown.length - to));
+            System.arraycopy(arena, from, grown, to, chunk);
+            position += chunk;
+        }
+        arena = grown;
+    }
+}
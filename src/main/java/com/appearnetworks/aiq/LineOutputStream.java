@@ -0,0 +1,98 @@
+package com.appearnetworks.aiq;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Stream splitting the bytes written to it into lines, each handed to {@link #writeLine(byte[], int)} with its line
+ * feed. An incomplete line is held back until it is completed or the stream is closed, and a line longer than
+ * {@value #MAX_LINE_LENGTH} bytes is split. The line buffer is reused, so no memory is allocated per line.
+ */
+public abstract class LineOutputStream extends OutputStream {
+
+    /**
+     * Length in bytes after which a line is split.
+     */
+    public static final int MAX_LINE_LENGTH = 1024 * 1024;
+
+    /**
+     * Stream to which the lines are written.
+     */
+    protected final OutputStream output;
+
+    private byte[] line = new byte[256];
+
+    private int length;
+
+    /**
+     * Creates a new stream.
+     *
+     * @param output stream to which the lines are written, must not be null.
+     */
+    protected LineOutputStream(final OutputStream output) {
+        this.output = output;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        append((byte) b);
+        if (b == '\n' || length == MAX_LINE_LENGTH) {
+            endLine();
+        }
+    }
+
+    @Override
+    public void write(final byte[] buffer, final int offset, final int length) throws IOException {
+        final int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            append(buffer[i]);
+            if (buffer[i] == '\n' || this.length == MAX_LINE_LENGTH) {
+                endLine();
+            }
+        }
+    }
+
+    /**
+     * Flushes the underlying stream, holding back an incomplete line.
+     */
+    @Override
+    public void flush() throws IOException {
+        output.flush();
+    }
+
+    /**
+     * Writes an incomplete line terminated with a line feed and closes the underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (length > 0) {
+            append((byte) '\n');
+            endLine();
+        }
+        output.close();
+    }
+
+    /**
+     * Handles a complete line.
+     *
+     * @param line buffer holding the line, only valid until this method returns, must not be null.
+     * @param length length of the line including its line feed, if any.
+     * @throws IOException if the line could not be written.
+     */
+    protected abstract void writeLine(byte[] line, int length) throws IOException;
+
+    private void append(final byte b) {
+        if (length == line.length) {
+            final byte[] grown = new byte[Math.min(MAX_LINE_LENGTH + 1, line.length * 2)];
+            System.arraycopy(line, 0, grown, 0, length);
+            line = grown;
+        }
+        line[length++] = b;
+    }
+
+    private void endLine() throws IOException {
+        final int lineLength = length;
+        length = 0;
+        writeLine(line, lineLength);
+    }
+}
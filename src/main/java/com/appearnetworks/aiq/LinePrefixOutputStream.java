@@ -0,0 +1,38 @@
+package com.appearnetworks.aiq;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Stream writing every complete line to a shared stream, prefixed with the name of its source. A line is written in
+ * one piece while holding the lock of the shared stream, so that lines of several sources never interleave.
+ */
+public class LinePrefixOutputStream extends LineOutputStream {
+
+    private final byte[] prefix;
+
+    /**
+     * Creates a new stream.
+     *
+     * @param output shared stream to write the lines to, must not be null.
+     * @param prefix prefix of every line, must not be null.
+     */
+    public LinePrefixOutputStream(final OutputStream output, final String prefix) {
+        super(output);
+        try {
+            this.prefix = prefix.getBytes(AbstractAIQMojo.UTF8_ENCODING);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    protected void writeLine(final byte[] line, final int length) throws IOException {
+        synchronized (output) {
+            output.write(prefix);
+            output.write(line, 0, length);
+            output.flush();
+        }
+    }
+}
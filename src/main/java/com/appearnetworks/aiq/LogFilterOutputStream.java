@@ -0,0 +1,268 @@
+package com.appearnetworks.aiq;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Stream writing only the log lines at or above a level, within a time range and containing any of a set of literal
+ * patterns. Lines are filtered one at a time on their raw bytes, so that a log of any size is filtered with a single
+ * line of memory.
+ *
+ * A line starting with a timestamp such as {@code 2014-01-01 12:00:00,000}, or mentioning a level near its start,
+ * starts a log entry, and the lines following it, such as the frames of a stack trace, belong to that entry. The level
+ * and the time range select whole entries, and an entry without a timestamp is taken to be as old as the last
+ * timestamp seen. The patterns select single lines within the selected entries. Timestamps are compared in a given
+ * time zone, which must be the one the log is written in.
+ */
+public class LogFilterOutputStream extends LineOutputStream {
+
+    /**
+     * Level of a log entry, in increasing order of severity.
+     */
+    public enum Level {
+        TRACE, DEBUG, INFO, WARN, ERROR, FATAL;
+
+        /**
+         * Returns the level with given name, such as {@code error}.
+         *
+         * @param name name of the level, case insensitive, must not be null.
+         * @return the level, will not be null.
+         * @throws IllegalArgumentException if there is no such level.
+         */
+        public static Level parse(final String name) {
+            final String upper = name.trim().toUpperCase(Locale.ENGLISH);
+            for (int i = 0; i < NAMES.length; i++) {
+                if (NAMES[i].equals(upper)) {
+                    return LEVELS[i];
+                }
+            }
+            throw new IllegalArgumentException("Unknown level [" + name + "]");
+        }
+    }
+
+    /**
+     * Number of bytes at the start of a line searched for a level.
+     */
+    private static final int LEVEL_SCAN_LENGTH = 128;
+
+    private static final String[] NAMES = {"TRACE", "DEBUG", "INFO", "WARN", "WARNING", "ERROR", "SEVERE", "FATAL"};
+
+    private static final Level[] LEVELS =
+            {Level.TRACE, Level.DEBUG, Level.INFO, Level.WARN, Level.WARN, Level.ERROR, Level.ERROR, Level.FATAL};
+
+    private static final byte[][] LEVEL_NAMES = new byte[NAMES.length][];
+
+    static {
+        for (int i = 0; i < NAMES.length; i++) {
+            LEVEL_NAMES[i] = encode(NAMES[i]);
+        }
+    }
+
+    private static final Pattern DURATION = Pattern.compile("(\\d+)([smhd])");
+
+    private static final String[] TIME_FORMATS =
+            {"yyyy-MM-dd'T'HH:mm:ss", "yyyy-MM-dd HH:mm:ss", "yyyy-MM-dd'T'HH:mm", "yyyy-MM-dd HH:mm", "yyyy-MM-dd"};
+
+    private final Level level;
+
+    private final byte[] since;
+
+    private final byte[] until;
+
+    private final AhoCorasick automaton;
+
+    private final boolean[] matched;
+
+    private final byte[] timestamp = new byte[LogTimestamp.LENGTH];
+
+    private final byte[] lastTimestamp = new byte[LogTimestamp.LENGTH];
+
+    private boolean timestamped;
+
+    private boolean selected;
+
+    /**
+     * Creates a new stream.
+     *
+     * @param output stream to write the selected lines to, must not be null.
+     * @param level lowest level of the entries to write, or null to write entries of any level.
+     * @param since time of the oldest entries to write, or null to not limit it.
+     * @param until time before which the entries to write are, or null to not limit it.
+     * @param timeZone time zone of the timestamps of the log, must not be null.
+     * @param patterns literal patterns of which the lines to write contain any, or null or empty to not limit them.
+     * @throws IllegalArgumentException if a pattern is empty.
+     */
+    public LogFilterOutputStream(final OutputStream output,
+                                 final Level level,
+                                 final Date since,
+                                 final Date until,
+                                 final TimeZone timeZone,
+                                 final List<String> patterns) {
+        super(output);
+        this.level = level;
+        final SimpleDateFormat format = new SimpleDateFormat(LogTimestamp.FORMAT);
+        format.setTimeZone(timeZone);
+        this.since = since != null ? encode(format.format(since)) : null;
+        this.until = until != null ? encode(format.format(until)) : null;
+
+        if (patterns != null && !patterns.isEmpty()) {
+            final List<byte[]> encoded = new ArrayList<>(patterns.size());
+            for (String pattern : patterns) {
+                encoded.add(encode(pattern));
+            }
+            this.automaton = AhoCorasick.compile(encoded);
+            this.matched = new boolean[patterns.size()];
+        } else {
+            this.automaton = null;
+            this.matched = null;
+        }
+
+        // lines before the first entry only have a level if none is required
+        this.selected = level == null;
+    }
+
+    /**
+     * Parses a time given either as a duration before now, such as {@code 10m}, {@code 2h} or {@code 1d}, or as a
+     * time such as {@code 2014-01-01T12:00:00} in given time zone.
+     *
+     * @param value the time, must not be null.
+     * @param now current time in milliseconds since epoch.
+     * @param timeZone time zone of a time not given as a duration, must not be null.
+     * @return the time, will not be null.
+     * @throws IllegalArgumentException if the time could not be parsed.
+     */
+    public static Date parseTime(final String value, final long now, final TimeZone timeZone) {
+        final String trimmed = value.trim();
+        final Matcher duration = DURATION.matcher(trimmed);
+        if (duration.matches()) {
+            final long amount = Long.parseLong(duration.group(1));
+            switch (duration.group(2)) {
+                case "s":
+                    return new Date(now - TimeUnit.SECONDS.toMillis(amount));
+                case "m":
+                    return new Date(now - TimeUnit.MINUTES.toMillis(amount));
+                case "h":
+                    return new Date(now - TimeUnit.HOURS.toMillis(amount));
+                default:
+                    return new Date(now - TimeUnit.DAYS.toMillis(amount));
+            }
+        }
+
+        for (String format : TIME_FORMATS) {
+            final SimpleDateFormat parser = new SimpleDateFormat(format);
+            parser.setLenient(false);
+            parser.setTimeZone(timeZone);
+            try {
+                if (trimmed.length() == format.replace("'", "").length()) {
+                    return parser.parse(trimmed);
+                }
+            } catch (ParseException ignore) {
+                // try the next format
+            }
+        }
+        throw new IllegalArgumentException("Invalid time [" + value + "], must be a duration such as 10m or a time " +
+                                           "such as 2014-01-01T12:00:00");
+    }
+
+    /**
+     * Formats given time as an ISO 8601 time in UTC, as passed to the server.
+     *
+     * @param time the time, must not be null.
+     * @return the formatted time, will not be null.
+     */
+    public static String formatTime(final Date time) {
+        final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(time);
+    }
+
+    @Override
+    protected void writeLine(final byte[] line, final int length) throws IOException {
+        final boolean hasTimestamp = LogTimestamp.parse(line, length, timestamp);
+        final Level lineLevel = findLevel(line, length);
+        if (hasTimestamp || lineLevel != null) {
+            if (hasTimestamp) {
+                System.arraycopy(timestamp, 0, lastTimestamp, 0, LogTimestamp.LENGTH);
+                timestamped = true;
+            }
+            selected = (level == null || (lineLevel != null && lineLevel.compareTo(level) >= 0)) && isInRange();
+        }
+
+        if (selected && matches(line, length)) {
+            output.write(line, 0, length);
+        }
+    }
+
+    private boolean isInRange() {
+        if (!timestamped) {
+            return true;
+        }
+        return (since == null || LogTimestamp.compare(lastTimestamp, since) >= 0) &&
+               (until == null || LogTimestamp.compare(lastTimestamp, until) < 0);
+    }
+
+    private boolean matches(final byte[] line, final int length) {
+        if (automaton == null) {
+            return true;
+        }
+        if (!automaton.scan(line, 0, length, matched)) {
+            return false;
+        }
+        Arrays.fill(matched, false);
+        return true;
+    }
+
+    /**
+     * @return the first level mentioned near the start of given line, or null if there is none.
+     */
+    private static Level findLevel(final byte[] line, final int length) {
+        final int end = Math.min(length, LEVEL_SCAN_LENGTH);
+        for (int i = 0; i < end; i++) {
+            if (line[i] < 'A' || line[i] > 'Z' || (i > 0 && isLetter(line[i - 1]))) {
+                continue;
+            }
+            for (int n = 0; n < LEVEL_NAMES.length; n++) {
+                if (isWordAt(line, i, length, LEVEL_NAMES[n])) {
+                    return LEVELS[n];
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean isWordAt(final byte[] line, final int position, final int length, final byte[] word) {
+        if (position + word.length > length) {
+            return false;
+        }
+        for (int i = 0; i < word.length; i++) {
+            if (line[position + i] != word[i]) {
+                return false;
+            }
+        }
+        return position + word.length == length || !isLetter(line[position + word.length]);
+    }
+
+    private static boolean isLetter(final byte b) {
+        return (b >= 'A' && b <= 'Z') || (b >= 'a' && b <= 'z');
+    }
+
+    private static byte[] encode(final String value) {
+        try {
+            return value.getBytes(AbstractAIQMojo.UTF8_ENCODING);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.appearnetworks.aiq;
+
+import org.apache.commons.io.output.NullOutputStream;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Merges several logs, each read by its own thread, into a single stream ordered by the timestamps of the lines, with
+ * every line prefixed with the name of its log.
+ *
+ * Every log hands its lines to the merge through a queue of at most {@value #LOOKAHEAD} lines, and the merge keeps the
+ * next line of every log in a heap ordered by timestamp, so that memory is bounded by the number of logs whatever
+ * their size. A line without a timestamp, such as a frame of a stack trace, takes the timestamp of the line before it,
+ * and lines with equal timestamps are taken from the logs in the order the logs are given, so that an entry of a log
+ * is never interleaved with the lines of another log.
+ */
+public class LogMerger {
+
+    /**
+     * Number of lines of every log read ahead of the merge.
+     */
+    public static final int LOOKAHEAD = 256;
+
+    private static final byte[] NO_TIMESTAMP = new byte[LogTimestamp.LENGTH];
+
+    private static final Line END = new Line(-1, NO_TIMESTAMP, new byte[0]);
+
+    private static final Comparator<Line> ORDER = new Comparator<Line>() {
+        @Override
+        public int compare(final Line a, final Line b) {
+            final int order = LogTimestamp.compare(a.timestamp, b.timestamp);
+            return order != 0 ? order : a.source - b.source;
+        }
+    };
+
+    private LogMerger() {
+    }
+
+    /**
+     * Merges given logs, waiting for every log to have a line or to have ended before writing the earliest line.
+     *
+     * @param sources the logs to merge, must not be null.
+     * @param output stream to write the merged lines to, must not be null.
+     * @throws IOException if a log failed, or if the output could not be written.
+     * @throws InterruptedException if interrupted while waiting for a log.
+     */
+    public static void merge(final List<Source> sources, final OutputStream output)
+            throws IOException, InterruptedException {
+        final PriorityQueue<Line> heap = new PriorityQueue<>(Math.max(1, sources.size()), ORDER);
+        for (Source source : sources) {
+            final Line line = source.take();
+            if (line != null) {
+                heap.add(line);
+            }
+        }
+
+        while (!heap.isEmpty()) {
+            final Line line = heap.poll();
+            final Source source = sources.get(line.source);
+            output.write(source.prefix);
+            output.write(line.bytes);
+
+            final Line next = source.take();
+            if (next != null) {
+                heap.add(next);
+            }
+        }
+        output.flush();
+    }
+
+    /**
+     * A log to merge. The thread reading the log writes it to the source and then calls {@link #close()}, or
+     * {@link #fail(IOException)} if reading fails.
+     */
+    public static class Source extends LineOutputStream {
+
+        private final int index;
+
+        private final byte[] prefix;
+
+        private final BlockingQueue<Line> queue = new ArrayBlockingQueue<>(LOOKAHEAD);
+
+        private final byte[] parsed = new byte[LogTimestamp.LENGTH];
+
+        private byte[] timestamp = NO_TIMESTAMP;
+
+        private volatile IOException failure;
+
+        private boolean ended;
+
+        /**
+         * Creates a new source.
+         *
+         * @param index index of the source among the merged sources, which orders lines with equal timestamps.
+         * @param name name of the log prefixing its lines, must not be null.
+         */
+        public Source(final int index, final String name) {
+            super(new NullOutputStream());
+            this.index = index;
+            try {
+                this.prefix = ("[" + name + "] ").getBytes(AbstractAIQMojo.UTF8_ENCODING);
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        protected void writeLine(final byte[] line, final int length) throws IOException {
+            if (LogTimestamp.parse(line, length, parsed)) {
+                if (LogTimestamp.compare(parsed, timestamp) != 0) {
+                    timestamp = parsed.clone();
+                }
+            }
+            put(new Line(index, timestamp, Arrays.copyOf(line, length)));
+        }
+
+        /**
+         * Ends the log, writing an incomplete last line.
+         */
+        @Override
+        public void close() throws IOException {
+            if (!ended) {
+                ended = true;
+                super.close();
+                put(END);
+            }
+        }
+
+        /**
+         * Ends the log with given failure, which is thrown by the merge once it has merged the lines read so far.
+         *
+         * @param failure why reading the log failed, must not be null.
+         * @throws InterruptedIOException if interrupted while waiting for the merge.
+         */
+        public void fail(final IOException failure) throws InterruptedIOException {
+            if (!ended) {
+                ended = true;
+                this.failure = failure;
+                put(END);
+            }
+        }
+
+        private void put(final Line line) throws InterruptedIOException {
+            try {
+                queue.put(line);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the log merge");
+            }
+        }
+
+        /**
+         * @return the next line, or null if the log has ended.
+         */
+        private Line take() throws IOException, InterruptedException {
+            final Line line = queue.take();
+            if (line != END) {
+                return line;
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A line of a log, with its line feed if any.
+     */
+    private static final class Line {
+
+        private final int source;
+
+        private final byte[] timestamp;
+
+        private final byte[] bytes;
+
+        private Line(final int source, final byte[] timestamp, final byte[] bytes) {
+            this.source = source;
+            this.timestamp = timestamp;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,514 @@
+package com.appearnetworks.aiq;
+
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.cookie.DateParseException;
+import org.apache.http.impl.cookie.DateUtils;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.SocketTimeoutException;
+import java.util.Locale;
+
+/**
+ * Tails a log of the integration supervisor into an output stream, either by polling the log or by keeping a single
+ * server-sent event stream open.
+ *
+ * A stream is requested with the {@code stream} query parameter and an {@code Accept: text/event-stream} header. Every
+ * {@code data} line of an event is a log line, and the {@code id} of the last event received is sent back as the
+ * {@code Last-Event-ID} header when reconnecting. A stream on which nothing, not even a keep-alive comment, arrives
+ * within the stream timeout is taken to be broken and reconnected, so that a silently dropped connection does not
+ * stall the tail. A server which answers with anything else than an event stream does not support streaming, and the
+ * tail falls back to polling.
+ *
+ * While polling a server which accepts byte ranges, only the part of the log beyond the bytes already written is
+ * requested with a {@code Range} header. A server ignoring the range sends the whole log, of which the bytes already
+ * written are skipped. Otherwise every change of the log is requested with {@code If-Modified-Since}.
+ *
+ * The modification date, offset and event identifier are kept in an optional {@link TailCheckpoint}, from which the
+ * tail resumes. The checkpoint only moves once the output has written the content up to the new position, and stops
+ * moving once output is dropped, so that a restarted tail may repeat content but never skips any.
+ */
+public class LogTail {
+
+    private static final String EVENT_STREAM = "text/event-stream";
+
+    private static final String LAST_EVENT_ID = "Last-Event-ID";
+
+    private static final String BYTES_UNIT = "bytes";
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private final AbstractAIQMojo mojo;
+
+    private final AIQSession session;
+
+    private final String action;
+
+    private final RingBufferOutputStream output;
+
+    private final PollScheduler scheduler;
+
+    private final Log log;
+
+    private final TailCheckpoint checkpoint;
+
+    private final TailMetrics metrics;
+
+    private final int streamTimeout;
+
+    private String since;
+
+    private long offset = -1;
+
+    private String eventId;
+
+    private long retry = -1;
+
+    /**
+     * Creates a new tail.
+     *
+     * @param mojo mojo on behalf of which to request the log, must not be null.
+     * @param session session on behalf of which to request the log, must not be null.
+     * @param action The name of the action serving the log, must not be null.
+     * @param output stream to write the log to, closed when the tail stops, must not be null.
+     * @param scheduler schedules the polls and reconnects, must not be null.
+     * @param checkpoint position from which to resume and which to keep up to date, closed when the tail stops, may be
+     *                   null.
+     * @param metrics metrics to record the requests and content in, must not be null.
+     * @param streamTimeout number of milliseconds without any data after which a stream is reconnected, which must
+     *                      exceed the interval of the keep-alive comments of the server, or 0 to wait forever.
+     */
+    public LogTail(final AbstractAIQMojo mojo,
+                   final AIQSession session,
+                   final String action,
+                   final RingBufferOutputStream output,
+                   final PollScheduler scheduler,
+                   final TailCheckpoint checkpoint,
+                   final TailMetrics metrics,
+                   final int streamTimeout) {
+        this.mojo = mojo;
+        this.session = session;
+        this.action = action;
+        this.output = output;
+        this.scheduler = scheduler;
+        this.log = mojo.getLog();
+        this.checkpoint = checkpoint;
+        this.metrics = metrics;
+        this.streamTimeout = streamTimeout;
+
+        if (checkpoint != null) {
+            since = checkpoint.getSince();
+            offset = checkpoint.getOffset();
+            eventId = checkpoint.getEventId();
+        }
+    }
+
+    /**
+     * Tails the log until the current thread is interrupted.
+     *
+     * @param streaming whether to stream the log if the server supports it.
+     * @throws MojoExecutionException in case when provided data is invalid.
+     * @throws MojoFailureException in case when the server rejects the request.
+     * @throws IOException in case when a poll fails.
+     * @throws InterruptedException when the current thread is interrupted.
+     */
+    public void run(final boolean streaming)
+            throws MojoExecutionException, MojoFailureException, IOException, InterruptedException {
+        try {
+            if (streaming && stream()) {
+                return;
+            }
+            poll();
+        } finally {
+            try {
+                // drains the output, moving the checkpoint past everything written
+                output.close();
+            } finally {
+                if (checkpoint != null) {
+                    checkpoint.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Streams the log, reconnecting whenever the stream ends or breaks.
+     *
+     * @return false if the server does not support streaming.
+     */
+    private boolean stream() throws MojoExecutionException, MojoFailureException, InterruptedException {
+        while (true) {
+            final HttpGet get = new HttpGet(mojo.buildIntegrationURI(session.getUrl(),
+                                                                     session.getOrgName(),
+                                                                     action,
+                                                                     new BasicNameValuePair("stream", "true")));
+            get.setHeader(HttpHeaders.ACCEPT, EVENT_STREAM);
+            HttpConnectionParams.setSoTimeout(get.getParams(), streamTimeout);
+            ContentEncodingUtil.acceptCompressed(get);
+            if (eventId != null) get.setHeader(LAST_EVENT_ID, eventId);
+            if (since != null) get.setHeader(HttpHeaders.IF_MODIFIED_SINCE, since);
+
+            long events = 0;
+            HttpResponse response = null;
+            boolean complete = false;
+            try {
+                final long requested = System.currentTimeMillis();
+                try {
+                    response = mojo.executeAuthenticated(session, get);
+                } catch (IOException e) {
+                    metrics.recordFailure();
+                    throw e;
+                }
+                final int statusCode = response.getStatusLine().getStatusCode();
+                metrics.recordRequest(System.currentTimeMillis() - requested, statusCode);
+                ContentEncodingUtil.decompress(response);
+                if (statusCode != HttpStatus.SC_OK && statusCode != HttpStatus.SC_NOT_MODIFIED) {
+                    throw new MojoFailureException("Failed to tail logs, the status code is [" +
+                            statusCode + "] and error message is [" +
+                            response.getStatusLine().getReasonPhrase() + "]");
+                }
+
+                if (!isEventStream(response)) {
+                    log.info("The server does not support streaming logs, falling back to polling");
+                    if (statusCode == HttpStatus.SC_OK) {
+                        write(response);
+                    }
+                    complete = true;
+                    return false;
+                }
+
+                events = readEvents(response.getEntity().getContent());
+                complete = true;
+                log.debug("Log stream ended after " + events + " events, reconnecting");
+            } catch (SocketTimeoutException e) {
+                log.warn("Nothing received on the log stream for " + streamTimeout + " ms, reconnecting");
+            } catch (IOException e) {
+                log.warn("Log stream broke, reconnecting: " + e.getMessage());
+            } finally {
+                if (complete) {
+                    consume(response);
+                } else {
+                    // the rest of a broken or endless stream must not be read, so the connection is dropped
+                    get.abort();
+                }
+            }
+
+            final long delay = events > 0 ? scheduler.onModified() : scheduler.onNotModified();
+            Thread.sleep(retry >= 0 ? retry : delay);
+        }
+    }
+
+    /**
+     * Polls the log, adapting the interval between polls to how often the log changes. Every poll is sent with the
+     * current access token of the session, so that a token refreshed in the background is picked up by the next poll.
+     */
+    private void poll() throws MojoExecutionException, MojoFailureException, IOException, InterruptedException {
+        long lag = -1;
+
+        while (true) {
+            final long delay;
+
+            HttpGet get = new HttpGet(mojo.buildIntegrationURI(session.getUrl(), session.getOrgName(), action));
+            if (offset >= 0) {
+                // the offset is exact, unlike the modification date which has a granularity of one second
+                get.setHeader(HttpHeaders.RANGE, BYTES_UNIT + "=" + offset + "-");
+            } else {
+                // ranges of a compressed response would be offsets into the compressed bytes, so only whole logs are
+                // requested compressed, and the small deltas following them are not
+                ContentEncodingUtil.acceptCompressed(get);
+                if (since != null) {
+                    get.setHeader(HttpHeaders.IF_MODIFIED_SINCE, since);
+                }
+            }
+            final long requested = System.currentTimeMillis();
+            final HttpResponse response;
+            try {
+                response = mojo.executeAuthenticated(session, get);
+            } catch (IOException e) {
+                metrics.recordFailure();
+                throw e;
+            }
+            try {
+                final int statusCode = response.getStatusLine().getStatusCode();
+                metrics.recordRequest(System.currentTimeMillis() - requested, statusCode);
+                ContentEncodingUtil.decompress(response);
+                if (statusCode == HttpStatus.SC_OK || statusCode == HttpStatus.SC_PARTIAL_CONTENT) {
+                    final long written = write(response);
+                    lag = lag(since);
+                    metrics.recordLag(lag);
+                    delay = written > 0 ? scheduler.onModified() : scheduler.onNotModified();
+                } else if (statusCode == HttpStatus.SC_NOT_MODIFIED) {
+                    delay = scheduler.onNotModified();
+                } else if (statusCode == HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE && offset >= 0) {
+                    final long length = instanceLength(response);
+                    if (length >= 0 && length < offset) {
+                        log.info("The log has been truncated, tailing it from the start");
+                        offset = 0;
+                        delay = scheduler.onModified();
+                    } else {
+                        delay = scheduler.onNotModified();
+                    }
+                } else {
+                    throw new MojoFailureException("Failed to tail logs, the status code is [" +
+                            response.getStatusLine().getStatusCode() + "] and error message is [" +
+                            response.getStatusLine().getReasonPhrase() + "]");
+                }
+            } finally {
+                consume(response);
+            }
+
+            // surfaces a failure of the output, such as a pattern failing the build, even while the log is quiet
+            output.flush();
+
+            if (log.isDebugEnabled()) {
+                log.debug("Next poll in " + delay + " ms, lag " + (lag < 0 ? "unknown" : lag + " ms"));
+            }
+
+            Thread.sleep(delay);
+        }
+    }
+
+    /**
+     * Writes the content of a polled response which has not been written yet, and remembers its modification date and
+     * the offset of its end within the log.
+     *
+     * @return number of bytes written.
+     */
+    private long write(final HttpResponse response) throws IOException {
+        final Header lastModified = response.getFirstHeader(HttpHeaders.LAST_MODIFIED);
+        if (lastModified != null) {
+            since = lastModified.getValue();
+        }
+
+        final long start;
+        long skip = 0;
+        if (response.getStatusLine().getStatusCode() == HttpStatus.SC_PARTIAL_CONTENT) {
+            final long rangeStart = rangeStart(response);
+            start = rangeStart >= 0 ? rangeStart : Math.max(0, offset);
+        } else if (acceptsRanges(response)) {
+            // the whole log, of which the bytes already written are skipped unless the log has been truncated
+            start = 0;
+            final long length = response.getEntity().getContentLength();
+            if (offset > 0 && (length < 0 || length >= offset)) {
+                skip = offset;
+            }
+        } else {
+            start = -1;
+        }
+
+        final InputStream input = response.getEntity().getContent();
+        final long read;
+        try {
+            read = copy(input, skip);
+        } finally {
+            input.close();
+        }
+        output.flush();
+
+        offset = start >= 0 ? start + read : -1;
+        updateCheckpoint();
+        return Math.max(0, read - skip);
+    }
+
+    /**
+     * Copies given stream to the output, skipping given number of bytes first.
+     *
+     * @return number of bytes read, including the skipped bytes.
+     */
+    private long copy(final InputStream input, final long skip) throws IOException {
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        long count = 0;
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            final int skipped = (int) Math.max(0, Math.min(read, skip - count));
+            output.write(buffer, skipped, read - skipped);
+            count += read;
+
+            long lines = 0;
+            for (int i = skipped; i < read; i++) {
+                if (buffer[i] == '\n') {
+                    lines++;
+                }
+            }
+            metrics.recordContent(read - skipped, lines);
+        }
+        return count;
+    }
+
+    /**
+     * Reads events from given stream until it ends, writing the data of every event as soon as it is complete.
+     *
+     * @return number of events read.
+     */
+    private long readEvents(final InputStream input) throws IOException {
+        final BufferedReader reader =
+                new BufferedReader(new InputStreamReader(input, AbstractAIQMojo.UTF8_ENCODING));
+        final StringBuilder data = new StringBuilder();
+        long events = 0;
+        long lines = 0;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty()) {
+                if (data.length() > 0) {
+                    final byte[] bytes = data.toString().getBytes(AbstractAIQMojo.UTF8_ENCODING);
+                    output.write(bytes);
+                    output.flush();
+                    metrics.recordContent(bytes.length, lines);
+                    data.setLength(0);
+                    lines = 0;
+                    events++;
+                    updateCheckpoint();
+                }
+                continue;
+            }
+            if (line.startsWith(":")) {
+                // comment, sent as keep-alive
+                continue;
+            }
+
+            final int colon = line.indexOf(':');
+            final String field = colon < 0 ? line : line.substring(0, colon);
+            String value = colon < 0 ? "" : line.substring(colon + 1);
+            if (value.startsWith(" ")) {
+                value = value.substring(1);
+            }
+
+            switch (field) {
+                case "data":
+                    data.append(value).append('\n');
+                    lines++;
+                    break;
+                case "id":
+                    eventId = value;
+                    break;
+                case "retry":
+                    try {
+                        retry = Long.parseLong(value);
+                    } catch (NumberFormatException ignore) {
+                        // keep the previous delay
+                    }
+                    break;
+                default:
+                    // event types are not used
+                    break;
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Moves the checkpoint to the current position once the output has written everything up to it.
+     */
+    private void updateCheckpoint() throws IOException {
+        if (checkpoint != null) {
+            final String since = this.since;
+            final long offset = this.offset;
+            final String eventId = this.eventId;
+            output.whenWritten(new RingBufferOutputStream.Callback() {
+                @Override
+                public void written() throws IOException {
+                    checkpoint.update(since, offset, eventId);
+                }
+            });
+        }
+    }
+
+    private static boolean acceptsRanges(final HttpResponse response) {
+        final Header acceptRanges = response.getFirstHeader(HttpHeaders.ACCEPT_RANGES);
+        return acceptRanges != null && acceptRanges.getValue().trim().equalsIgnoreCase(BYTES_UNIT);
+    }
+
+    /**
+     * Returns the first byte position of a {@code Content-Range} of the form {@code bytes first-last/length}.
+     *
+     * @return position of the first byte, or -1 if the range is missing or invalid.
+     */
+    private static long rangeStart(final HttpResponse response) {
+        final String range = contentRange(response);
+        final int dash = range == null ? -1 : range.indexOf('-');
+        if (dash < 0) {
+            return -1;
+        }
+
+        try {
+            return Long.parseLong(range.substring(0, dash).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the complete length of the log from a {@code Content-Range} of the form {@code bytes first-last/length}
+     * or {@code bytes *&#47;length}.
+     *
+     * @return length of the log, or -1 if the range is missing, invalid or of unknown length.
+     */
+    private static long instanceLength(final HttpResponse response) {
+        final String range = contentRange(response);
+        final int slash = range == null ? -1 : range.indexOf('/');
+        if (slash < 0) {
+            return -1;
+        }
+
+        try {
+            return Long.parseLong(range.substring(slash + 1).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return the content range without the unit, or null if the response has no byte content range.
+     */
+    private static String contentRange(final HttpResponse response) {
+        final Header contentRange = response.getFirstHeader(HttpHeaders.CONTENT_RANGE);
+        if (contentRange == null) {
+            return null;
+        }
+
+        final String value = contentRange.getValue().trim();
+        return value.regionMatches(true, 0, BYTES_UNIT + " ", 0, BYTES_UNIT.length() + 1) ?
+               value.substring(BYTES_UNIT.length() + 1) : null;
+    }
+
+    private static boolean isEventStream(final HttpResponse response) {
+        final Header contentType = response.getFirstHeader(HttpHeaders.CONTENT_TYPE);
+        return contentType != null && contentType.getValue().toLowerCase(Locale.ENGLISH).startsWith(EVENT_STREAM);
+    }
+
+    private static void consume(final HttpResponse response) {
+        if (response != null) {
+            AbstractAIQMojo.consume(response);
+        }
+    }
+
+    /**
+     * Returns the time elapsed since given HTTP date.
+     *
+     * @param date HTTP date, may be null.
+     * @return number of milliseconds since the date, or -1 if the date is not valid.
+     */
+    private static long lag(final String date) {
+        if (date == null) {
+            return -1;
+        }
+
+        try {
+            return Math.max(0, System.currentTimeMillis() - DateUtils.parseDate(date).getTime());
+        } catch (DateParseException e) {
+            return -1;
+        }
+    }
+}
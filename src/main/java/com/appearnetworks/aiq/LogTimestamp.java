@@ -0,0 +1,96 @@
+package com.appearnetworks.aiq;
+
+/**
+ * Helpers for the timestamps at the start of log lines, such as {@code 2014-01-01 12:00:00,000}. A timestamp is
+ * normalized into {@value #LENGTH} bytes of the form {@code yyyy-MM-dd HH:mm:ss.SSS}, so that timestamps are compared
+ * byte by byte without parsing them into dates.
+ */
+public final class LogTimestamp {
+
+    /**
+     * Format of a normalized timestamp.
+     */
+    public static final String FORMAT = "yyyy-MM-dd HH:mm:ss.SSS";
+
+    /**
+     * Length in bytes of a normalized timestamp.
+     */
+    public static final int LENGTH = 23;
+
+    /**
+     * Length of a timestamp without fraction of a second.
+     */
+    private static final int SECONDS_LENGTH = 19;
+
+    private LogTimestamp() {
+    }
+
+    /**
+     * Parses the timestamp at the start of given line, optionally in brackets, with a {@code T} or a space between
+     * date and time, and optionally with a fraction of a second of which the milliseconds are kept.
+     *
+     * @param line buffer holding the line, must not be null.
+     * @param length length of the line.
+     * @param timestamp buffer of {@value #LENGTH} bytes receiving the normalized timestamp, must not be null.
+     * @return true if the line starts with a timestamp, in which case the buffer holds it.
+     */
+    public static boolean parse(final byte[] line, final int length, final byte[] timestamp) {
+        final int start = length > 0 && line[0] == '[' ? 1 : 0;
+        if (length - start < SECONDS_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < SECONDS_LENGTH; i++) {
+            final byte b = line[start + i];
+            final boolean valid;
+            switch (i) {
+                case 4:
+                case 7:
+                    valid = b == '-';
+                    break;
+                case 10:
+                    valid = b == ' ' || b == 'T';
+                    break;
+                case 13:
+                case 16:
+                    valid = b == ':';
+                    break;
+                default:
+                    valid = b >= '0' && b <= '9';
+                    break;
+            }
+            if (!valid) {
+                return false;
+            }
+            timestamp[i] = b;
+        }
+        timestamp[10] = ' ';
+
+        timestamp[SECONDS_LENGTH] = '.';
+        int position = start + SECONDS_LENGTH;
+        final boolean fraction = position + 1 < length && (line[position] == '.' || line[position] == ',');
+        position++;
+        for (int i = SECONDS_LENGTH + 1; i < LENGTH; i++) {
+            if (fraction && position < length && line[position] >= '0' && line[position] <= '9') {
+                timestamp[i] = line[position++];
+            } else {
+                timestamp[i] = '0';
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compares two normalized timestamps.
+     *
+     * @return a negative number, zero or a positive number as the first timestamp is before, equal to or after the
+     *         second.
+     */
+    public static int compare(final byte[] a, final byte[] b) {
+        for (int i = 0; i < LENGTH; i++) {
+            if (a[i] != b[i]) {
+                return a[i] - b[i];
+            }
+        }
+        return 0;
+    }
+}
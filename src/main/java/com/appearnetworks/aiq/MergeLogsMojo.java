@@ -0,0 +1,13 @@
+package com.appearnetworks.aiq;
+
+import org.apache.maven.plugins.annotations.Execute;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+
+/**
+ * Merges the integration adapter and server logs of one or more organizations into a single time ordered stream.
+ */
+@Mojo(name = "logs.merge")
+@Execute(phase = LifecyclePhase.INITIALIZE)
+public class MergeLogsMojo extends AbstractMergeLogsMojo {
+}
@@ -0,0 +1,11 @@
+package com.appearnetworks.aiq;
+
+import org.apache.maven.plugins.annotations.Mojo;
+
+/**
+ * Merges the integration adapter and server logs of one or more organizations into a single time ordered stream
+ * without forking an initialize lifecycle.
+ */
+@Mojo(name = "logs.merge-no-fork")
+public class MergeLogsNoForkMojo extends AbstractMergeLogsMojo {
+}
@@ -0,0 +1,42 @@
+package com.appearnetworks.aiq;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Stream which flushes instead of closing the underlying stream, for streams owned by someone else such as the
+ * console or a multipart entity.
+ */
+public class NonClosingOutputStream extends OutputStream {
+
+    private final OutputStream output;
+
+    /**
+     * Creates a new stream.
+     *
+     * @param output stream to write to, must not be null.
+     */
+    public NonClosingOutputStream(final OutputStream output) {
+        this.output = output;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        output.write(b);
+    }
+
+    @Override
+    public void write(final byte[] buffer, final int offset, final int length) throws IOException {
+        output.write(buffer, offset, length);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        output.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        output.flush();
+    }
+}
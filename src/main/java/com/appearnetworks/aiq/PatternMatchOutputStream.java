@@ -0,0 +1,182 @@
+package com.appearnetworks.aiq;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Stream scanning every line for a set of literal alert patterns and acting on the lines in which any pattern is
+ * found. The raw bytes of a line are scanned by a single {@link AhoCorasick} automaton, and only matching lines are
+ * ever decoded.
+ */
+public class PatternMatchOutputStream extends LineOutputStream {
+
+    /**
+     * What to do with a matching line.
+     */
+    public enum Action {
+        /**
+         * Write the line in bold red.
+         */
+        HIGHLIGHT,
+        /**
+         * Count the matches of every pattern and log the counts when the tail stops.
+         */
+        COUNT,
+        /**
+         * Post the line to a webhook.
+         */
+        WEBHOOK,
+        /**
+         * Stop the tail and fail the build.
+         */
+        FAIL;
+
+        /**
+         * Returns the action with given name, such as {@code highlight}.
+         *
+         * @param name name of the action, case insensitive, must not be null.
+         * @return the action, will not be null.
+         * @throws IllegalArgumentException if there is no such action.
+         */
+        public static Action parse(final String name) {
+            return valueOf(name.trim().toUpperCase(Locale.ENGLISH));
+        }
+    }
+
+    /**
+     * Thrown when a pattern with the {@link Action#FAIL} action is found.
+     */
+    public static class MatchException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        MatchException(final String message) {
+            super(message);
+        }
+    }
+
+    private static final byte[] HIGHLIGHT_START = {0x1b, '[', '1', ';', '3', '1', 'm'};
+
+    private static final byte[] HIGHLIGHT_END = {0x1b, '[', '0', 'm'};
+
+    private final AhoCorasick automaton;
+
+    private final String[] patterns;
+
+    private final Set<Action> actions;
+
+    private final WebhookNotifier webhook;
+
+    private final String source;
+
+    private final Log log;
+
+    private final boolean[] matched;
+
+    private final long[] counts;
+
+    /**
+     * Creates a new stream.
+     *
+     * @param output stream to write the lines to, must not be null.
+     * @param patterns literal patterns to find, must not be null nor contain empty patterns.
+     * @param actions what to do with a matching line, must not be null.
+     * @param webhook notifier to post matching lines to, must not be null if the actions include
+     *                {@link Action#WEBHOOK}.
+     * @param source name of the tailed log, must not be null.
+     * @param log log to report the match counts to, must not be null.
+     */
+    public PatternMatchOutputStream(final OutputStream output,
+                                    final List<String> patterns,
+                                    final Set<Action> actions,
+                                    final WebhookNotifier webhook,
+                                    final String source,
+                                    final Log log) {
+        super(output);
+        this.patterns = patterns.toArray(new String[patterns.size()]);
+        this.actions = actions;
+        this.webhook = webhook;
+        this.source = source;
+        this.log = log;
+        this.matched = new boolean[patterns.size()];
+        this.counts = new long[patterns.size()];
+
+        final List<byte[]> encoded = new ArrayList<>(patterns.size());
+        for (String pattern : patterns) {
+            encoded.add(encode(pattern));
+        }
+        this.automaton = AhoCorasick.compile(encoded);
+    }
+
+    @Override
+    protected void writeLine(final byte[] line, final int length) throws IOException {
+        if (!automaton.scan(line, 0, length, matched)) {
+            output.write(line, 0, length);
+            return;
+        }
+
+        String first = null;
+        for (int i = 0; i < matched.length; i++) {
+            if (matched[i]) {
+                matched[i] = false;
+                counts[i]++;
+                if (first == null) {
+                    first = patterns[i];
+                }
+            }
+        }
+
+        if (actions.contains(Action.HIGHLIGHT)) {
+            final int end = length > 0 && line[length - 1] == '\n' ? length - 1 : length;
+            output.write(HIGHLIGHT_START);
+            output.write(line, 0, end);
+            output.write(HIGHLIGHT_END);
+            output.write(line, end, length - end);
+        } else {
+            output.write(line, 0, length);
+        }
+
+        if (actions.contains(Action.WEBHOOK) || actions.contains(Action.FAIL)) {
+            final String text = new String(line, 0, length, AbstractAIQMojo.UTF8_ENCODING).trim();
+            if (actions.contains(Action.WEBHOOK)) {
+                webhook.notify(source, first, text);
+            }
+            if (actions.contains(Action.FAIL)) {
+                output.flush();
+                throw new MatchException("Found [" + first + "] in the log [" + source + "]: " + text);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        super.close();
+        if (actions.contains(Action.COUNT)) {
+            for (int i = 0; i < patterns.length; i++) {
+                log.info("Found [" + patterns[i] + "] " + counts[i] + " times in the log [" + source + "]");
+            }
+        }
+    }
+
+    /**
+     * @return number of lines in which every pattern has been found so far, by pattern index.
+     */
+    public long[] getCounts() {
+        return counts.clone();
+    }
+
+    private static byte[] encode(final String pattern) {
+        try {
+            return pattern.getBytes(AbstractAIQMojo.UTF8_ENCODING);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
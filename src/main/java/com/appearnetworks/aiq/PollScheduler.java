@@ -0,0 +1,71 @@
+package com.appearnetworks.aiq;
+
+import java.util.Random;
+
+/**
+ * Computes the delay before the next poll of a log. The interval shrinks toward the floor while the log keeps
+ * changing and backs off exponentially, with jitter, toward the ceiling while it does not.
+ */
+public class PollScheduler {
+
+    private final long floor;
+
+    private final long ceiling;
+
+    private final double backoff;
+
+    private final Random random;
+
+    private long interval;
+
+    /**
+     * Creates a new scheduler starting at the floor interval.
+     *
+     * @param floor the shortest interval between polls in milliseconds, must be positive.
+     * @param ceiling the longest interval between polls in milliseconds, must not be less than the floor.
+     * @param backoff factor by which the interval grows or shrinks, must be greater than 1.
+     * @param random source of the jitter, must not be null.
+     */
+    public PollScheduler(final long floor, final long ceiling, final double backoff, final Random random) {
+        if (floor <= 0 || ceiling < floor || backoff <= 1) {
+            throw new IllegalArgumentException("Invalid poll interval floor, ceiling or backoff factor");
+        }
+
+        this.floor = floor;
+        this.ceiling = ceiling;
+        this.backoff = backoff;
+        this.random = random;
+        this.interval = floor;
+    }
+
+    /**
+     * Returns the delay before the next poll after a poll which returned new content.
+     *
+     * @return delay in milliseconds.
+     */
+    public long onModified() {
+        interval = Math.max(floor, (long) (interval / backoff));
+        return interval;
+    }
+
+    /**
+     * Returns the delay before the next poll after a poll which returned no new content.
+     *
+     * @return delay in milliseconds.
+     */
+    public long onNotModified() {
+        interval = Math.min(ceiling, (long) (interval * backoff));
+
+        // equal jitter: keep half of the interval and randomize the other half, so that several tails backing off
+        // together do not poll in lockstep
+        final long half = interval / 2;
+        return Math.max(floor, half + (long) (random.nextDouble() * (interval - half)));
+    }
+
+    /**
+     * @return the current interval in milliseconds, without jitter.
+     */
+    public long getInterval() {
+        return interval;
+    }
+}
@@ -1,7 +1,15 @@
 package com.appearnetworks.aiq;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Properties;
 
 /**
@@ -22,4 +30,75 @@ public class PropertiesUtil {
         properties.load(new FileInputStream(propertiesPath));
         return properties;
     }
+
+    /**
+     * Loads properties from given file.
+     *
+     * @param file file to load, must not be null.
+     * @return loaded properties, or null if the file does not exist.
+     * @throws IOException if the file could not be read.
+     */
+    public Properties loadProperties(File file) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+
+        final Properties properties = new Properties();
+        try (InputStream input = new FileInputStream(file)) {
+            properties.load(input);
+        }
+        return properties;
+    }
+
+    /**
+     * Stores given properties to a file, replacing it atomically so that readers never observe a partially written
+     * file. The file is readable by its owner only.
+     *
+     * @param properties properties to store, must not be null.
+     * @param file file to write, must not be null.
+     * @throws IOException if the file could not be written.
+     */
+    public void storeProperties(Properties properties, File file) throws IOException {
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        properties.store(content, null);
+        storeBytes(content.toByteArray(), file);
+    }
+
+    /**
+     * Stores given content to a file, replacing it atomically so that readers never observe a partially written file.
+     * The file is readable by its owner only.
+     *
+     * @param content content to store, must not be null.
+     * @param file file to write, must not be null.
+     * @throws IOException if the file could not be written.
+     */
+    public void storeBytes(byte[] content, File file) throws IOException {
+        final File directory = file.getAbsoluteFile().getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+            throw new IOException("Could not create directory [" + directory + "]");
+        }
+
+        final File temp = File.createTempFile(file.getName(), ".tmp", directory);
+        try {
+            temp.setReadable(false, false);
+            temp.setReadable(true, true);
+            temp.setWritable(false, false);
+            temp.setWritable(true, true);
+
+            try (OutputStream output = new FileOutputStream(temp)) {
+                output.write(content);
+            }
+
+            try {
+                Files.move(temp.toPath(), file.toPath(),
+                           StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            if (temp.exists()) {
+                temp.delete();
+            }
+        }
+    }
 }
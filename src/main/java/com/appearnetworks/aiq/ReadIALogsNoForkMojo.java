@@ -0,0 +1,17 @@
+package com.appearnetworks.aiq;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+
+/**
+ * Tails the integration adapter logs without forking an initialize lifecycle.
+ */
+@Mojo(name = "ia.logs.tail-no-fork")
+public class ReadIALogsNoForkMojo extends AbstractReadLogsMojo {
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        execute("ia.logs.tail");
+    }
+}
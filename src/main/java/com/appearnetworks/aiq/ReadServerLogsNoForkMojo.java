@@ -0,0 +1,17 @@
+package com.appearnetworks.aiq;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+
+/**
+ * Tails the server logs without forking an initialize lifecycle.
+ */
+@Mojo(name = "server.logs.tail-no-fork")
+public class ReadServerLogsNoForkMojo extends AbstractReadLogsMojo {
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        execute("server.logs.tail");
+    }
+}
@@ -0,0 +1,601 @@
+package com.appearnetworks.aiq;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.Queue;
+
+/**
+ * Stream decoupling the thread writing to it from a slow sink. Written bytes are copied into a bounded ring of
+ * reusable chunks, and a writer thread drains all buffered chunks in one batch to the sink. When the ring is full the
+ * overflow policy decides whether the writing thread waits or log output is dropped.
+ *
+ * The writer swaps the buffered chunks with chunks of its own before writing them, so that the ring is free again as
+ * soon as a batch is taken and no chunk is ever allocated after construction.
+ *
+ * Output is dropped in whole lines, as the stages after the buffer work line by line: chunks start at line boundaries,
+ * a line only spans several chunks when it is longer than a chunk, and the rest of a line of which a part has been
+ * dropped is dropped as well. A long line already partly written to the sink when the rest of it is dropped is
+ * terminated, so that it is never joined to the line following the dropped output. The writer holds an incomplete
+ * line back until it is complete, as the line based stages after the buffer would hold it back anyway, so that only
+ * lines longer than a chunk can be cut.
+ *
+ * Callbacks registered with {@link #whenWritten(Callback)} let the writing thread learn when the sink has written the
+ * bytes written so far, such as to move a checkpoint only past output which has actually been printed. Once output is
+ * dropped the sink never acknowledges anything written after it.
+ */
+public class RingBufferOutputStream extends OutputStream {
+
+    /**
+     * What to do when a chunk is written to a full ring.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Wait until the writer has drained the ring.
+         */
+        BLOCK,
+        /**
+         * Drop the oldest buffered chunk, with the rest of its last line.
+         */
+        DROP_OLDEST,
+        /**
+         * Keep one of every {@value RingBufferOutputStream#SAMPLE_RATE} written chunks, dropping the oldest buffered
+         * chunk for it, and drop the others with the rest of their last line.
+         */
+        SAMPLE;
+
+        /**
+         * Returns the policy with given name, such as {@code drop-oldest}.
+         *
+         * @param name name of the policy, case insensitive, must not be null.
+         * @return the policy, will not be null.
+         * @throws IllegalArgumentException if there is no such policy.
+         */
+        public static OverflowPolicy parse(final String name) {
+            return valueOf(name.trim().toUpperCase(Locale.ENGLISH).replace('-', '_'));
+        }
+    }
+
+    /**
+     * Called once the sink has written the bytes written to the stream before the callback was registered.
+     */
+    public interface Callback {
+
+        /**
+         * @throws IOException to fail the stream, as if the sink had failed.
+         */
+        void written() throws IOException;
+    }
+
+    /**
+     * Number of written chunks of which one is kept by the {@link OverflowPolicy#SAMPLE} policy.
+     */
+    public static final int SAMPLE_RATE = 10;
+
+    /**
+     * Number of milliseconds between two warnings about dropped output.
+     */
+    private static final long REPORT_INTERVAL = 10 * 1000L;
+
+    private final OutputStream sink;
+
+    private final OverflowPolicy policy;
+
+    private final Log log;
+
+    private final int chunkSize;
+
+    private final byte[][] chunks;
+
+    private final int[] lengths;
+
+    /**
+     * Whether every chunk starts at the start of a line.
+     */
+    private final boolean[] lineStarts;
+
+    /**
+     * Whether output has been dropped right before every chunk.
+     */
+    private final boolean[] gaps;
+
+    private final Thread writer;
+
+    private final Queue<PendingCallback> callbacks = new ArrayDeque<>();
+
+    private int head;
+
+    private int count;
+
+    private long overflows;
+
+    private long droppedBytes;
+
+    private long reportedBytes;
+
+    /**
+     * Number of bytes written to the stream, including dropped bytes.
+     */
+    private long writtenBytes;
+
+    /**
+     * Number of written bytes taken by the writer.
+     */
+    private long takenBytes;
+
+    /**
+     * Number of written bytes the sink has written and flushed.
+     */
+    private long acknowledgedBytes;
+
+    /**
+     * Number of written bytes taken by the writer when output was first dropped, beyond which nothing is acknowledged,
+     * or -1 while no output has been dropped.
+     */
+    private long dropLimit = -1;
+
+    /**
+     * Whether the next byte written starts a line.
+     */
+    private boolean lineStart = true;
+
+    /**
+     * Whether written bytes are dropped up to the end of the current line.
+     */
+    private boolean skipLine;
+
+    /**
+     * Whether output has been dropped since the last chunk was started.
+     */
+    private boolean gapPending;
+
+    private boolean closed;
+
+    private IOException failure;
+
+    /**
+     * Creates a new stream and starts its writer thread.
+     *
+     * @param sink stream to drain the buffered bytes to, must not be null.
+     * @param capacity number of chunks in the ring, must be positive.
+     * @param chunkSize size of a chunk in bytes, must be positive.
+     * @param policy what to do when the ring is full, must not be null.
+     * @param log log to report dropped output to, must not be null.
+     */
+    public RingBufferOutputStream(final OutputStream sink,
+                                  final int capacity,
+                                  final int chunkSize,
+                                  final OverflowPolicy policy,
+                                  final Log log) {
+        if (capacity <= 0 || chunkSize <= 0) {
+            throw new IllegalArgumentException("Invalid ring buffer capacity or chunk size");
+        }
+
+        this.sink = sink;
+        this.policy = policy;
+        this.log = log;
+        this.chunkSize = chunkSize;
+        this.chunks = new byte[capacity][chunkSize];
+        this.lengths = new int[capacity];
+        this.lineStarts = new boolean[capacity];
+        this.gaps = new boolean[capacity];
+
+        writer = new Thread(new Writer(), "aiq-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(final byte[] buffer, final int offset, final int length) throws IOException {
+        int position = offset;
+        int remaining = length;
+        while (remaining > 0) {
+            final int size = Math.min(remaining, chunkSize);
+            put(buffer, position, size);
+            position += size;
+            remaining -= size;
+        }
+    }
+
+    /**
+     * Does not wait for the sink, which the writer flushes after every batch.
+     */
+    @Override
+    public void flush() throws IOException {
+        synchronized (this) {
+            checkFailure();
+        }
+    }
+
+    /**
+     * Waits until all buffered bytes are written to the sink, stops the writer and closes the sink.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            writer.interrupt();
+            Thread.currentThread().interrupt();
+        }
+
+        sink.close();
+
+        synchronized (this) {
+            if (droppedBytes > 0) {
+                log.warn("Dropped " + droppedBytes + " bytes of log output in total, the output was too slow");
+            }
+            checkFailure();
+        }
+    }
+
+    /**
+     * @return number of bytes dropped so far.
+     */
+    public synchronized long getDroppedBytes() {
+        return droppedBytes;
+    }
+
+    /**
+     * Calls given callback once the sink has written and flushed all bytes written to the stream so far, right away in
+     * the current thread if it already has, or in the writer thread otherwise. The callback is never called if any of
+     * these bytes are dropped or the sink fails.
+     *
+     * @param callback callback to call, must not be null.
+     * @throws IOException if the callback fails.
+     */
+    public void whenWritten(final Callback callback) throws IOException {
+        synchronized (this) {
+            if (dropLimit >= 0 && writtenBytes > dropLimit) {
+                return;
+            }
+            if (writtenBytes > acknowledgedBytes) {
+                callbacks.add(new PendingCallback(writtenBytes, callback));
+                return;
+            }
+        }
+        callback.written();
+    }
+
+    private synchronized void put(final byte[] buffer, final int offset, final int length) throws IOException {
+        checkFailure();
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        writtenBytes += length;
+
+        int position = offset;
+        final int end = offset + length;
+        while (position < end) {
+            if (skipLine) {
+                final int lineEnd = indexOfLineFeed(buffer, position, end);
+                if (lineEnd < 0) {
+                    droppedBytes += end - position;
+                    return;
+                }
+                droppedBytes += lineEnd + 1 - position;
+                position = lineEnd + 1;
+                skipLine = false;
+                lineStart = true;
+                continue;
+            }
+
+            if (count > 0 && !gapPending) {
+                // coalesce small writes into the last buffered chunk, filling it up to its last complete line otherwise
+                final int last = (head + count - 1) % chunks.length;
+                final int space = chunkSize - lengths[last];
+                final int fitting = end - position <= space ?
+                                    end : lastIndexOfLineFeed(buffer, position, position + space) + 1;
+                if (fitting > position) {
+                    System.arraycopy(buffer, position, chunks[last], lengths[last], fitting - position);
+                    lengths[last] += fitting - position;
+                    lineStart = buffer[fitting - 1] == '\n';
+                    position = fitting;
+                    notifyAll();
+                    continue;
+                }
+            }
+
+            if (count == chunks.length) {
+                switch (policy) {
+                    case BLOCK:
+                        try {
+                            while (count == chunks.length && failure == null) {
+                                wait();
+                            }
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new InterruptedIOException("Interrupted while waiting for the log output");
+                        }
+                        checkFailure();
+                        break;
+                    case SAMPLE:
+                        if (overflows++ % SAMPLE_RATE != 0) {
+                            dropWritten(buffer, position, end);
+                            return;
+                        }
+                        dropOldest();
+                        break;
+                    default:
+                        dropOldest();
+                        break;
+                }
+                if (skipLine) {
+                    // the start of the line continued by the written bytes has been dropped
+                    continue;
+                }
+            } else {
+                overflows = 0;
+            }
+
+            position += startChunk(buffer, position, end);
+        }
+    }
+
+    /**
+     * Starts a new chunk with given written bytes, moving the start of the current line from the last chunk along so
+     * that a line fitting into a chunk is never split across chunks.
+     *
+     * @return number of written bytes put into the chunk.
+     */
+    private int startChunk(final byte[] buffer, final int offset, final int end) {
+        final int slot = (head + count) % chunks.length;
+        int carried = 0;
+        if (!lineStart && count > 0 && !gapPending) {
+            final int last = (head + count - 1) % chunks.length;
+            final int lineHead = lastIndexOfLineFeed(chunks[last], 0, lengths[last]) + 1;
+            if (lineHead > 0) {
+                carried = lengths[last] - lineHead;
+                System.arraycopy(chunks[last], lineHead, chunks[slot], 0, carried);
+                lengths[last] = lineHead;
+            }
+        }
+
+        final int size = Math.min(end - offset, chunkSize - carried);
+        System.arraycopy(buffer, offset, chunks[slot], carried, size);
+        lengths[slot] = carried + size;
+        lineStarts[slot] = lineStart || carried > 0;
+        gaps[slot] = gapPending;
+        gapPending = false;
+        lineStart = buffer[offset + size - 1] == '\n';
+        count++;
+        notifyAll();
+        return size;
+    }
+
+    /**
+     * Drops the oldest buffered chunk, and the following chunks continuing its last line.
+     */
+    private void dropOldest() {
+        limitAcknowledgement();
+        do {
+            droppedBytes += lengths[head];
+            head = (head + 1) % chunks.length;
+            count--;
+        } while (count > 0 && !lineStarts[head]);
+
+        if (count > 0) {
+            gaps[head] = true;
+        } else {
+            gapPending = true;
+            skipLine = !lineStart;
+        }
+    }
+
+    /**
+     * Drops given written bytes, the start of their first line if still buffered, and the rest of their last line.
+     */
+    private void dropWritten(final byte[] buffer, final int offset, final int end) {
+        limitAcknowledgement();
+        if (!lineStart && count > 0 && !gapPending) {
+            final int last = (head + count - 1) % chunks.length;
+            final int lineHead = lastIndexOfLineFeed(chunks[last], 0, lengths[last]) + 1;
+            if (lineHead > 0) {
+                droppedBytes += lengths[last] - lineHead;
+                lengths[last] = lineHead;
+            }
+        }
+
+        droppedBytes += end - offset;
+        gapPending = true;
+        skipLine = buffer[end - 1] != '\n';
+        lineStart = !skipLine;
+    }
+
+    /**
+     * Stops acknowledging bytes not taken by the writer yet, some of which are about to be dropped.
+     */
+    private void limitAcknowledgement() {
+        if (dropLimit < 0) {
+            dropLimit = takenBytes;
+        }
+    }
+
+    private static int indexOfLineFeed(final byte[] buffer, final int offset, final int end) {
+        for (int i = offset; i < end; i++) {
+            if (buffer[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int lastIndexOfLineFeed(final byte[] buffer, final int offset, final int end) {
+        for (int i = end - 1; i >= offset; i--) {
+            if (buffer[i] == '\n') {
+                return i;
+            }
+        }
+        return offset - 1;
+    }
+
+    /**
+     * Returns the length of the incomplete line at the end of the last buffered chunk, which the writer holds back
+     * until the line is complete, unless the line is longer than a chunk anyway or the ring has no room for the rest.
+     */
+    private int heldBack() {
+        if (closed || count == 0 || chunks.length == 1) {
+            return 0;
+        }
+        final int last = (head + count - 1) % chunks.length;
+        final int lineHead = lastIndexOfLineFeed(chunks[last], 0, lengths[last]) + 1;
+        if (lineHead == 0 && (!lineStarts[last] || lengths[last] == chunkSize)) {
+            return 0;
+        }
+        return lengths[last] - lineHead;
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Drains the ring to the sink in batches until the stream is closed and drained.
+     */
+    private class Writer implements Runnable {
+
+        private final byte[][] batch = new byte[chunks.length][chunkSize];
+
+        private final int[] batchLengths = new int[chunks.length];
+
+        private final boolean[] batchGaps = new boolean[chunks.length];
+
+        private boolean sinkLineStart = true;
+
+        private long reported;
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    int size;
+                    final long dropped;
+                    final long written;
+                    synchronized (RingBufferOutputStream.this) {
+                        while (!closed && (count == 0 || count == 1 && heldBack() == lengths[head])) {
+                            RingBufferOutputStream.this.wait();
+                        }
+                        if (count == 0) {
+                            break;
+                        }
+
+                        final int held = heldBack();
+                        size = held > 0 ? count - 1 : count;
+                        for (int i = 0; i < size; i++) {
+                            final int slot = (head + i) % chunks.length;
+                            final byte[] chunk = chunks[slot];
+                            chunks[slot] = batch[i];
+                            batch[i] = chunk;
+                            batchLengths[i] = lengths[slot];
+                            batchGaps[i] = gaps[slot];
+                        }
+                        head = (head + size) % chunks.length;
+                        count -= size;
+                        if (held > 0 && held < lengths[head]) {
+                            // take the complete lines of the last chunk, and keep its incomplete line at its start
+                            final int complete = lengths[head] - held;
+                            System.arraycopy(chunks[head], 0, batch[size], 0, complete);
+                            System.arraycopy(chunks[head], complete, chunks[head], 0, held);
+                            batchLengths[size] = complete;
+                            batchGaps[size] = gaps[head];
+                            lengths[head] = held;
+                            lineStarts[head] = true;
+                            gaps[head] = false;
+                            size++;
+                        }
+                        for (int i = 0; i < size; i++) {
+                            takenBytes += batchLengths[i];
+                        }
+                        written = takenBytes;
+                        dropped = droppedBytes - reportedBytes;
+                        RingBufferOutputStream.this.notifyAll();
+                    }
+
+                    for (int i = 0; i < size; i++) {
+                        if (batchGaps[i] && !sinkLineStart) {
+                            // the rest of the line written last has been dropped
+                            sink.write('\n');
+                        }
+                        sink.write(batch[i], 0, batchLengths[i]);
+                        sinkLineStart = batch[i][batchLengths[i] - 1] == '\n';
+                    }
+                    sink.flush();
+
+                    acknowledge(written);
+                    report(dropped);
+                }
+            } catch (IOException e) {
+                synchronized (RingBufferOutputStream.this) {
+                    failure = e;
+                    RingBufferOutputStream.this.notifyAll();
+                }
+            } catch (InterruptedException ignore) {
+                // abandoned by close
+            }
+        }
+
+        /**
+         * Calls the callbacks waiting for no more than given number of written bytes.
+         */
+        private void acknowledge(final long written) throws IOException {
+            while (true) {
+                final Callback callback;
+                synchronized (RingBufferOutputStream.this) {
+                    acknowledgedBytes = written;
+                    final PendingCallback next = callbacks.peek();
+                    if (next == null || next.position > written) {
+                        return;
+                    }
+                    callbacks.remove();
+                    if (dropLimit >= 0 && next.position > dropLimit) {
+                        continue;
+                    }
+                    callback = next.callback;
+                }
+                callback.written();
+            }
+        }
+
+        private void report(final long dropped) {
+            final long now = System.currentTimeMillis();
+            if (dropped > 0 && now - reported >= REPORT_INTERVAL) {
+                reported = now;
+                synchronized (RingBufferOutputStream.this) {
+                    reportedBytes += dropped;
+                }
+                log.warn("Dropped " + dropped + " bytes of log output, the output is too slow");
+            }
+        }
+    }
+
+    private static class PendingCallback {
+
+        private final long position;
+
+        private final Callback callback;
+
+        PendingCallback(final long position, final Callback callback) {
+            this.position = position;
+            this.callback = callback;
+        }
+    }
+}
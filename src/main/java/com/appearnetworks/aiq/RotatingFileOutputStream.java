@@ -0,0 +1,224 @@
+package com.appearnetworks.aiq;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Stream writing to a file through a {@link FileChannel} and a large direct buffer, so that a large log costs a write
+ * system call per megabyte, without the temporary direct copy the channel makes of heap buffers. The file is optionally
+ * gzipped as it is written, and rotated once it reaches a size or an age.
+ *
+ * Rotation happens at the first line boundary after the limit is reached, so that no line is split across files. The
+ * finished file is renamed by inserting the time at which it was started before its extension, such as
+ * {@code server-20140101-120000-000.log.gz} for {@code server.log.gz}, and a new file is started under the original
+ * name.
+ */
+public class RotatingFileOutputStream extends OutputStream {
+
+    /**
+     * Size of the direct buffer through which bytes are written to the file.
+     */
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * Size of the buffer of compressed bytes of the gzip stream.
+     */
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+
+    private final long maxSize;
+
+    private final long maxAge;
+
+    private final boolean gzip;
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    private OutputStream segment;
+
+    private long size;
+
+    private long started;
+
+    private boolean closed;
+
+    /**
+     * Creates a new stream, replacing the file if it exists.
+     *
+     * @param file file to write to, must not be null.
+     * @param maxSize number of bytes written to a file after which it is rotated, or 0 to not rotate by size.
+     * @param maxAge number of milliseconds after which a file is rotated, or 0 to not rotate by age.
+     * @param gzip whether to gzip the file as it is written.
+     * @throws IOException if the file could not be created.
+     */
+    public RotatingFileOutputStream(final File file, final long maxSize, final long maxAge, final boolean gzip)
+            throws IOException {
+        if (maxSize < 0 || maxAge < 0) {
+            throw new IllegalArgumentException("Invalid rotation size or age");
+        }
+
+        this.file = file;
+        this.maxSize = maxSize;
+        this.maxAge = maxAge;
+        this.gzip = gzip;
+
+        final File directory = file.getAbsoluteFile().getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create the directory [" + directory + "]");
+        }
+        open();
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+
+        int position = offset;
+        final int end = offset + length;
+        while (position < end && isRotationDue()) {
+            int newline = position;
+            while (newline < end && bytes[newline] != '\n') {
+                newline++;
+            }
+            if (newline == end) {
+                break;
+            }
+
+            segment.write(bytes, position, newline + 1 - position);
+            position = newline + 1;
+            rotate();
+        }
+
+        if (position < end) {
+            segment.write(bytes, position, end - position);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (!closed) {
+            segment.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        segment.close();
+    }
+
+    private boolean isRotationDue() {
+        return (maxSize > 0 && size >= maxSize) ||
+               (maxAge > 0 && System.currentTimeMillis() - started >= maxAge);
+    }
+
+    private void open() throws IOException {
+        final FileChannel channel = FileChannel.open(file.toPath(),
+                                                     StandardOpenOption.CREATE,
+                                                     StandardOpenOption.WRITE,
+                                                     StandardOpenOption.TRUNCATE_EXISTING);
+        size = 0;
+        started = System.currentTimeMillis();
+
+        final OutputStream sink = new ChannelOutputStream(channel);
+        segment = gzip ? new GZIPOutputStream(sink, GZIP_BUFFER_SIZE) : sink;
+    }
+
+    private void rotate() throws IOException {
+        segment.close();
+        Files.move(file.toPath(), rotatedFile().toPath());
+        open();
+    }
+
+    private File rotatedFile() {
+        final String name = file.getName();
+        final int dot = name.indexOf('.', 1);
+        final String base = dot < 0 ? name : name.substring(0, dot);
+        final String extension = dot < 0 ? "" : name.substring(dot);
+        final String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date(started));
+
+        File rotated = new File(file.getParentFile(), base + "-" + stamp + extension);
+        for (int i = 1; rotated.exists(); i++) {
+            rotated = new File(file.getParentFile(), base + "-" + stamp + "-" + i + extension);
+        }
+        return rotated;
+    }
+
+    /**
+     * Stream writing to the channel of the current file through the direct buffer.
+     */
+    private class ChannelOutputStream extends OutputStream {
+
+        private final FileChannel channel;
+
+        private ChannelOutputStream(final FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            buffer.put((byte) b);
+            size++;
+        }
+
+        @Override
+        public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+            int position = offset;
+            int remaining = length;
+            while (remaining > 0) {
+                if (!buffer.hasRemaining()) {
+                    drain();
+                }
+                final int chunk = Math.min(remaining, buffer.remaining());
+                buffer.put(bytes, position, chunk);
+                position += chunk;
+                remaining -= chunk;
+            }
+            size += length;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            drain();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                drain();
+            } finally {
+                channel.close();
+            }
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.appearnetworks.aiq;
+
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+
+/**
+ * Starts the integration adapter without forking an initialize lifecycle.
+ */
+@Mojo(name = "ia.start-no-fork", defaultPhase = LifecyclePhase.PRE_INTEGRATION_TEST)
+public class StartNoForkMojo extends AbstractStartMojo {
+}
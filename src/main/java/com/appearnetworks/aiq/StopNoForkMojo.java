@@ -0,0 +1,11 @@
+package com.appearnetworks.aiq;
+
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+
+/**
+ * Stops the integration adapter without forking an initialize lifecycle.
+ */
+@Mojo(name = "ia.stop-no-fork", defaultPhase = LifecyclePhase.POST_INTEGRATION_TEST)
+public class StopNoForkMojo extends AbstractStopMojo {
+}
@@ -0,0 +1,206 @@
+package com.appearnetworks.aiq;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Position up to which a log has been tailed, persisted under {@code ~/.aiq/tails} with one file per server URL,
+ * organization and log, so that a restarted tail resumes where the previous one stopped.
+ *
+ * The position is saved at most once per interval. A position moved within the interval is saved by a background
+ * thread once the interval has passed, also when the log goes quiet, and on shutdown of the JVM, such as on Ctrl-C, so
+ * a tail which is killed replays at most one interval of the log when restarted. The file is rewritten atomically and
+ * never holds a partial position.
+ */
+public class TailCheckpoint {
+
+    private static final String SINCE_KEY = "since";
+    private static final String OFFSET_KEY = "offset";
+    private static final String EVENT_ID_KEY = "eventId";
+
+    /**
+     * Saves moved positions once their interval has passed, with a thread which only runs while saves are pending.
+     */
+    private static final ScheduledThreadPoolExecutor SAVER = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "aiq-tail-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    static {
+        SAVER.setKeepAliveTime(1, TimeUnit.SECONDS);
+        SAVER.allowCoreThreadTimeOut(true);
+    }
+
+    private final File file;
+
+    private final long interval;
+
+    private final Thread shutdownHook = new Thread(new Runnable() {
+        @Override
+        public void run() {
+            saveQuietly();
+        }
+    }, "aiq-tail-checkpoint-shutdown");
+
+    private String since;
+
+    private long offset = -1;
+
+    private String eventId;
+
+    private boolean dirty;
+
+    private long saved;
+
+    private ScheduledFuture<?> pendingSave;
+
+    private IOException failure;
+
+    private TailCheckpoint(final File file, final long interval) {
+        this.file = file;
+        this.interval = interval;
+    }
+
+    /**
+     * Returns the file in which the position of given log is kept for the current user.
+     *
+     * @param url URL of the integration supervisor, must not be null.
+     * @param orgName The name of the organization, must not be null.
+     * @param action The name of the action serving the log, must not be null.
+     * @return checkpoint file, will not be null.
+     */
+    public static File userFile(final String url, final String orgName, final String action) {
+        final File directory = new File(new File(System.getProperty("user.home"), ".aiq"), "tails");
+        return new File(directory, DigestUtil.sha256Hex(url + '\n' + orgName + '\n' + action) + ".properties");
+    }
+
+    /**
+     * Loads the checkpoint kept in given file. The checkpoint is saved on shutdown of the JVM until it is closed.
+     *
+     * @param file checkpoint file, must not be null.
+     * @param interval minimum number of milliseconds between two saves of the checkpoint.
+     * @return the checkpoint, at the start of the log if the file does not exist or is not valid, will not be null.
+     * @throws IOException if the file could not be read.
+     */
+    public static TailCheckpoint load(final File file, final long interval) throws IOException {
+        final TailCheckpoint checkpoint = new TailCheckpoint(file, interval);
+        final Properties properties = PropertiesUtil.getInstance().loadProperties(file);
+        if (properties != null) {
+            checkpoint.since = properties.getProperty(SINCE_KEY);
+            checkpoint.eventId = properties.getProperty(EVENT_ID_KEY);
+            try {
+                checkpoint.offset = Long.parseLong(properties.getProperty(OFFSET_KEY, "-1"));
+            } catch (NumberFormatException e) {
+                checkpoint.offset = -1;
+            }
+        }
+        Runtime.getRuntime().addShutdownHook(checkpoint.shutdownHook);
+        return checkpoint;
+    }
+
+    /**
+     * Moves the checkpoint to given position, saving it if the interval has passed since the last save, or once the
+     * interval has passed otherwise.
+     *
+     * @param since modification date of the log, may be null.
+     * @param offset offset up to which the log has been written, or -1 if not known.
+     * @param eventId identifier of the last event streamed, may be null.
+     * @throws IOException if the checkpoint could not be saved, now or by a previous background save.
+     */
+    public synchronized void update(final String since, final long offset, final String eventId) throws IOException {
+        if (failure != null) {
+            final IOException e = failure;
+            failure = null;
+            throw e;
+        }
+
+        this.since = since;
+        this.offset = offset;
+        this.eventId = eventId;
+        dirty = true;
+
+        final long due = saved + interval - System.currentTimeMillis();
+        if (due <= 0) {
+            save();
+        } else if (pendingSave == null) {
+            pendingSave = SAVER.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    saveQuietly();
+                }
+            }, due, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Saves the checkpoint if it has moved since the last save.
+     *
+     * @throws IOException if the checkpoint could not be saved.
+     */
+    public synchronized void save() throws IOException {
+        if (!dirty) {
+            return;
+        }
+
+        final Properties properties = new Properties();
+        if (since != null) properties.setProperty(SINCE_KEY, since);
+        if (eventId != null) properties.setProperty(EVENT_ID_KEY, eventId);
+        properties.setProperty(OFFSET_KEY, Long.toString(offset));
+
+        PropertiesUtil.getInstance().storeProperties(properties, file);
+        dirty = false;
+        saved = System.currentTimeMillis();
+    }
+
+    /**
+     * Saves the checkpoint if it has moved since the last save, and stops saving it in the background and on
+     * shutdown.
+     *
+     * @throws IOException if the checkpoint could not be saved.
+     */
+    public synchronized void close() throws IOException {
+        if (pendingSave != null) {
+            pendingSave.cancel(false);
+            pendingSave = null;
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException ignore) {
+            // already shutting down, the hook saves the checkpoint as well
+        }
+        save();
+    }
+
+    /**
+     * Saves the checkpoint in the background, keeping a failure for the next update.
+     */
+    private synchronized void saveQuietly() {
+        pendingSave = null;
+        try {
+            save();
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    public synchronized String getSince() {
+        return since;
+    }
+
+    public synchronized long getOffset() {
+        return offset;
+    }
+
+    public synchronized String getEventId() {
+        return eventId;
+    }
+}
@@ -0,0 +1,13 @@
+package com.appearnetworks.aiq;
+
+import org.apache.maven.plugins.annotations.Execute;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+
+/**
+ * Tails the integration adapter and server logs of several organizations at once.
+ */
+@Mojo(name = "logs.tail")
+@Execute(phase = LifecyclePhase.INITIALIZE)
+public class TailLogsMojo extends AbstractTailLogsMojo {
+}
@@ -0,0 +1,11 @@
+package com.appearnetworks.aiq;
+
+import org.apache.maven.plugins.annotations.Mojo;
+
+/**
+ * Tails the integration adapter and server logs of several organizations at once without forking an initialize
+ * lifecycle.
+ */
+@Mojo(name = "logs.tail-no-fork")
+public class TailLogsNoForkMojo extends AbstractTailLogsMojo {
+}
@@ -0,0 +1,305 @@
+package com.appearnetworks.aiq;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters of the requests and content of a tailed log, updated by the tail and read by the metrics reporter.
+ *
+ * Request latencies are counted in a histogram of power of two buckets, so percentiles are reported as the upper
+ * bound of their bucket. The getters and the JSON snapshot report totals since the tail started, while the logged
+ * summary reports every value over the interval since the previous summary.
+ */
+public class TailMetrics implements TailMetricsMBean {
+
+    /**
+     * Number of latency buckets, the bucket {@code i} counting latencies below {@code 2^i} milliseconds and the last
+     * bucket counting all longer latencies.
+     */
+    private static final int LATENCY_BUCKETS = 20;
+
+    private final String source;
+
+    private final long started = System.currentTimeMillis();
+
+    private final AtomicLong polls = new AtomicLong();
+
+    private final AtomicLong modified = new AtomicLong();
+
+    private final AtomicLong partial = new AtomicLong();
+
+    private final AtomicLong notModified = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final AtomicLong bytes = new AtomicLong();
+
+    private final AtomicLong lines = new AtomicLong();
+
+    private final AtomicLongArray latencies = new AtomicLongArray(LATENCY_BUCKETS);
+
+    private volatile long lag = -1;
+
+    private long summarized = started;
+
+    private long summarizedPolls;
+
+    private long summarizedBytes;
+
+    private long summarizedLines;
+
+    private long summarizedModified;
+
+    private long summarizedPartial;
+
+    private long summarizedNotModified;
+
+    private long summarizedFailed;
+
+    private final long[] summarizedLatencies = new long[LATENCY_BUCKETS];
+
+    /**
+     * Creates new metrics.
+     *
+     * @param source name of the tailed log, must not be null.
+     */
+    public TailMetrics(final String source) {
+        this.source = source;
+    }
+
+    /**
+     * Records a request for the log.
+     *
+     * @param latency number of milliseconds until the response arrived.
+     * @param statusCode status code of the response.
+     */
+    public void recordRequest(final long latency, final int statusCode) {
+        polls.incrementAndGet();
+        latencies.incrementAndGet(bucket(latency));
+
+        switch (statusCode) {
+            case 200:
+                modified.incrementAndGet();
+                break;
+            case 206:
+                partial.incrementAndGet();
+                break;
+            case 304:
+            case 416:
+                notModified.incrementAndGet();
+                break;
+            default:
+                failed.incrementAndGet();
+                break;
+        }
+    }
+
+    /**
+     * Records a request for the log which failed without a response.
+     */
+    public void recordFailure() {
+        polls.incrementAndGet();
+        failed.incrementAndGet();
+    }
+
+    /**
+     * Records content of the log written to the output.
+     *
+     * @param bytes number of bytes written.
+     * @param lines number of lines written.
+     */
+    public void recordContent(final long bytes, final long lines) {
+        this.bytes.addAndGet(bytes);
+        this.lines.addAndGet(lines);
+    }
+
+    /**
+     * Records the time elapsed since the last modification of the log on the server.
+     *
+     * @param lag number of milliseconds, or -1 if not known.
+     */
+    public void recordLag(final long lag) {
+        this.lag = lag;
+    }
+
+    /**
+     * Returns a summary of the metrics over the interval since the previous summary, except for the lag which is the
+     * latest known.
+     *
+     * @return the summary, will not be null.
+     */
+    public synchronized String summary() {
+        final long now = System.currentTimeMillis();
+        final double seconds = Math.max(1, now - summarized) / 1000.0;
+        final long currentPolls = polls.get();
+        final long currentModified = modified.get();
+        final long currentPartial = partial.get();
+        final long currentNotModified = notModified.get();
+        final long currentFailed = failed.get();
+        final long currentBytes = bytes.get();
+        final long currentLines = lines.get();
+        final long[] intervalLatencies = new long[LATENCY_BUCKETS];
+        for (int i = 0; i < LATENCY_BUCKETS; i++) {
+            final long current = latencies.get(i);
+            intervalLatencies[i] = current - summarizedLatencies[i];
+            summarizedLatencies[i] = current;
+        }
+
+        final String summary = String.format(Locale.ENGLISH,
+                "[%s] last %.1f s: %d polls (%.2f/s), %d modified, %d partial, %d not modified, %d failed, " +
+                "%.0f bytes/s, %.1f lines/s, latency p50 %d ms p99 %d ms, lag %s",
+                source,
+                seconds,
+                currentPolls - summarizedPolls,
+                (currentPolls - summarizedPolls) / seconds,
+                currentModified - summarizedModified,
+                currentPartial - summarizedPartial,
+                currentNotModified - summarizedNotModified,
+                currentFailed - summarizedFailed,
+                (currentBytes - summarizedBytes) / seconds,
+                (currentLines - summarizedLines) / seconds,
+                percentile(intervalLatencies, 0.50),
+                percentile(intervalLatencies, 0.99),
+                lag < 0 ? "unknown" : lag + " ms");
+
+        summarized = now;
+        summarizedPolls = currentPolls;
+        summarizedModified = currentModified;
+        summarizedPartial = currentPartial;
+        summarizedNotModified = currentNotModified;
+        summarizedFailed = currentFailed;
+        summarizedBytes = currentBytes;
+        summarizedLines = currentLines;
+        return summary;
+    }
+
+    /**
+     * Returns the metrics as a map of values by name, for a JSON snapshot.
+     *
+     * @return the metrics, will not be null.
+     */
+    public Map<String, Object> toMap() {
+        final Map<String, Object> map = new LinkedHashMap<>();
+        map.put("source", source);
+        map.put("polls", getPolls());
+        map.put("modified", getModified());
+        map.put("partial", getPartial());
+        map.put("notModified", getNotModified());
+        map.put("failed", getFailed());
+        map.put("bytes", getBytes());
+        map.put("lines", getLines());
+        map.put("bytesPerSecond", getBytesPerSecond());
+        map.put("linesPerSecond", getLinesPerSecond());
+        map.put("latencyP50", getLatencyP50());
+        map.put("latencyP99", getLatencyP99());
+        map.put("lag", getLag());
+        return map;
+    }
+
+    @Override
+    public String getSource() {
+        return source;
+    }
+
+    @Override
+    public long getPolls() {
+        return polls.get();
+    }
+
+    @Override
+    public long getModified() {
+        return modified.get();
+    }
+
+    @Override
+    public long getPartial() {
+        return partial.get();
+    }
+
+    @Override
+    public long getNotModified() {
+        return notModified.get();
+    }
+
+    @Override
+    public long getFailed() {
+        return failed.get();
+    }
+
+    @Override
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    @Override
+    public long getLines() {
+        return lines.get();
+    }
+
+    @Override
+    public double getBytesPerSecond() {
+        return bytes.get() * 1000.0 / Math.max(1, System.currentTimeMillis() - started);
+    }
+
+    @Override
+    public double getLinesPerSecond() {
+        return lines.get() * 1000.0 / Math.max(1, System.currentTimeMillis() - started);
+    }
+
+    @Override
+    public long getLatencyP50() {
+        return latencyPercentile(0.50);
+    }
+
+    @Override
+    public long getLatencyP99() {
+        return latencyPercentile(0.99);
+    }
+
+    @Override
+    public long getLag() {
+        return lag;
+    }
+
+    private long latencyPercentile(final double percentile) {
+        final long[] counts = new long[LATENCY_BUCKETS];
+        for (int i = 0; i < LATENCY_BUCKETS; i++) {
+            counts[i] = latencies.get(i);
+        }
+        return percentile(counts, percentile);
+    }
+
+    /**
+     * @return upper bound in milliseconds of the bucket holding given percentile of given latency counts, or -1 if
+     *         nothing was counted.
+     */
+    private static long percentile(final long[] counts, final double percentile) {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        if (total == 0) {
+            return -1;
+        }
+
+        final long rank = (long) Math.ceil(total * percentile);
+        long count = 0;
+        for (int i = 0; i < LATENCY_BUCKETS; i++) {
+            count += counts[i];
+            if (count >= rank) {
+                return 1L << i;
+            }
+        }
+        return 1L << (LATENCY_BUCKETS - 1);
+    }
+
+    private static int bucket(final long latency) {
+        if (latency <= 0) {
+            return 0;
+        }
+        return Math.min(LATENCY_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(latency));
+    }
+}
@@ -0,0 +1,33 @@
+package com.appearnetworks.aiq;
+
+/**
+ * Management interface of the metrics of a tailed log.
+ */
+public interface TailMetricsMBean {
+
+    String getSource();
+
+    long getPolls();
+
+    long getModified();
+
+    long getPartial();
+
+    long getNotModified();
+
+    long getFailed();
+
+    long getBytes();
+
+    long getLines();
+
+    double getBytesPerSecond();
+
+    double getLinesPerSecond();
+
+    long getLatencyP50();
+
+    long getLatencyP99();
+
+    long getLag();
+}
@@ -0,0 +1,149 @@
+package com.appearnetworks.aiq;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.maven.plugin.logging.Log;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reports the metrics of the tailed logs. Every log is registered as a {@code com.appearnetworks.aiq:type=LogTail}
+ * MBean, and a background thread periodically logs a summary of every log and writes a JSON snapshot of all logs.
+ */
+public class TailMetricsReporter {
+
+    private static final String DOMAIN = "com.appearnetworks.aiq";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final Log log;
+
+    private final long interval;
+
+    private final File snapshotFile;
+
+    private final boolean jmx;
+
+    private final Map<TailMetrics, ObjectName> metrics = new LinkedHashMap<>();
+
+    private final Thread reporter;
+
+    /**
+     * Creates a new reporter and starts its background thread.
+     *
+     * @param log log to write the summaries to, must not be null.
+     * @param interval number of milliseconds between two summaries, must be positive.
+     * @param snapshotFile file to write the JSON snapshot to, may be null.
+     * @param jmx whether to register the metrics as MBeans.
+     */
+    public TailMetricsReporter(final Log log, final long interval, final File snapshotFile, final boolean jmx) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Invalid metrics interval " + interval);
+        }
+
+        this.log = log;
+        this.interval = interval;
+        this.snapshotFile = snapshotFile;
+        this.jmx = jmx;
+
+        reporter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        Thread.sleep(TailMetricsReporter.this.interval);
+                        report();
+                    }
+                } catch (InterruptedException ignore) {
+                    // reporter closed
+                }
+            }
+        }, "aiq-tail-metrics");
+        reporter.setDaemon(true);
+        reporter.start();
+    }
+
+    /**
+     * Starts reporting given metrics.
+     *
+     * @param tailMetrics metrics of a tailed log, must not be null.
+     */
+    public synchronized void register(final TailMetrics tailMetrics) {
+        ObjectName name = null;
+        if (jmx) {
+            try {
+                name = new ObjectName(DOMAIN + ":type=LogTail,name=" + ObjectName.quote(tailMetrics.getSource()));
+                final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+                server.registerMBean(tailMetrics, name);
+            } catch (JMException e) {
+                log.warn("Failed to register the metrics of [" + tailMetrics.getSource() + "]: " + e.getMessage());
+                name = null;
+            }
+        }
+        metrics.put(tailMetrics, name);
+    }
+
+    /**
+     * Stops the background thread, writes a final snapshot and unregisters all metrics.
+     */
+    public void close() {
+        reporter.interrupt();
+        try {
+            reporter.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (this) {
+            writeSnapshot();
+            for (ObjectName name : metrics.values()) {
+                if (name != null) {
+                    try {
+                        ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+                    } catch (JMException ignore) {
+                        // already gone
+                    }
+                }
+            }
+            metrics.clear();
+        }
+    }
+
+    private synchronized void report() {
+        for (TailMetrics tailMetrics : metrics.keySet()) {
+            log.info(tailMetrics.summary());
+        }
+        writeSnapshot();
+    }
+
+    private void writeSnapshot() {
+        if (snapshotFile == null) {
+            return;
+        }
+
+        final List<Map<String, Object>> logs = new ArrayList<>(metrics.size());
+        for (TailMetrics tailMetrics : metrics.keySet()) {
+            logs.add(tailMetrics.toMap());
+        }
+        final Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("timestamp", System.currentTimeMillis());
+        snapshot.put("logs", logs);
+
+        try {
+            PropertiesUtil.getInstance().storeBytes(OBJECT_MAPPER.writeValueAsBytes(snapshot), snapshotFile);
+        } catch (IOException e) {
+            log.warn("Failed to write tail metrics to [" + snapshotFile + "]: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.appearnetworks.aiq;
+
+import java.net.URL;
+
+/**
+ * A log tailed by the {@code logs.tail} goal or merged by the {@code logs.merge} goal, configured as a
+ * {@code tailTarget} element of its {@code targets}.
+ */
+public class TailTarget {
+
+    /**
+     * URL to the integration supervisor, the URL of the goal if not set.
+     */
+    private URL url;
+
+    /**
+     * Path to the file with the server URL, organization name and user credentials, the properties file of the goal
+     * if not set.
+     */
+    private String propertiesPath;
+
+    /**
+     * The log to read, either {@code ia} for the integration adapter log or {@code server} for the server log.
+     */
+    private String log = "ia";
+
+    /**
+     * Prefix of the lines of the log, the organization name and the log if not set.
+     */
+    private String name;
+
+    public URL getUrl() {
+        return url;
+    }
+
+    public String getPropertiesPath() {
+        return propertiesPath;
+    }
+
+    public String getLog() {
+        return log;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
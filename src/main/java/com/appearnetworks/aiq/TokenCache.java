@@ -0,0 +1,125 @@
+package com.appearnetworks.aiq;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+
+/**
+ * On-disk cache of access tokens, stored under {@code ~/.aiq/tokens} with one file per server URL, organization and
+ * username.
+ */
+public class TokenCache {
+
+    /**
+     * Number of milliseconds before the expiry at which a cached token is no longer handed out, so that it does not
+     * expire while a request is in flight.
+     */
+    public static final long EXPIRY_MARGIN = 30 * 1000L;
+
+    private static final String URL_KEY = "url";
+    private static final String ORG_KEY = "orgName";
+    private static final String USERNAME_KEY = "username";
+    private static final String TOKEN_KEY = "accessToken";
+    private static final String EXPIRES_AT_KEY = "expiresAt";
+
+    private final File directory;
+
+    /**
+     * Creates a cache stored in the default location within the user home directory.
+     */
+    public TokenCache() {
+        this(new File(new File(System.getProperty("user.home"), ".aiq"), "tokens"));
+    }
+
+    /**
+     * Creates a cache stored in given directory.
+     *
+     * @param directory directory in which to keep the tokens, must not be null.
+     */
+    public TokenCache(final File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns a cached, not yet expired access token.
+     *
+     * @param baseUrl URL of the server which issued the token, must not be null.
+     * @param orgName The name of the organization of the user, must not be null.
+     * @param username The name of the user, must not be null.
+     * @return access token, or null if there is no valid token in the cache.
+     * @throws IOException if the cache could not be read.
+     */
+    public AccessToken get(final String baseUrl, final String orgName, final String username) throws IOException {
+        final File file = file(baseUrl, orgName, username);
+        final Properties properties = PropertiesUtil.getInstance().loadProperties(file);
+        if (properties == null) {
+            return null;
+        }
+
+        final String token = properties.getProperty(TOKEN_KEY);
+        final long expiresAt;
+        try {
+            expiresAt = Long.parseLong(properties.getProperty(EXPIRES_AT_KEY, "0"));
+        } catch (NumberFormatException e) {
+            file.delete();
+            return null;
+        }
+
+        if (token == null ||
+            !baseUrl.equals(properties.getProperty(URL_KEY)) ||
+            !orgName.equals(properties.getProperty(ORG_KEY)) ||
+            !username.equals(properties.getProperty(USERNAME_KEY))) {
+            return null;
+        }
+
+        final AccessToken accessToken = new AccessToken(token, expiresAt);
+        if (!accessToken.hasExpiry() || !accessToken.isValidFor(EXPIRY_MARGIN)) {
+            file.delete();
+            return null;
+        }
+
+        return accessToken;
+    }
+
+    /**
+     * Stores given access token in the cache. Tokens with unknown expiry are not cached.
+     *
+     * @param baseUrl URL of the server which issued the token, must not be null.
+     * @param orgName The name of the organization of the user, must not be null.
+     * @param username The name of the user, must not be null.
+     * @param token access token to store, must not be null.
+     * @throws IOException if the cache could not be written.
+     */
+    public void put(final String baseUrl,
+                    final String orgName,
+                    final String username,
+                    final AccessToken token) throws IOException {
+        if (!token.hasExpiry()) {
+            return;
+        }
+
+        final Properties properties = new Properties();
+        properties.setProperty(URL_KEY, baseUrl);
+        properties.setProperty(ORG_KEY, orgName);
+        properties.setProperty(USERNAME_KEY, username);
+        properties.setProperty(TOKEN_KEY, token.getValue());
+        properties.setProperty(EXPIRES_AT_KEY, Long.toString(token.getExpiresAt()));
+
+        PropertiesUtil.getInstance().storeProperties(properties, file(baseUrl, orgName, username));
+    }
+
+    /**
+     * Removes the cached access token, if any.
+     *
+     * @param baseUrl URL of the server which issued the token, must not be null.
+     * @param orgName The name of the organization of the user, must not be null.
+     * @param username The name of the user, must not be null.
+     */
+    public void invalidate(final String baseUrl, final String orgName, final String username) {
+        file(baseUrl, orgName, username).delete();
+    }
+
+    private File file(final String baseUrl, final String orgName, final String username) {
+        return new File(directory, DigestUtil.sha256Hex(baseUrl + '\n' + orgName + '\n' + username) + ".properties");
+    }
+}
@@ -0,0 +1,153 @@
+package com.appearnetworks.aiq;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Refreshes the access tokens of long-running sessions ahead of their expiry on a background thread, so that threads
+ * executing requests on behalf of the sessions never wait for authentication. Tokens without an expiry are left alone
+ * and only replaced when the server rejects them.
+ */
+public class TokenRefresher {
+
+    /**
+     * Number of milliseconds before a token would be dropped from its session at which it is refreshed.
+     */
+    private static final long REFRESH_LEAD = 60 * 1000L;
+
+    /**
+     * Number of milliseconds after which a failed refresh, or a session without a token, is checked again.
+     */
+    private static final long RETRY_DELAY = 30 * 1000L;
+
+    private final AbstractAIQMojo mojo;
+
+    private final long refreshLead;
+
+    private final long retryDelay;
+
+    private final ScheduledExecutorService executor;
+
+    private final Set<AIQSession> sessions = new HashSet<>();
+
+    /**
+     * Creates a new refresher and starts its background thread.
+     *
+     * @param mojo mojo on behalf of which to authenticate, must not be null.
+     */
+    public TokenRefresher(final AbstractAIQMojo mojo) {
+        this(mojo, REFRESH_LEAD, RETRY_DELAY);
+    }
+
+    /**
+     * Creates a new refresher with given delays and starts its background thread.
+     *
+     * @param mojo mojo on behalf of which to authenticate, must not be null.
+     * @param refreshLead number of milliseconds before a token would be dropped from its session at which it is
+     *                    refreshed.
+     * @param retryDelay number of milliseconds after which a failed refresh, or a session without a token, is checked
+     *                   again.
+     */
+    TokenRefresher(final AbstractAIQMojo mojo, final long refreshLead, final long retryDelay) {
+        this.mojo = mojo;
+        this.refreshLead = refreshLead;
+        this.retryDelay = retryDelay;
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "aiq-token-refresher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Starts refreshing the access token of given session.
+     *
+     * @param session session whose token to keep fresh, must not be null.
+     */
+    public synchronized void register(final AIQSession session) {
+        if (sessions.add(session)) {
+            schedule(session);
+        }
+    }
+
+    /**
+     * Stops refreshing tokens.
+     */
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void schedule(final AIQSession session) {
+        final AccessToken token = session.getAccessToken();
+        if (token != null && !token.hasExpiry()) {
+            return;
+        }
+
+        final long delay = token == null ? retryDelay : refreshAt(token) - System.currentTimeMillis();
+        schedule(session, Math.max(0, delay));
+    }
+
+    private void schedule(final AIQSession session, final long delay) {
+        executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                refresh(session);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void refresh(final AIQSession session) {
+        final AccessToken token = session.getAccessToken();
+        if (token == null || !token.hasExpiry() || System.currentTimeMillis() < refreshAt(token)) {
+            // not authenticated yet, or authenticated anew since the refresh was scheduled
+            schedule(session);
+            return;
+        }
+
+        try {
+            mojo.refreshAccessToken(session);
+            mojo.getLog().debug("Refreshed the access token of user [" + session.getUsername() + "] in org [" +
+                                session.getOrgName() + "]");
+        } catch (MojoExecutionException | MojoFailureException | RuntimeException e) {
+            // an unchecked failure must not end the refreshes either
+            mojo.getLog().warn("Failed to refresh the access token, retrying: " + e.getMessage());
+            schedule(session, retryDelay);
+            return;
+        }
+        scheduleRefreshed(session);
+    }
+
+    /**
+     * Schedules the next refresh of a token which has just been refreshed no sooner than halfway through its lifetime
+     * and the retry delay, as a token living shorter than the refresh lead is due as soon as it is issued and would
+     * otherwise be refreshed over and over.
+     */
+    private void scheduleRefreshed(final AIQSession session) {
+        final AccessToken token = session.getAccessToken();
+        if (token == null || !token.hasExpiry()) {
+            schedule(session);
+            return;
+        }
+
+        final long now = System.currentTimeMillis();
+        final long minimum = Math.max(retryDelay, (token.getExpiresAt() - now) / 2);
+        schedule(session, Math.max(minimum, refreshAt(token) - now));
+    }
+
+    /**
+     * @return time at which given token is to be refreshed.
+     */
+    private long refreshAt(final AccessToken token) {
+        return token.getExpiresAt() - TokenCache.EXPIRY_MARGIN - refreshLead;
+    }
+}
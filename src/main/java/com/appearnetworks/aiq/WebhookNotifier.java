@@ -0,0 +1,134 @@
+package com.appearnetworks.aiq;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Posts a JSON document to a webhook for every log line matching an alert pattern. The notifications are posted by a
+ * single background thread from a bounded queue, so that a slow webhook never holds back the tail. Notifications which
+ * do not fit in the queue are dropped and counted.
+ */
+public class WebhookNotifier {
+
+    private static final int QUEUE_SIZE = 256;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final HttpClient client;
+
+    private final URI uri;
+
+    private final Log log;
+
+    private final ExecutorService executor;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Creates a new notifier.
+     *
+     * @param client client with which to post the notifications, must not be null.
+     * @param uri URI of the webhook, must not be null.
+     * @param log log to report failed notifications to, must not be null.
+     */
+    public WebhookNotifier(final HttpClient client, final URI uri, final Log log) {
+        this.client = client;
+        this.uri = uri;
+        this.log = log;
+
+        final ThreadFactory threadFactory = new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "aiq-log-webhook");
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                                          new ArrayBlockingQueue<Runnable>(QUEUE_SIZE), threadFactory);
+    }
+
+    /**
+     * Queues a notification about a matching line.
+     *
+     * @param source name of the tailed log, must not be null.
+     * @param pattern the pattern found in the line, must not be null.
+     * @param line the matching line, must not be null.
+     */
+    public void notify(final String source, final String pattern, final String line) {
+        final ObjectNode document = OBJECT_MAPPER.createObjectNode();
+        document.put("source", source);
+        document.put("pattern", pattern);
+        document.put("line", line);
+        document.put("timestamp", System.currentTimeMillis());
+
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    post(document);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Posts the queued notifications, waiting at most given time, and stops the background thread.
+     *
+     * @param timeout maximum number of milliseconds to wait.
+     */
+    public void close(final long timeout) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(timeout, TimeUnit.MILLISECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        if (dropped.get() > 0) {
+            log.warn("Dropped " + dropped.get() + " webhook notifications, the webhook was too slow");
+        }
+    }
+
+    private void post(final ObjectNode document) {
+        final HttpPost post = new HttpPost(uri);
+        try {
+            post.setEntity(new ByteArrayEntity(OBJECT_MAPPER.writeValueAsBytes(document),
+                                               ContentType.APPLICATION_JSON));
+            final HttpResponse response = client.execute(post);
+            try {
+                final int statusCode = response.getStatusLine().getStatusCode();
+                if (statusCode < HttpStatus.SC_OK || statusCode >= HttpStatus.SC_MULTIPLE_CHOICES) {
+                    log.warn("Failed to notify webhook, the status code is [" + statusCode +
+                             "] and error message is [" + response.getStatusLine().getReasonPhrase() + "]");
+                }
+            } finally {
+                AbstractAIQMojo.consume(response);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to notify webhook: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.appearnetworks.aiq;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Index of the entries of a zip archive by name, with the CRC and size of every entry, read from the central
+ * directory without inflating any entry.
+ */
+public class ZipIndex {
+
+    private final Map<String, String> entries;
+
+    private ZipIndex(final Map<String, String> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * Reads the index of given archive.
+     *
+     * @param archive zip archive to index, must not be null.
+     * @return the index, will not be null.
+     * @throws IOException if the archive could not be read.
+     */
+    public static ZipIndex read(final File archive) throws IOException {
+        final Map<String, String> entries = new TreeMap<>();
+        try (ZipFile zip = new ZipFile(archive)) {
+            final Enumeration<? extends ZipEntry> enumeration = zip.entries();
+            while (enumeration.hasMoreElements()) {
+                final ZipEntry entry = enumeration.nextElement();
+                if (!entry.isDirectory()) {
+                    entries.put(entry.getName(), signature(entry));
+                }
+            }
+        }
+        return new ZipIndex(entries);
+    }
+
+    /**
+     * Loads an index stored with {@link #store(File)}.
+     *
+     * @param file file to load, must not be null.
+     * @return the index, or null if the file does not exist.
+     * @throws IOException if the file could not be read.
+     */
+    public static ZipIndex load(final File file) throws IOException {
+        final Properties properties = PropertiesUtil.getInstance().loadProperties(file);
+        if (properties == null) {
+            return null;
+        }
+
+        final Map<String, String> entries = new TreeMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            entries.put(name, properties.getProperty(name));
+        }
+        return new ZipIndex(entries);
+    }
+
+    /**
+     * Stores this index to given file, replacing it atomically.
+     *
+     * @param file file to write, must not be null.
+     * @throws IOException if the file could not be written.
+     */
+    public void store(final File file) throws IOException {
+        final Properties properties = new Properties();
+        properties.putAll(entries);
+        PropertiesUtil.getInstance().storeProperties(properties, file);
+    }
+
+    /**
+     * Returns the names of entries which are new or changed in this index compared to given base index.
+     *
+     * @param base index of the previous version of the archive, must not be null.
+     * @return names of added and changed entries, will not be null.
+     */
+    public List<String> changedSince(final ZipIndex base) {
+        final List<String> changed = new ArrayList<>();
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            if (!entry.getValue().equals(base.entries.get(entry.getKey()))) {
+                changed.add(entry.getKey());
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Returns the names of entries of given base index which are no longer present in this index.
+     *
+     * @param base index of the previous version of the archive, must not be null.
+     * @return names of removed entries, will not be null.
+     */
+    public List<String> removedSince(final ZipIndex base) {
+        final List<String> removed = new ArrayList<>();
+        for (String name : base.entries.keySet()) {
+            if (!entries.containsKey(name)) {
+                removed.add(name);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * @return number of entries in the index.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    private static String signature(final ZipEntry entry) {
+        return Long.toHexString(entry.getCrc()) + ":" + entry.getSize();
+    }
+}
@@ -0,0 +1,86 @@
+package com.appearnetworks.aiq;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.Date;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class AIQSessionTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final HttpConnectionPool pool = new HttpConnectionPool(20, 8, 30000, 60000, 5000, 5000, 5000);
+
+    private final URL url;
+
+    private File file;
+
+    public AIQSessionTest() throws IOException {
+        url = new URL("http://127.0.0.1:1/");
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        file = new File(folder.getRoot(), "aiq.properties");
+        write("first", 1000000L);
+    }
+
+    @Test
+    public void sharesSessionBetweenGoalsOfBuild() throws IOException {
+        final Date build = new Date(1);
+        final AIQSession first = AIQSession.open(build, url, file.getPath(), pool);
+        first.setAccessToken(new AccessToken("token", 0));
+
+        final AIQSession second = AIQSession.open(build, url, file.getPath(), pool);
+        assertSame(first, second);
+        assertEquals("token", second.getAccessToken().getValue());
+    }
+
+    @Test
+    public void opensSessionAgainWhenPropertiesChange() throws IOException {
+        final Date build = new Date(2);
+        final AIQSession first = AIQSession.open(build, url, file.getPath(), pool);
+        assertEquals("first", first.getOrgName());
+
+        write("second", 2000000L);
+        final AIQSession second = AIQSession.open(build, url, file.getPath(), pool);
+        assertNotSame(first, second);
+        assertEquals("second", second.getOrgName());
+    }
+
+    @Test
+    public void opensSessionAgainInNextBuild() throws IOException {
+        final AIQSession first = AIQSession.open(new Date(3), url, file.getPath(), pool);
+        first.setAccessToken(new AccessToken("token", 0));
+
+        final AIQSession second = AIQSession.open(new Date(4), url, file.getPath(), pool);
+        assertNotSame(first, second);
+        assertNull(second.getAccessToken());
+    }
+
+    private void write(final String org, final long modified) throws IOException {
+        final Properties properties = new Properties();
+        properties.setProperty("aiq.orgname", org);
+        properties.setProperty("aiq.username", "user");
+        properties.setProperty("aiq.password", "password");
+        try (OutputStream output = new FileOutputStream(file)) {
+            properties.store(output, null);
+        }
+        // the modification time of a file rewritten within a second may not change
+        file.setLastModified(modified);
+    }
+}
@@ -0,0 +1,138 @@
+package com.appearnetworks.aiq;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * Measures the throughput in MB/s of scanning log lines for alert patterns with the {@link AhoCorasick} automaton
+ * used by {@link PatternMatchOutputStream}, compared with a regular expression alternating the quoted patterns matched
+ * against every decoded line. Not run by the build, run it after compiling the tests with
+ * {@code java -cp target/classes:target/test-classes com.appearnetworks.aiq.AhoCorasickBenchmark [megabytes]}.
+ */
+public final class AhoCorasickBenchmark {
+
+    private static final int[] PATTERN_COUNTS = {1, 5, 20, 100};
+
+    private static final int ROUNDS = 3;
+
+    private static final String[] LEVELS = {"DEBUG", "INFO", "INFO", "INFO", "WARN"};
+
+    private static final String[] WORDS = {"request", "session", "user", "document", "sync", "completed", "started",
+                                           "device", "context", "integration", "adapter", "backend", "in", "ms"};
+
+    private AhoCorasickBenchmark() {
+    }
+
+    public static void main(final String[] args) throws UnsupportedEncodingException {
+        final int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        final Random random = new Random(1);
+        final List<byte[]> lines = lines(random, megabytes * 1024L * 1024L);
+        long bytes = 0;
+        for (byte[] line : lines) {
+            bytes += line.length;
+        }
+        System.out.println(lines.size() + " lines, " + bytes / (1024 * 1024) + " MB, best of " + ROUNDS + " rounds");
+
+        for (int count : PATTERN_COUNTS) {
+            final List<String> patterns = patterns(random, count);
+            final double automaton = automaton(lines, patterns, bytes);
+            final double regex = regex(lines, patterns, bytes);
+            System.out.println(String.format(Locale.ENGLISH,
+                                             "%3d patterns: automaton %8.1f MB/s, regex %8.1f MB/s, %5.1fx",
+                                             count, automaton, regex, automaton / regex));
+        }
+    }
+
+    private static double automaton(final List<byte[]> lines, final List<String> patterns, final long bytes)
+            throws UnsupportedEncodingException {
+        final List<byte[]> encoded = new ArrayList<>(patterns.size());
+        for (String pattern : patterns) {
+            encoded.add(pattern.getBytes(AbstractAIQMojo.UTF8_ENCODING));
+        }
+        final AhoCorasick automaton = AhoCorasick.compile(encoded);
+        final boolean[] matched = new boolean[patterns.size()];
+
+        long best = Long.MAX_VALUE;
+        long found = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            final long start = System.nanoTime();
+            for (byte[] line : lines) {
+                if (automaton.scan(line, 0, line.length, matched)) {
+                    found++;
+                }
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return throughput(bytes, best, found);
+    }
+
+    private static double regex(final List<byte[]> lines, final List<String> patterns, final long bytes)
+            throws UnsupportedEncodingException {
+        final StringBuilder alternation = new StringBuilder();
+        for (String pattern : patterns) {
+            if (alternation.length() > 0) {
+                alternation.append('|');
+            }
+            alternation.append(Pattern.quote(pattern));
+        }
+        final Pattern regex = Pattern.compile(alternation.toString());
+
+        long best = Long.MAX_VALUE;
+        long found = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            final long start = System.nanoTime();
+            for (byte[] line : lines) {
+                if (regex.matcher(new String(line, AbstractAIQMojo.UTF8_ENCODING)).find()) {
+                    found++;
+                }
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return throughput(bytes, best, found);
+    }
+
+    /**
+     * @param found number of matching lines, only used so that the scan is not optimized away.
+     */
+    private static double throughput(final long bytes, final long nanos, final long found) {
+        return found < 0 ? 0 : bytes / (1024.0 * 1024.0) / (nanos / 1e9);
+    }
+
+    private static List<byte[]> lines(final Random random, final long bytes) throws UnsupportedEncodingException {
+        final List<byte[]> lines = new ArrayList<>();
+        long total = 0;
+        for (int i = 0; total < bytes; i++) {
+            final StringBuilder line = new StringBuilder(String.format(Locale.ENGLISH,
+                    "2024-01-01 12:%02d:%02d,%03d %-5s [aiq-worker-%d] ", i / 60000 % 60, i / 1000 % 60, i % 1000,
+                    LEVELS[random.nextInt(LEVELS.length)], random.nextInt(16)));
+            final int words = 5 + random.nextInt(15);
+            for (int w = 0; w < words; w++) {
+                line.append(WORDS[random.nextInt(WORDS.length)]).append(' ').append(random.nextInt(100000)).append(' ');
+            }
+            if (random.nextInt(1000) == 0) {
+                line.append("ERROR OutOfMemoryError");
+            }
+            final byte[] encoded = line.append('\n').toString().getBytes(AbstractAIQMojo.UTF8_ENCODING);
+            lines.add(encoded);
+            total += encoded.length;
+        }
+        return lines;
+    }
+
+    private static List<String> patterns(final Random random, final int count) {
+        final List<String> patterns = new ArrayList<>(count);
+        patterns.add("OutOfMemoryError");
+        while (patterns.size() < count) {
+            final char[] pattern = new char[6 + random.nextInt(10)];
+            for (int i = 0; i < pattern.length; i++) {
+                pattern[i] = (char) ('A' + random.nextInt(26));
+            }
+            patterns.add(new String(pattern));
+        }
+        return patterns;
+    }
+}
@@ -0,0 +1,111 @@
+package com.appearnetworks.aiq;
+
+import org.junit.Test;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AhoCorasickTest {
+
+    @Test
+    public void findsOverlappingPatterns() throws Exception {
+        assertMatches(new boolean[] {true, true, false, true}, "ushers", "he", "she", "his", "hers");
+    }
+
+    @Test
+    public void findsPatternsWhichArePrefixesOfEachOther() throws Exception {
+        assertMatches(new boolean[] {true, true, false}, "an ERROR occurred", "ERR", "ERROR", "ERRORS");
+        assertMatches(new boolean[] {true, false, false}, "ERRONEOUS", "ERR", "ERROR", "ERRORS");
+    }
+
+    @Test
+    public void findsPatternsWhichAreSuffixesOfEachOther() throws Exception {
+        assertMatches(new boolean[] {true, true, true}, "FATAL ERROR", "ERROR", "ROR", "R");
+        assertMatches(new boolean[] {false, true, true}, "a HORROR", "ERROR", "ROR", "R");
+    }
+
+    @Test
+    public void findsPatternAfterFailedPartialMatch() throws Exception {
+        // the partial match of "abcd" must fall back to the partial match of "bcx"
+        assertMatches(new boolean[] {false, true}, "xxabcxx", "abcd", "bcx");
+        assertMatches(new boolean[] {true}, "aaab", "aab");
+    }
+
+    @Test
+    public void findsNothingInUnrelatedText() throws Exception {
+        assertMatches(new boolean[] {false, false}, "all is well", "ERROR", "FATAL");
+        assertMatches(new boolean[] {false}, "", "ERROR");
+    }
+
+    @Test
+    public void matchesNonAsciiBytes() throws Exception {
+        assertMatches(new boolean[] {true, false}, "Fehler: Datei überschrieben", "über", "übel");
+    }
+
+    @Test
+    public void scansOnlyGivenRange() throws Exception {
+        final AhoCorasick automaton = AhoCorasick.compile(encode("ERROR"));
+        final byte[] data = "ERROR ok ERROR".getBytes("UTF-8");
+        final boolean[] matched = new boolean[1];
+        assertFalse(automaton.scan(data, 1, 8, matched));
+        assertTrue(automaton.scan(data, 9, 5, matched));
+    }
+
+    @Test
+    public void findsSameAsIndexOf() throws Exception {
+        final Random random = new Random(7);
+        for (int round = 0; round < 200; round++) {
+            final String[] patterns = new String[1 + random.nextInt(6)];
+            for (int i = 0; i < patterns.length; i++) {
+                patterns[i] = randomText(random, 1 + random.nextInt(4));
+            }
+            final String text = randomText(random, random.nextInt(40));
+
+            final boolean[] expected = new boolean[patterns.length];
+            for (int i = 0; i < patterns.length; i++) {
+                expected[i] = text.contains(patterns[i]);
+            }
+            assertMatches(expected, text, patterns);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyPattern() throws Exception {
+        AhoCorasick.compile(encode("ERROR", ""));
+    }
+
+    private static void assertMatches(final boolean[] expected, final String text, final String... patterns)
+            throws UnsupportedEncodingException {
+        final AhoCorasick automaton = AhoCorasick.compile(encode(patterns));
+        assertEquals(patterns.length, automaton.getPatternCount());
+
+        final byte[] data = text.getBytes("UTF-8");
+        final boolean[] matched = new boolean[patterns.length];
+        final boolean found = automaton.scan(data, 0, data.length, matched);
+        assertEquals(text + " " + Arrays.toString(patterns), Arrays.toString(expected), Arrays.toString(matched));
+        assertEquals(Arrays.toString(matched).contains("true"), found);
+    }
+
+    private static List<byte[]> encode(final String... patterns) throws UnsupportedEncodingException {
+        final List<byte[]> encoded = new ArrayList<>(patterns.length);
+        for (String pattern : patterns) {
+            encoded.add(pattern.getBytes("UTF-8"));
+        }
+        return encoded;
+    }
+
+    private static String randomText(final Random random, final int length) {
+        final char[] text = new char[length];
+        for (int i = 0; i < length; i++) {
+            text[i] = (char) ('a' + random.nextInt(3));
+        }
+        return new String(text);
+    }
+}
@@ -0,0 +1,162 @@
+package com.appearnetworks.aiq;
+
+import org.apache.http.entity.mime.MultipartEntity;
+import org.apache.http.entity.mime.content.ContentBody;
+import org.apache.http.entity.mime.content.FileBody;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Measures the wall-clock time, CPU time and heap allocation of writing a multipart upload of an artifact to a loopback
+ * socket, with the {@link FileBody} copying through a 4 KB array compared with the {@link BufferedFileBody} copying
+ * through a 64 KB array. The socket is wrapped in an 8 KB buffer passing larger writes through, as the session output
+ * buffer of the client does. Not run by the build, run it after compiling the tests with
+ * {@code java -cp target/classes:target/test-classes:<dependencies> com.appearnetworks.aiq.BufferedFileBodyBenchmark
+ * [megabytes...]}.
+ */
+public final class BufferedFileBodyBenchmark {
+
+    private static final int[] MEGABYTES = {10, 100, 1024};
+
+    private static final int ROUNDS = 5;
+
+    /**
+     * Size of the buffer of the client connection.
+     */
+    private static final int SESSION_BUFFER_SIZE = 8 * 1024;
+
+    private BufferedFileBodyBenchmark() {
+    }
+
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        System.out.println("best of " + ROUNDS + " rounds, CPU and allocation of the writing thread");
+        for (int megabytes : sizes(args)) {
+            final File file = File.createTempFile("aiq-benchmark", ".zip");
+            try {
+                write(file, megabytes * 1024L * 1024L);
+                // warm up both paths before measuring
+                upload(new FileBody(file), threads);
+                upload(new BufferedFileBody(file), threads);
+
+                final long[] plain = best(file, false, threads);
+                final long[] buffered = best(file, true, threads);
+                print(megabytes, "FileBody", plain);
+                print(megabytes, "BufferedFileBody", buffered);
+            } finally {
+                file.delete();
+            }
+        }
+    }
+
+    private static int[] sizes(final String[] args) {
+        if (args.length == 0) {
+            return MEGABYTES;
+        }
+        final int[] sizes = new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            sizes[i] = Integer.parseInt(args[i]);
+        }
+        return sizes;
+    }
+
+    /**
+     * @return the lowest wall-clock nanoseconds, CPU nanoseconds and allocated bytes over all rounds.
+     */
+    private static long[] best(final File file, final boolean buffered, final ThreadMXBean threads)
+            throws IOException, InterruptedException {
+        final long[] best = {Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE};
+        for (int round = 0; round < ROUNDS; round++) {
+            final long[] result = upload(buffered ? new BufferedFileBody(file) : new FileBody(file), threads);
+            for (int i = 0; i < best.length; i++) {
+                best[i] = Math.min(best[i], result[i]);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Writes a multipart entity with given body to a loopback socket drained by another thread.
+     *
+     * @return wall-clock nanoseconds, CPU nanoseconds and allocated bytes of the writing thread.
+     */
+    private static long[] upload(final ContentBody body, final ThreadMXBean threads)
+            throws IOException, InterruptedException {
+        final MultipartEntity entity = new MultipartEntity();
+        entity.addPart("file", body);
+
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            final Thread drain = drain(server);
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort())) {
+                final OutputStream output = new BufferedOutputStream(socket.getOutputStream(), SESSION_BUFFER_SIZE);
+                final long allocated = allocatedBytes(threads);
+                final long cpu = threads.getCurrentThreadCpuTime();
+                final long start = System.nanoTime();
+                entity.writeTo(output);
+                output.flush();
+                final long wall = System.nanoTime() - start;
+                return new long[] {wall, threads.getCurrentThreadCpuTime() - cpu, allocatedBytes(threads) - allocated};
+            } finally {
+                drain.join();
+            }
+        }
+    }
+
+    private static Thread drain(final ServerSocket server) {
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try (Socket socket = server.accept(); InputStream input = socket.getInputStream()) {
+                    final byte[] buffer = new byte[256 * 1024];
+                    while (input.read(buffer) >= 0) {
+                        // discard
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }, "aiq-benchmark-drain");
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * @return bytes allocated by the current thread so far, or 0 if the JVM does not tell.
+     */
+    private static long allocatedBytes(final ThreadMXBean threads) {
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    private static void print(final int megabytes, final String name, final long[] result) {
+        System.out.println(String.format(Locale.ENGLISH,
+                                         "%5d MB %-16s wall %8.1f ms, cpu %8.1f ms, allocated %8.1f KB, %7.1f MB/s",
+                                         megabytes, name, result[0] / 1e6, result[1] / 1e6, result[2] / 1024.0,
+                                         megabytes / (result[0] / 1e9)));
+    }
+
+    private static void write(final File file, final long size) throws IOException {
+        final Random random = new Random(1);
+        final byte[] block = new byte[1024 * 1024];
+        try (OutputStream output = new FileOutputStream(file)) {
+            for (long written = 0; written < size; written += block.length) {
+                random.nextBytes(block);
+                output.write(block, 0, (int) Math.min(block.length, size - written));
+            }
+        }
+    }
+}
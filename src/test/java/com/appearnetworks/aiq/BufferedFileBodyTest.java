@@ -0,0 +1,72 @@
+package com.appearnetworks.aiq;
+
+import org.apache.http.entity.mime.MultipartEntity;
+import org.apache.http.entity.mime.content.FileBody;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BufferedFileBodyTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private int files;
+
+    @Test
+    public void writesFileByteForByte() throws IOException {
+        final Random random = new Random(7);
+        for (int size : new int[] {0, 1, 64 * 1024 - 1, 64 * 1024, 3 * 64 * 1024 + 17}) {
+            final byte[] content = new byte[size];
+            random.nextBytes(content);
+            final File file = write(content);
+
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            new BufferedFileBody(file).writeTo(output);
+            assertTrue("size " + size, Arrays.equals(content, output.toByteArray()));
+        }
+    }
+
+    @Test
+    public void writesSameMultipartEntityAsFileBody() throws IOException {
+        final byte[] content = new byte[200 * 1000];
+        new Random(8).nextBytes(content);
+        final File file = write(content);
+
+        final MultipartEntity plain = new MultipartEntity(null, "boundary", null);
+        plain.addPart("file", new FileBody(file));
+        final MultipartEntity buffered = new MultipartEntity(null, "boundary", null);
+        buffered.addPart("file", new BufferedFileBody(file));
+
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        plain.writeTo(expected);
+        final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        buffered.writeTo(actual);
+        assertTrue(Arrays.equals(expected.toByteArray(), actual.toByteArray()));
+        assertEquals(actual.size(), buffered.getContentLength());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNullStream() throws IOException {
+        new BufferedFileBody(write(new byte[1])).writeTo(null);
+    }
+
+    private File write(final byte[] content) throws IOException {
+        final File file = folder.newFile("artifact-" + files++ + ".zip");
+        try (OutputStream output = new FileOutputStream(file)) {
+            output.write(content);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,193 @@
+package com.appearnetworks.aiq;
+
+import com.sun.net.httpserver.HttpExchange;
+import org.apache.maven.plugin.MojoFailureException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ChunkedUploaderTest {
+
+    private static final int CHUNK_SIZE = 4096;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private StubServer server;
+
+    private AIQSession session;
+
+    private File artifact;
+
+    private byte[] content;
+
+    private String digest;
+
+    private File manifests;
+
+    private final ConcurrentMap<Integer, byte[]> chunks = new ConcurrentHashMap<>();
+
+    private final Set<Integer> rejected = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+
+    private final Set<Integer> rejectedOnce = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+
+    @Before
+    public void setUp() throws IOException {
+        server = new StubServer();
+        server.handle("/integration/test/ia.deploy.chunk", new StubServer.Handler() {
+            @Override
+            public void handle(final StubServer.Request request, final HttpExchange exchange) throws IOException {
+                final int index = Integer.parseInt(request.getParameter("index"));
+                final long offset = Long.parseLong(request.getParameter("offset"));
+                if (rejected.contains(index) || rejectedOnce.remove(index) || offset != (long) index * CHUNK_SIZE) {
+                    StubServer.respond(exchange, 409, "");
+                    return;
+                }
+                chunks.put(index, request.getBody());
+                StubServer.respond(exchange, 200, "");
+            }
+        });
+        server.handle("/integration/test/ia.deploy.complete", new StubServer.Handler() {
+            @Override
+            public void handle(final StubServer.Request request, final HttpExchange exchange) throws IOException {
+                StubServer.respond(exchange, 200, "");
+            }
+        });
+
+        session = TestSessions.open(server.getUrl(), folder.newFolder("session"));
+        manifests = folder.newFolder("uploads");
+
+        content = new byte[CHUNK_SIZE * 4 + 100];
+        new Random(42).nextBytes(content);
+        artifact = new File(folder.getRoot(), "adapter.zip");
+        try (OutputStream output = new FileOutputStream(artifact)) {
+            output.write(content);
+        }
+        digest = DigestUtil.sha256Hex(artifact);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void uploadsAllChunksAndCompletes() throws Exception {
+        uploader(0).upload();
+
+        assertArrayEquals(content, assemble());
+        final List<StubServer.Request> completes = server.getRequests("ia.deploy.complete");
+        assertEquals(1, completes.size());
+        assertEquals("5", completes.get(0).getParameter("chunks"));
+        assertEquals(Integer.toString(content.length), completes.get(0).getParameter("size"));
+        assertEquals(digest, completes.get(0).getParameter("sha256"));
+        assertEquals(0, manifests.list().length);
+    }
+
+    @Test
+    public void retriesRejectedChunk() throws Exception {
+        rejectedOnce.add(1);
+        uploader(1).upload();
+
+        assertArrayEquals(content, assemble());
+        assertEquals(2, requestsOfChunk(1));
+        assertEquals(1, requestsOfChunk(0));
+    }
+
+    @Test
+    public void resumesFromAcknowledgedChunks() throws Exception {
+        rejected.add(3);
+        try {
+            uploader(0).upload();
+            fail("Expected the upload to fail");
+        } catch (MojoFailureException expected) {
+            // chunk 3 is rejected
+        }
+        assertTrue(server.getRequests("ia.deploy.complete").isEmpty());
+        assertEquals(1, manifests.list().length);
+
+        rejected.clear();
+        uploader(0).upload();
+
+        assertArrayEquals(content, assemble());
+        assertEquals(1, requestsOfChunk(0));
+        assertEquals(2, requestsOfChunk(3));
+
+        final Set<String> uploads = new HashSet<>();
+        for (StubServer.Request request : server.getRequests("ia.deploy.chunk")) {
+            uploads.add(request.getParameter("upload"));
+        }
+        assertEquals(1, uploads.size());
+        assertEquals(uploads.iterator().next(), server.getRequests("ia.deploy.complete").get(0).getParameter("upload"));
+        assertEquals(0, manifests.list().length);
+    }
+
+    @Test
+    public void restartsUploadOfChangedArtifact() throws Exception {
+        rejected.add(3);
+        try {
+            uploader(0).upload();
+            fail("Expected the upload to fail");
+        } catch (MojoFailureException expected) {
+            // chunk 3 is rejected
+        }
+
+        rejected.clear();
+        content[0]++;
+        try (OutputStream output = new FileOutputStream(artifact)) {
+            output.write(content);
+        }
+        digest = DigestUtil.sha256Hex(artifact);
+        uploader(0).upload();
+
+        assertArrayEquals(content, assemble());
+        assertEquals(2, requestsOfChunk(0));
+        assertFalse(server.getRequests("ia.deploy.complete").isEmpty());
+    }
+
+    private ChunkedUploader uploader(final int retries) {
+        return new ChunkedUploader(TestSessions.mojo(), session, artifact, digest, CHUNK_SIZE, 2, retries, manifests);
+    }
+
+    private int requestsOfChunk(final int index) {
+        int count = 0;
+        for (StubServer.Request request : server.getRequests("ia.deploy.chunk")) {
+            if (Integer.toString(index).equals(request.getParameter("index"))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private byte[] assemble() {
+        final byte[] assembled = new byte[content.length];
+        int position = 0;
+        for (int i = 0; chunks.containsKey(i); i++) {
+            final byte[] chunk = chunks.get(i);
+            System.arraycopy(chunk, 0, assembled, position, chunk.length);
+            position += chunk.length;
+        }
+        return Arrays.copyOf(assembled, position);
+    }
+}
@@ -0,0 +1,118 @@
+package com.appearnetworks.aiq;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class ContentEncodingUtilTest {
+
+    private static final String LOG = "2014-01-01 12:00:00 INFO first\n2014-01-01 12:00:01 WARN second\n";
+
+    @Test
+    public void acceptsGzipAndDeflate() {
+        final HttpGet get = new HttpGet("http://127.0.0.1/");
+        ContentEncodingUtil.acceptCompressed(get);
+        assertEquals("gzip, deflate", get.getFirstHeader("Accept-Encoding").getValue());
+    }
+
+    @Test
+    public void decompressesGzip() throws IOException {
+        for (String coding : new String[] {"gzip", "GZIP", "x-gzip"}) {
+            final HttpResponse response = response(gzip(LOG), coding);
+            assertEquals(coding.toLowerCase(Locale.ENGLISH), ContentEncodingUtil.getContentEncoding(response));
+
+            ContentEncodingUtil.decompress(response);
+            assertEquals(LOG, EntityUtils.toString(response.getEntity(), "UTF-8"));
+            assertFalse(response.containsHeader("Content-Encoding"));
+            assertFalse(response.containsHeader("Content-Length"));
+            assertFalse(response.containsHeader("Content-MD5"));
+        }
+    }
+
+    @Test
+    public void decompressesDeflate() throws IOException {
+        final HttpResponse response = response(deflate(LOG), "deflate");
+        ContentEncodingUtil.decompress(response);
+        assertEquals(LOG, EntityUtils.toString(response.getEntity(), "UTF-8"));
+        assertFalse(response.containsHeader("Content-Encoding"));
+    }
+
+    @Test
+    public void passesIdentityThrough() throws IOException {
+        for (String coding : new String[] {null, "identity", ""}) {
+            final HttpResponse response = response(LOG.getBytes("UTF-8"), coding);
+            final HttpEntity entity = response.getEntity();
+            assertNull(ContentEncodingUtil.getContentEncoding(response));
+
+            ContentEncodingUtil.decompress(response);
+            assertSame(entity, response.getEntity());
+            assertEquals(LOG, EntityUtils.toString(response.getEntity(), "UTF-8"));
+            assertEquals(String.valueOf(LOG.length()), response.getFirstHeader("Content-Length").getValue());
+        }
+    }
+
+    @Test
+    public void rejectsUnknownEncoding() throws IOException {
+        assertRejected(response(LOG.getBytes("UTF-8"), "br"));
+        assertRejected(response(gzip(LOG), "gzip, deflate"));
+    }
+
+    private static void assertRejected(final HttpResponse response) {
+        try {
+            ContentEncodingUtil.decompress(response);
+            fail(response.getEntity().getContentEncoding().getValue());
+        } catch (IOException expected) {
+            // unsupported
+        }
+    }
+
+    /**
+     * @return response with given content, encoded with given coding if not null.
+     */
+    private static HttpResponse response(final byte[] content, final String coding) {
+        final HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        final ByteArrayEntity entity = new ByteArrayEntity(content);
+        response.setHeader("Content-Length", Integer.toString(content.length));
+        response.setHeader("Content-MD5", "digest");
+        if (coding != null) {
+            entity.setContentEncoding(coding);
+            response.setHeader("Content-Encoding", coding);
+        }
+        response.setEntity(entity);
+        return response;
+    }
+
+    private static byte[] gzip(final String content) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream output = new GZIPOutputStream(bytes)) {
+            output.write(content.getBytes("UTF-8"));
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] deflate(final String content) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream output = new DeflaterOutputStream(bytes)) {
+            output.write(content.getBytes("UTF-8"));
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,108 @@
+package com.appearnetworks.aiq;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class DedupOutputStreamTest {
+
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    @Test
+    public void suppressesReplayedEntries() throws IOException {
+        final DedupOutputStream stream = new DedupOutputStream(output, 10, new SystemStreamLog());
+        write(stream, "2024-01-01 00:00:00 INFO one\n2024-01-01 00:00:01 INFO two\n");
+        write(stream, "2024-01-01 00:00:01 INFO two\n2024-01-01 00:00:02 INFO three\n");
+        stream.close();
+
+        assertEquals("2024-01-01 00:00:00 INFO one\n2024-01-01 00:00:01 INFO two\n2024-01-01 00:00:02 INFO three\n",
+                     output.toString("UTF-8"));
+        assertEquals(1, stream.getSuppressed());
+    }
+
+    @Test
+    public void keepsTraceOfSecondIdenticalException() throws IOException {
+        final String trace = "java.lang.IllegalStateException: broken\n\tat a.B.c(B.java:1)\n\n\tat a.B.d(B.java:2)\n";
+        final String first = "2024-01-01 00:00:00 ERROR failed\n" + trace;
+        final String second = "2024-01-01 00:00:05 ERROR failed\n" + trace;
+
+        final DedupOutputStream stream = new DedupOutputStream(output, 10, new SystemStreamLog());
+        write(stream, "untimestamped preamble\nuntimestamped preamble\n" + first + second);
+        stream.close();
+
+        assertEquals("untimestamped preamble\nuntimestamped preamble\n" + first + second, output.toString("UTF-8"));
+        assertEquals(0, stream.getSuppressed());
+    }
+
+    @Test
+    public void suppressesContinuationLinesWithTheirEntry() throws IOException {
+        final String entry = "2024-01-01 00:00:00 ERROR failed\n\tat a.B.c(B.java:1)\n\tat a.B.d(B.java:2)\n";
+        final String next = "2024-01-01 00:00:01 INFO next\n\tat a.B.c(B.java:1)\n";
+
+        final DedupOutputStream stream = new DedupOutputStream(output, 10, new SystemStreamLog());
+        write(stream, entry + entry + next);
+        stream.close();
+
+        assertEquals(entry + next, output.toString("UTF-8"));
+        assertEquals(3, stream.getSuppressed());
+    }
+
+    @Test
+    public void forgetsEntriesLeavingTheWindow() throws IOException {
+        final DedupOutputStream stream = new DedupOutputStream(output, 2, new SystemStreamLog());
+        write(stream, entry(1) + entry(2) + entry(1) + entry(3) + entry(1) + entry(2));
+        stream.close();
+
+        assertEquals(entry(1) + entry(2) + entry(3) + entry(1) + entry(2), output.toString("UTF-8"));
+    }
+
+    /**
+     * Compares the stream with a plain list of the window over many colliding entries, so that the table, which only
+     * has a few slots for small windows, goes through long probe sequences wrapping around its end and many removals
+     * shifting entries back.
+     */
+    @Test
+    public void evictsLikeListOfWindow() throws IOException {
+        final Random random = new Random(42);
+        for (int windowSize = 1; windowSize <= 9; windowSize++) {
+            output.reset();
+            final DedupOutputStream stream = new DedupOutputStream(output, windowSize, new SystemStreamLog());
+            final StringBuilder expected = new StringBuilder();
+            final Deque<String> window = new ArrayDeque<>();
+            for (int i = 0; i < 20000; i++) {
+                final String entry = entry(random.nextInt(3 * windowSize + 2));
+                if (!window.contains(entry)) {
+                    if (window.size() == windowSize) {
+                        window.removeFirst();
+                    }
+                    window.addLast(entry);
+                    expected.append(entry);
+                }
+                write(stream, entry);
+            }
+            stream.close();
+
+            assertEquals("window size " + windowSize, expected.toString(), output.toString("UTF-8"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsHugeWindow() {
+        new DedupOutputStream(output, DedupOutputStream.MAX_WINDOW_SIZE + 1, new SystemStreamLog());
+    }
+
+    private static String entry(final int number) {
+        return "2024-01-01 00:00:00 INFO entry " + number + "\n";
+    }
+
+    private static void write(final DedupOutputStream stream, final String text) throws IOException {
+        stream.write(text.getBytes("UTF-8"));
+    }
+}
@@ -0,0 +1,61 @@
+package com.appearnetworks.aiq;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class DeltaPatchBodyTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writesDescriptorAndChangedEntries() throws IOException {
+        final File archive = new File(folder.getRoot(), "adapter.zip");
+        try (ZipOutputStream output = new ZipOutputStream(new FileOutputStream(archive))) {
+            for (String name : new String[] {"lib/a.jar", "lib/b.jar", "lib/d.jar"}) {
+                output.putNextEntry(new ZipEntry(name));
+                output.write(("content of " + name).getBytes("UTF-8"));
+                output.closeEntry();
+            }
+        }
+
+        final DeltaPatchBody body = new DeltaPatchBody(archive, "base", "target",
+                                                       Arrays.asList("lib/b.jar", "lib/d.jar"),
+                                                       Collections.singletonList("conf/c.xml"));
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        body.writeTo(output);
+        assertEquals("adapter.zip.delta.zip", body.getFilename());
+
+        final Map<String, String> entries = new LinkedHashMap<>();
+        try (ZipInputStream patch = new ZipInputStream(new ByteArrayInputStream(output.toByteArray()))) {
+            ZipEntry entry;
+            while ((entry = patch.getNextEntry()) != null) {
+                entries.put(entry.getName(), new String(IOUtils.toByteArray(patch), "UTF-8"));
+            }
+        }
+
+        assertEquals(Arrays.asList(DeltaPatchBody.DESCRIPTOR_NAME, "lib/b.jar", "lib/d.jar"),
+                     Arrays.asList(entries.keySet().toArray()));
+        assertEquals("base=base\ntarget=target\nremoved=conf/c.xml\n", entries.get(DeltaPatchBody.DESCRIPTOR_NAME));
+        assertEquals("content of lib/d.jar", entries.get("lib/d.jar"));
+        assertFalse(entries.containsKey("lib/a.jar"));
+    }
+}
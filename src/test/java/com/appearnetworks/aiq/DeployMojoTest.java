@@ -0,0 +1,151 @@
+package com.appearnetworks.aiq;
+
+import com.sun.net.httpserver.HttpExchange;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class DeployMojoTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private StubServer server;
+
+    private File sessionDirectory;
+
+    private String userHome;
+
+    private File artifact;
+
+    private File buildDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        // the records of the deployments of the user are kept in the home directory
+        userHome = System.getProperty("user.home");
+        System.setProperty("user.home", folder.newFolder("home").getPath());
+
+        server = deployServer();
+        sessionDirectory = folder.newFolder("session");
+        TestSessions.open(server.getUrl(), sessionDirectory);
+        buildDirectory = folder.newFolder("target");
+        artifact = new File(buildDirectory, "adapter.zip");
+        write(artifact, "first");
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+        System.setProperty("user.home", userHome);
+    }
+
+    @Test
+    public void skipsUnchangedArtifact() throws Exception {
+        deploy(server.getUrl(), sessionDirectory);
+        assertEquals(1, uploads(server));
+        assertNotNull(DeploymentRecord.load(new File(buildDirectory, "aiq-deploy.properties")));
+
+        deploy(server.getUrl(), sessionDirectory);
+        assertEquals(1, uploads(server));
+    }
+
+    @Test
+    public void skipsArtifactWithDeployedDigest() throws Exception {
+        deploy(server.getUrl(), sessionDirectory);
+
+        // repackaged with the same content
+        new File(buildDirectory, "aiq-deploy.properties").delete();
+        artifact.setLastModified(artifact.lastModified() - 10000);
+        deploy(server.getUrl(), sessionDirectory);
+        assertEquals(1, uploads(server));
+    }
+
+    @Test
+    public void uploadsChangedArtifact() throws Exception {
+        deploy(server.getUrl(), sessionDirectory);
+        write(artifact, "second");
+        deploy(server.getUrl(), sessionDirectory);
+        assertEquals(2, uploads(server));
+    }
+
+    @Test
+    public void uploadsToOtherServerAndOrg() throws Exception {
+        deploy(server.getUrl(), sessionDirectory);
+
+        final StubServer other = deployServer();
+        try {
+            final File otherDirectory = folder.newFolder("other");
+            TestSessions.open(other.getUrl(), otherDirectory);
+            deploy(other.getUrl(), otherDirectory);
+            assertEquals(1, uploads(other));
+        } finally {
+            other.stop();
+        }
+
+        final File orgDirectory = folder.newFolder("org");
+        TestSessions.open(server.getUrl(), orgDirectory, "other");
+        deploy(server.getUrl(), orgDirectory);
+        assertEquals(1, server.getRequests("/other/ia.deploy").size());
+        assertEquals(1, uploads(server));
+    }
+
+    @Test
+    public void uploadsWithoutValidRecord() throws Exception {
+        write(new File(buildDirectory, "aiq-deploy.properties"), "url=\nsize=corrupt\n\u0000");
+        deploy(server.getUrl(), sessionDirectory);
+        assertEquals(1, uploads(server));
+
+        // the record of the user is gone too
+        write(new File(buildDirectory, "aiq-deploy.properties"), "corrupt");
+        DeploymentRecord.userFile(String.valueOf(server.getUrl()), "test").delete();
+        deploy(server.getUrl(), sessionDirectory);
+        assertEquals(2, uploads(server));
+    }
+
+    /**
+     * Deploys the artifact with the session of which the properties file is in given directory.
+     */
+    private void deploy(final URL url, final File sessionDirectory) throws Exception {
+        final DeployNoForkMojo mojo = new DeployNoForkMojo();
+        TestSessions.configure(mojo, "url", url);
+        TestSessions.configure(mojo, "propertiesPath", new File(sessionDirectory, "aiq.properties").getPath());
+        TestSessions.configure(mojo, "tokenCache", false);
+        TestSessions.configure(mojo, "file", artifact);
+        TestSessions.configure(mojo, "buildDirectory", buildDirectory);
+        TestSessions.configure(mojo, "moduleName", "adapter");
+        mojo.execute();
+    }
+
+    private static int uploads(final StubServer server) {
+        return server.getRequests("/test/ia.deploy").size();
+    }
+
+    private static StubServer deployServer() throws IOException {
+        final StubServer server = new StubServer();
+        server.handle("/integration/", new StubServer.Handler() {
+            @Override
+            public void handle(final StubServer.Request request, final HttpExchange exchange) throws IOException {
+                StubServer.respond(exchange, 200, "");
+            }
+        });
+        return server;
+    }
+
+    private static void write(final File file, final String content) throws IOException {
+        try (OutputStream output = new FileOutputStream(file)) {
+            output.write(content.getBytes("UTF-8"));
+        }
+    }
+}
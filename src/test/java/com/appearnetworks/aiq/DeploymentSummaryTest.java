@@ -0,0 +1,88 @@
+package com.appearnetworks.aiq;
+
+import org.apache.maven.model.Build;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginExecution;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.project.MavenProject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class DeploymentSummaryTest {
+
+    private final List<MavenProject> reactor = Arrays.asList(
+            project("maven-jar-plugin", "jar"),
+            project("integration-maven-plugin", "ia.deploy-no-fork"),
+            project("integration-maven-plugin", "ia.logs.fetch"),
+            project("integration-maven-plugin", "ia.deploy"),
+            project());
+
+    @Test
+    public void countsModulesBindingDeployGoal() {
+        assertEquals(2, DeploymentSummary.countDeployingModules(Collections.singletonList("install"), reactor));
+    }
+
+    @Test
+    public void countsAllModulesWhenDeployGoalIsGiven() {
+        assertEquals(5, DeploymentSummary.countDeployingModules(Collections.singletonList("aiq:ia.deploy"), reactor));
+        assertEquals(5, DeploymentSummary.countDeployingModules(
+                Collections.singletonList("com.appearnetworks.aiq:integration-maven-plugin:2.0.0:ia.deploy-no-fork@x"),
+                reactor));
+    }
+
+    @Test
+    public void reportsUnknownReactor() {
+        assertEquals(-1, DeploymentSummary.countDeployingModules(null, reactor));
+        assertEquals(-1, DeploymentSummary.countDeployingModules(Collections.<String>emptyList(), null));
+        assertEquals(-1, DeploymentSummary.countDeployingModules(Collections.<String>emptyList(),
+                                                                 Collections.<MavenProject>emptyList()));
+    }
+
+    @Test
+    public void dropsOutcomesOfOtherBuild() {
+        final List<String> logged = new ArrayList<>();
+        final Log log = new SystemStreamLog() {
+            @Override
+            public void info(final CharSequence content) {
+                logged.add(content.toString());
+            }
+        };
+
+        // a build failing before its summary is logged
+        DeploymentSummary.record(new Date(1), "stale", DeploymentSummary.Status.DEPLOYED);
+
+        assertEquals(1, DeploymentSummary.record(new Date(2), "adapter", DeploymentSummary.Status.UP_TO_DATE));
+        DeploymentSummary.log(log);
+        assertEquals(Arrays.asList("Integration adapter deployment summary:",
+                                   "  adapter ... skipped, up to date",
+                                   "Deployed 0 of 1 integration adapters"), logged);
+    }
+
+    private static MavenProject project(final String artifactId, final String goal) {
+        final PluginExecution execution = new PluginExecution();
+        execution.addGoal(goal);
+        final Plugin plugin = new Plugin();
+        plugin.setArtifactId(artifactId);
+        plugin.addExecution(execution);
+        return project(plugin);
+    }
+
+    private static MavenProject project(final Plugin... plugins) {
+        final Build build = new Build();
+        for (Plugin plugin : plugins) {
+            build.addPlugin(plugin);
+        }
+        final Model model = new Model();
+        model.setBuild(build);
+        return new MavenProject(model);
+    }
+}
@@ -0,0 +1,166 @@
+package com.appearnetworks.aiq;
+
+import com.sun.net.httpserver.HttpExchange;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FetchLogsMojoTest {
+
+    private static final String PATH = "/integration/test/ia.logs";
+
+    private static final String LOG = "2014-01-01 12:00:00 INFO first\n2014-01-01 12:00:01 WARN second\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private StubServer server;
+
+    private File sessionDirectory;
+
+    private byte[] compressed;
+
+    @Before
+    public void setUp() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream output = new GZIPOutputStream(bytes) {
+            {
+                // stored rather than compressed, so that the log compressed again by the plugin differs from it
+                def.setLevel(Deflater.NO_COMPRESSION);
+            }
+        }) {
+            output.write(LOG.getBytes("UTF-8"));
+        }
+        compressed = bytes.toByteArray();
+
+        server = new StubServer();
+        server.handle(PATH, new StubServer.Handler() {
+            @Override
+            public void handle(final StubServer.Request request, final HttpExchange exchange) throws IOException {
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                StubServer.respond(exchange, 200, compressed);
+            }
+        });
+        sessionDirectory = folder.newFolder("session");
+        TestSessions.open(server.getUrl(), sessionDirectory);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void keepsGzipResponseCompressed() throws Exception {
+        final File output = new File(folder.getRoot(), "ia.log.gz");
+        fetch(output, true, true);
+
+        assertEquals("gzip, deflate", server.getRequests(PATH).get(0).getHeader("Accept-Encoding"));
+        assertTrue(Arrays.equals(compressed, read(new FileInputStream(output))));
+    }
+
+    @Test
+    public void compressesDecompressedResponseAgain() throws Exception {
+        final File output = new File(folder.getRoot(), "ia.log.gz");
+        fetch(output, true, false);
+
+        final byte[] written = read(new FileInputStream(output));
+        assertFalse(Arrays.equals(compressed, written));
+        assertEquals(LOG, new String(read(new GZIPInputStream(new FileInputStream(output))), "UTF-8"));
+    }
+
+    @Test
+    public void decompressesResponseForPlainOutput() throws Exception {
+        final File output = new File(folder.getRoot(), "ia.log");
+        fetch(output, false, true);
+
+        assertEquals(LOG, new String(read(new FileInputStream(output)), "UTF-8"));
+    }
+
+    @Test
+    public void appliesTimeRangeIgnoredByServer() throws Exception {
+        final File output = new File(folder.getRoot(), "ia.log");
+        final FetchIALogsNoForkMojo mojo = configure(new FetchIALogsNoForkMojo(), output, false, false);
+        // the range starts before the log, and ends within it
+        TestSessions.configure(mojo, "since", "2014-01-01T11:00:00");
+        TestSessions.configure(mojo, "until", "2014-01-01T12:00:01");
+        mojo.execute();
+
+        final StubServer.Request request = server.getRequests(PATH).get(0);
+        assertEquals("2014-01-01T11:00:00.000Z", request.getParameter("since"));
+        assertEquals("2014-01-01T12:00:01.000Z", request.getParameter("until"));
+        assertEquals("2014-01-01 12:00:00 INFO first\n", new String(read(new FileInputStream(output)), "UTF-8"));
+    }
+
+    @Test
+    public void asksForLastLinesAlongEndOfLog() throws Exception {
+        final StringBuilder log = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            log.append("2014-01-01 12:00:00 INFO line ").append(i).append('\n');
+        }
+        final String last = log.substring(log.indexOf("line 997") - 25);
+        server.handle("/integration/test/server.logs", new StubServer.Handler() {
+            @Override
+            public void handle(final StubServer.Request request, final HttpExchange exchange) throws IOException {
+                // supports the last lines, and sends them whole instead of the range
+                StubServer.respond(exchange, 200, request.getParameter("lines") != null ? last : log.toString());
+            }
+        });
+
+        final File output = new File(folder.getRoot(), "server.log");
+        final FetchServerLogsNoForkMojo mojo = configure(new FetchServerLogsNoForkMojo(), output, false, false);
+        TestSessions.configure(mojo, "lines", 3);
+        mojo.execute();
+
+        final List<StubServer.Request> requests = server.getRequests("/integration/test/server.logs");
+        assertEquals(1, requests.size());
+        assertEquals("3", requests.get(0).getParameter("lines"));
+        assertEquals("bytes=-768", requests.get(0).getHeader("Range"));
+        assertEquals(last, new String(read(new FileInputStream(output)), "UTF-8"));
+    }
+
+    private void fetch(final File output, final boolean gzip, final boolean keepCompressed) throws Exception {
+        configure(new FetchIALogsNoForkMojo(), output, gzip, keepCompressed).execute();
+    }
+
+    private <T extends AbstractFetchLogsMojo> T configure(final T mojo,
+                                                          final File output,
+                                                          final boolean gzip,
+                                                          final boolean keepCompressed) {
+        TestSessions.configure(mojo, "url", server.getUrl());
+        TestSessions.configure(mojo, "propertiesPath", new File(sessionDirectory, "aiq.properties").getPath());
+        TestSessions.configure(mojo, "tokenCache", false);
+        TestSessions.configure(mojo, "timeZone", "UTC");
+        TestSessions.configure(mojo, "output", output);
+        TestSessions.configure(mojo, "gzip", gzip);
+        TestSessions.configure(mojo, "keepCompressed", keepCompressed);
+        return mojo;
+    }
+
+    private static byte[] read(final InputStream input) throws IOException {
+        try {
+            return IOUtils.toByteArray(input);
+        } finally {
+            input.close();
+        }
+    }
+}
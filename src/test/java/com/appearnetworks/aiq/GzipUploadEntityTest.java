@@ -0,0 +1,113 @@
+package com.appearnetworks.aiq;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class GzipUploadEntityTest {
+
+    private final byte[] content = createContent();
+
+    @Test
+    public void writesCompressedContent() throws IOException {
+        final GzipUploadEntity entity = new GzipUploadEntity(new ByteArrayEntity(content));
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        entity.writeTo(output);
+
+        assertArrayEquals(content, decompress(output.toByteArray()));
+        assertEquals(content.length, entity.getUncompressedBytes());
+        assertEquals(output.size(), entity.getCompressedBytes());
+    }
+
+    @Test
+    public void readsCompressedContent() throws IOException {
+        final GzipUploadEntity entity = new GzipUploadEntity(new ByteArrayEntity(content));
+
+        assertArrayEquals(content, decompress(read(entity.getContent())));
+        assertArrayEquals(content, decompress(read(entity.getContent())));
+    }
+
+    @Test
+    public void readingFailsWhenCompressingFails() throws IOException {
+        final GzipUploadEntity entity = new GzipUploadEntity(new AbstractHttpEntity() {
+            @Override
+            public boolean isRepeatable() {
+                return true;
+            }
+
+            @Override
+            public long getContentLength() {
+                return -1;
+            }
+
+            @Override
+            public InputStream getContent() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void writeTo(final OutputStream output) throws IOException {
+                output.write(content);
+                throw new IOException("disk gone");
+            }
+
+            @Override
+            public boolean isStreaming() {
+                return false;
+            }
+        });
+
+        try {
+            read(entity.getContent());
+            fail("Expected the read to fail");
+        } catch (IOException e) {
+            assertEquals("disk gone", e.getMessage());
+        }
+    }
+
+    @Test
+    public void abandonedReadDoesNotBlock() throws Exception {
+        final GzipUploadEntity entity = new GzipUploadEntity(new ByteArrayEntity(content));
+        final InputStream input = entity.getContent();
+        input.read();
+        input.close();
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        entity.writeTo(output);
+        assertArrayEquals(content, decompress(output.toByteArray()));
+    }
+
+    private static byte[] read(final InputStream input) throws IOException {
+        try {
+            return IOUtils.toByteArray(input);
+        } finally {
+            input.close();
+        }
+    }
+
+    private static byte[] decompress(final byte[] compressed) throws IOException {
+        return read(new GZIPInputStream(new ByteArrayInputStream(compressed)));
+    }
+
+    private static byte[] createContent() {
+        final Random random = new Random(7);
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            builder.append("line ").append(random.nextInt(1000)).append('\n');
+        }
+        return builder.toString().getBytes();
+    }
+}
@@ -0,0 +1,92 @@
+package com.appearnetworks.aiq;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class HttpConnectionPoolTest {
+
+    private HttpServer server;
+
+    private String url;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                if (exchange.getRequestURI().getPath().equals("/slow")) {
+                    try {
+                        Thread.sleep(2000);
+                    } catch (InterruptedException ignore) {
+                        // answer right away
+                    }
+                }
+                final byte[] body = "ok".getBytes("UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream output = exchange.getResponseBody()) {
+                    output.write(body);
+                }
+            }
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void failsWhenNoConnectionBecomesAvailable() throws IOException {
+        final HttpConnectionPool pool = new HttpConnectionPool(1, 1, 30000, 60000, 1000, 1000, 200);
+
+        final HttpResponse leased = pool.getClient().execute(new HttpGet(url + "/"));
+        try {
+            pool.getClient().execute(new HttpGet(url + "/"));
+            fail("Expected the pool to time out");
+        } catch (ConnectionPoolTimeoutException expected) {
+            // the only connection is still leased
+        } finally {
+            EntityUtils.consume(leased.getEntity());
+        }
+
+        final HttpResponse response = pool.getClient().execute(new HttpGet(url + "/"));
+        assertEquals("ok", EntityUtils.toString(response.getEntity()));
+    }
+
+    @Test
+    public void raisesConnectionLimit() throws IOException {
+        final HttpConnectionPool pool = new HttpConnectionPool(1, 1, 30000, 60000, 1000, 1000, 200);
+        pool.ensureCapacity(2, 2);
+        assertEquals(2, pool.getMaxPerRoute());
+
+        final HttpResponse first = pool.getClient().execute(new HttpGet(url + "/"));
+        final HttpResponse second = pool.getClient().execute(new HttpGet(url + "/"));
+        assertEquals("ok", EntityUtils.toString(first.getEntity()));
+        assertEquals("ok", EntityUtils.toString(second.getEntity()));
+    }
+
+    @Test(expected = SocketTimeoutException.class)
+    public void failsWhenServerDoesNotAnswer() throws IOException {
+        final HttpConnectionPool pool = new HttpConnectionPool(1, 1, 30000, 60000, 1000, 200, 200);
+        pool.getClient().execute(new HttpGet(url + "/slow"));
+    }
+}
@@ -0,0 +1,86 @@
+package com.appearnetworks.aiq;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+public class LastLinesOutputStreamTest {
+
+    @Test
+    public void keepsLastLines() throws IOException {
+        final LastLinesOutputStream stream = new LastLinesOutputStream(3, false);
+        write(stream, "one\ntwo\nthree\nfour\nfive", 3);
+
+        assertEquals("three\nfour\nfive", keptLines(stream));
+        assertEquals(5, stream.getLineCount());
+    }
+
+    @Test
+    public void keepsAllLinesOfShortLog() throws IOException {
+        final LastLinesOutputStream stream = new LastLinesOutputStream(500, false);
+        write(stream, "one\ntwo\n", 5);
+
+        assertEquals("one\ntwo\n", keptLines(stream));
+        assertEquals(2, stream.getLineCount());
+    }
+
+    @Test
+    public void skipsIncompleteFirstLine() throws IOException {
+        final LastLinesOutputStream stream = new LastLinesOutputStream(3, true);
+        write(stream, "ne\ntwo\nthree\n", 4);
+        assertEquals("two\nthree\n", keptLines(stream));
+
+        final LastLinesOutputStream longer = new LastLinesOutputStream(2, true);
+        write(longer, "ne\ntwo\nthree\n", 4);
+        assertEquals("two\nthree\n", keptLines(longer));
+    }
+
+    /**
+     * Keeps more and longer lines than first fit in the arena and the ring, so that both grow while the kept lines
+     * wrap around their ends.
+     */
+    @Test
+    public void growsWithKeptLines() throws IOException {
+        final int kept = 5000;
+        final StringBuilder log = new StringBuilder();
+        final StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 3 * kept; i++) {
+            final StringBuilder line = new StringBuilder("line-").append(i).append(' ');
+            for (int j = 0; j < i % 500; j++) {
+                line.append((char) ('a' + i % 26));
+            }
+            line.append('\n');
+            log.append(line);
+            if (i >= 2 * kept) {
+                expected.append(line);
+            }
+        }
+
+        final LastLinesOutputStream stream = new LastLinesOutputStream(kept, false);
+        write(stream, log.toString(), 997);
+        assertEquals(expected.toString(), keptLines(stream));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNoLines() {
+        new LastLinesOutputStream(0, false);
+    }
+
+    private static void write(final LastLinesOutputStream stream, final String log, final int pieceSize)
+            throws IOException {
+        final byte[] bytes = log.getBytes("UTF-8");
+        for (int offset = 0; offset < bytes.length; offset += pieceSize) {
+            stream.write(bytes, offset, Math.min(pieceSize, bytes.length - offset));
+        }
+        stream.close();
+    }
+
+    private static String keptLines(final LastLinesOutputStream stream) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        stream.writeTo(output);
+        return output.toString("UTF-8");
+    }
+}
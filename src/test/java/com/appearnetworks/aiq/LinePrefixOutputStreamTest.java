@@ -0,0 +1,76 @@
+package com.appearnetworks.aiq;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LinePrefixOutputStreamTest {
+
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    @Test
+    public void prefixesEveryLine() throws IOException {
+        final LinePrefixOutputStream stream = new LinePrefixOutputStream(output, "[a] ");
+        stream.write("one\ntw".getBytes("UTF-8"));
+        stream.flush();
+        assertEquals("[a] one\n", output.toString("UTF-8"));
+
+        stream.write('o');
+        stream.write("\nthree".getBytes("UTF-8"));
+        stream.close();
+        assertEquals("[a] one\n[a] two\n[a] three\n", output.toString("UTF-8"));
+    }
+
+    @Test
+    public void splitsOverlongLine() throws IOException {
+        final LinePrefixOutputStream stream = new LinePrefixOutputStream(output, ">");
+        final byte[] line = new byte[LineOutputStream.MAX_LINE_LENGTH + 10];
+        Arrays.fill(line, (byte) 'x');
+        stream.write(line);
+        stream.close();
+
+        final String written = output.toString("UTF-8");
+        assertEquals(line.length + 2 + 1, written.length());
+        assertTrue(written.startsWith(">x"));
+        assertEquals(">xxxxxxxxxx\n", written.substring(LineOutputStream.MAX_LINE_LENGTH + 1));
+    }
+
+    @Test
+    public void doesNotInterleaveLinesOfSources() throws Exception {
+        final Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final OutputStream stream = new LinePrefixOutputStream(output, "[" + t + "] ");
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 1000; i++) {
+                            // every line is written in several pieces
+                            stream.write("line ".getBytes("UTF-8"));
+                            stream.write(Integer.toString(i).getBytes("UTF-8"));
+                            stream.write('\n');
+                        }
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        final String[] lines = output.toString("UTF-8").split("\n");
+        assertEquals(4000, lines.length);
+        for (String line : lines) {
+            assertTrue(line, line.matches("\\[\\d] line \\d+"));
+        }
+    }
+}
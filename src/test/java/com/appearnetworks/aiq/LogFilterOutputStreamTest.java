@@ -0,0 +1,107 @@
+package com.appearnetworks.aiq;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+public class LogFilterOutputStreamTest {
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    private static final String LOG = "2024-01-01 10:00:00,000 INFO started\n" +
+                                      "2024-01-01 11:00:00,000 ERROR failed\n" +
+                                      "java.lang.IllegalStateException: broken\n" +
+                                      "\tat a.B.c(B.java:1)\n" +
+                                      "2024-01-01 12:00:00,000 WARN slow request\n" +
+                                      "2024-01-01 13:00:00,000 INFO stopped\n";
+
+    @Test
+    public void selectsEntriesAtOrAboveLevel() throws IOException {
+        assertEquals("2024-01-01 11:00:00,000 ERROR failed\n" +
+                     "java.lang.IllegalStateException: broken\n" +
+                     "\tat a.B.c(B.java:1)\n" +
+                     "2024-01-01 12:00:00,000 WARN slow request\n",
+                     filter(LOG, LogFilterOutputStream.Level.WARN, null, null, UTC, null));
+    }
+
+    @Test
+    public void selectsLinesContainingPatternsInSelectedEntries() throws IOException {
+        assertEquals("java.lang.IllegalStateException: broken\n" +
+                     "2024-01-01 12:00:00,000 WARN slow request\n",
+                     filter(LOG, LogFilterOutputStream.Level.WARN, null, null, UTC,
+                            Arrays.asList("Exception", "slow")));
+    }
+
+    @Test
+    public void selectsEntriesInTimeRangeOfLogTimeZone() throws IOException {
+        final TimeZone stockholm = TimeZone.getTimeZone("Europe/Stockholm");
+        final Date since = LogFilterOutputStream.parseTime("2024-01-01T12:00:00", 0, stockholm);
+        final Date until = LogFilterOutputStream.parseTime("2024-01-01 14:00", 0, stockholm);
+        assertEquals("2024-01-01T11:00:00.000Z", LogFilterOutputStream.formatTime(since));
+
+        assertEquals("2024-01-01 11:00:00,000 ERROR failed\n" +
+                     "java.lang.IllegalStateException: broken\n" +
+                     "\tat a.B.c(B.java:1)\n" +
+                     "2024-01-01 12:00:00,000 WARN slow request\n",
+                     filter(LOG, null, since, until, UTC, null));
+        assertEquals("2024-01-01 12:00:00,000 WARN slow request\n" +
+                     "2024-01-01 13:00:00,000 INFO stopped\n",
+                     filter(LOG, null, since, until, stockholm, null));
+    }
+
+    @Test
+    public void appliesTimeRangeAlsoToLogStartingWithinIt() throws IOException {
+        final Date since = LogFilterOutputStream.parseTime("2024-01-01T09:00:00", 0, UTC);
+        final Date until = LogFilterOutputStream.parseTime("2024-01-01T12:00:00", 0, UTC);
+
+        // the whole log, sent by a server ignoring the range, starts after the start of the range
+        assertEquals("2024-01-01 10:00:00,000 INFO started\n" +
+                     "2024-01-01 11:00:00,000 ERROR failed\n" +
+                     "java.lang.IllegalStateException: broken\n" +
+                     "\tat a.B.c(B.java:1)\n",
+                     filter(LOG, null, since, until, UTC, null));
+
+        // the log sent by a server applying the range passes unchanged
+        final String ranged = LOG.substring(0, LOG.indexOf("2024-01-01 12"));
+        assertEquals(ranged, filter(ranged, null, since, until, UTC, null));
+    }
+
+    @Test
+    public void parsesDurationsBeforeNow() {
+        final long now = 10L * 24 * 60 * 60 * 1000;
+        assertEquals(now - 30 * 1000, LogFilterOutputStream.parseTime("30s", now, UTC).getTime());
+        assertEquals(now - 10 * 60 * 1000, LogFilterOutputStream.parseTime("10m", now, UTC).getTime());
+        assertEquals(now - 2 * 60 * 60 * 1000, LogFilterOutputStream.parseTime(" 2h ", now, UTC).getTime());
+        assertEquals(now - 24 * 60 * 60 * 1000, LogFilterOutputStream.parseTime("1d", now, UTC).getTime());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidTime() {
+        LogFilterOutputStream.parseTime("yesterday", 0, UTC);
+    }
+
+    private static String filter(final String log,
+                                 final LogFilterOutputStream.Level level,
+                                 final Date since,
+                                 final Date until,
+                                 final TimeZone timeZone,
+                                 final List<String> patterns) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final byte[] bytes = log.getBytes("UTF-8");
+        try (LogFilterOutputStream stream =
+                     new LogFilterOutputStream(output, level, since, until, timeZone, patterns)) {
+            // in pieces, so that lines straddle writes
+            for (int offset = 0; offset < bytes.length; offset += 7) {
+                stream.write(bytes, offset, Math.min(7, bytes.length - offset));
+            }
+        }
+        return output.toString("UTF-8");
+    }
+}
@@ -0,0 +1,127 @@
+package com.appearnetworks.aiq;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LogMergerTest {
+
+    @Test
+    public void mergesByTimestampKeepingEntriesWhole() throws Exception {
+        final List<LogMerger.Source> sources = sources("ia", "server");
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final List<Thread> writers = Arrays.asList(
+                write(sources.get(0), "2024-01-01 00:00:01,000 INFO a1\n" +
+                                      "2024-01-01 00:00:03,000 ERROR a3\n" +
+                                      "\tat a.B.c(B.java:1)\n" +
+                                      "2024-01-01 00:00:05,000 INFO a5"),
+                write(sources.get(1), "2024-01-01 00:00:02,000 INFO b2\n" +
+                                      "2024-01-01 00:00:03,000 INFO b3\n" +
+                                      "2024-01-01 00:00:04,000 INFO b4\n"));
+        LogMerger.merge(sources, output);
+        join(writers);
+
+        assertEquals("[ia] 2024-01-01 00:00:01,000 INFO a1\n" +
+                     "[server] 2024-01-01 00:00:02,000 INFO b2\n" +
+                     "[ia] 2024-01-01 00:00:03,000 ERROR a3\n" +
+                     "[ia] \tat a.B.c(B.java:1)\n" +
+                     "[server] 2024-01-01 00:00:03,000 INFO b3\n" +
+                     "[server] 2024-01-01 00:00:04,000 INFO b4\n" +
+                     "[ia] 2024-01-01 00:00:05,000 INFO a5\n",
+                     output.toString("UTF-8"));
+    }
+
+    /**
+     * Merges logs much longer than the lookahead, so that the writers block on the merge.
+     */
+    @Test
+    public void mergesLogsLongerThanLookahead() throws Exception {
+        final int count = 4;
+        final int lines = LogMerger.LOOKAHEAD * 10;
+        final List<LogMerger.Source> sources = sources("0", "1", "2", "3");
+        final List<Thread> writers = new ArrayList<>();
+        for (int s = 0; s < count; s++) {
+            final StringBuilder log = new StringBuilder();
+            for (int i = 0; i < lines; i++) {
+                log.append(timestamp(i * count + (count - 1 - s))).append(" INFO line\n");
+            }
+            writers.add(write(sources.get(s), log.toString()));
+        }
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        LogMerger.merge(sources, output);
+        join(writers);
+
+        final String[] merged = output.toString("UTF-8").split("\n");
+        assertEquals(count * lines, merged.length);
+        for (int i = 0; i < merged.length; i++) {
+            assertEquals("[" + (count - 1 - i % count) + "] " + timestamp(i) + " INFO line", merged[i]);
+        }
+    }
+
+    @Test
+    public void failsAfterMergingLinesReadBeforeFailure() throws Exception {
+        final List<LogMerger.Source> sources = sources("ia", "server");
+        sources.get(0).write("2024-01-01 00:00:01,000 INFO a1\n".getBytes("UTF-8"));
+        sources.get(0).fail(new IOException("connection reset"));
+        sources.get(1).write("2024-01-01 00:00:02,000 INFO b2\n".getBytes("UTF-8"));
+        sources.get(1).close();
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            LogMerger.merge(sources, output);
+            fail();
+        } catch (IOException e) {
+            assertEquals("connection reset", e.getMessage());
+        }
+        assertTrue(output.toString("UTF-8").startsWith("[ia] 2024-01-01 00:00:01,000 INFO a1\n"));
+    }
+
+    private static List<LogMerger.Source> sources(final String... names) {
+        final List<LogMerger.Source> sources = new ArrayList<>(names.length);
+        for (String name : names) {
+            sources.add(new LogMerger.Source(sources.size(), name));
+        }
+        return sources;
+    }
+
+    private static String timestamp(final int second) {
+        return String.format(Locale.ENGLISH, "2024-01-01 %02d:%02d:%02d,000",
+                             second / 3600, second / 60 % 60, second % 60);
+    }
+
+    private static Thread write(final LogMerger.Source source, final String log) {
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final byte[] bytes = log.getBytes("UTF-8");
+                    // in pieces, so that lines straddle writes
+                    for (int offset = 0; offset < bytes.length; offset += 11) {
+                        source.write(bytes, offset, Math.min(11, bytes.length - offset));
+                    }
+                    source.close();
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private static void join(final List<Thread> threads) throws InterruptedException {
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+}
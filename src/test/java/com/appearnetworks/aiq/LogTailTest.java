@@ -0,0 +1,403 @@
+package com.appearnetworks.aiq;
+
+import com.sun.net.httpserver.HttpExchange;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LogTailTest {
+
+    private static final String PATH = "/integration/test/ia.logs.tail";
+
+    private static final String LAST_MODIFIED = "Wed, 01 Jan 2014 12:00:00 GMT";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private StubServer server;
+
+    private AIQSession session;
+
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private Thread thread;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new StubServer();
+        session = TestSessions.open(server.getUrl(), folder.newFolder("session"));
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        if (thread != null) {
+            thread.interrupt();
+            thread.join(5000);
+        }
+        server.stop();
+    }
+
+    @Test
+    public void streamsEventsAndResumesFromLastEvent() throws Exception {
+        server.handle(PATH, new StubServer.Handler() {
+            @Override
+            public void handle(final StubServer.Request request, final HttpExchange exchange) throws IOException {
+                if (requests.incrementAndGet() == 1) {
+                    sendEvents(exchange, "retry: 10\nid: 1\ndata: first\n\n: keep-alive\n\nid: 2\ndata: second\n" +
+                                         "data: third\n\n");
+                } else {
+                    sendEvents(exchange, "id: " + request.getHeader("Last-Event-ID") + "-next\ndata: fourth\n\n");
+                }
+            }
+        });
+
+        start(true, 10000);
+        waitForOutput("first\nsecond\nthird\nfourth\n");
+
+        final List<StubServer.Request> received = server.getRequests(PATH);
+        assertEquals("true", received.get(0).getParameter("stream"));
+        assertEquals("text/event-stream", received.get(0).getHeader("Accept"));
+        assertNull(received.get(0).getHeader("Last-Event-ID"));
+        assertEquals("2", received.get(1).getHeader("Last-Event-ID"));
+        assertEquals("BEARER " + TestSessions.TOKEN, received.get(0).getHeader("Authorization"));
+    }
+
+    @Test
+    public void reconnectsSilentStream() throws Exception {
+        server.handle(PATH, new StubServer.Handler() {
+            @Override
+            public void handle(final StubServer.Request request, final HttpExchange exchange) throws IOException {
+                if (requests.incrementAndGet() == 1) {
+                    exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+                    exchange.sendResponseHeaders(200, 0);
+                    final OutputStream body = exchange.getResponseBody();
+                    body.write("retry: 10\nid: 1\ndata: first\n\n".getBytes("UTF-8"));
+                    body.flush();
+                    try {
+                        // a half-open connection, on which nothing arrives any more
+                        Thread.sleep(10000);
+                    } catch (InterruptedException ignore) {
+                        // server stopped
+                    }
+                } else {
+                    sendEvents(exchange, "id: 2\ndata: second\n\n");
+                }
+            }
+        });
+
+        final long start = System.currentTimeMillis();
+        start(true, 300);
+        waitForOutput("first\nsecond\n");
+
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        assertEquals("1", server.getRequests(PATH).get(1).getHeader("Last-Event-ID"));
+    }
+
+    @Test
+    public void fallsBackToPollingWithoutEventStream() throws Exception {
+        server.handle(PATH, new StubServer.Handler() {
+            @Override
+            public void handle(final StubServer.Request request, final HttpExchange exchange) throws IOException {
+                if (requests.incrementAndGet() == 1) {
+                    exchange.getResponseHeaders().set("Last-Modified", LAST_MODIFIED);
+                    StubServer.respond(exchange, 200, "whole log\n");
+                } else {
+                    StubServer.respond(exchange, 304, "");
+                }
+            }
+        });
+
+        start(true, 10000);
+        waitForRequests(3);
+
+        assertEquals("whole log\n", output.toString("UTF-8"));
+        final List<StubServer.Request> received = server.getRequests(PATH);
+        assertNull(received.get(1).getParameter("stream"));
+        assertEquals(LAST_MODIFIED, received.get(1).getHeader("If-Modified-Since"));
+    }
+
+    @Test
+    public void pollsChangesOfLog() throws Exception {
+        server.handle(PATH, new StubServer.Handler() {
+            @Override
+            public void handle(final StubServer.Request request, final HttpExchange exchange) throws IOException {
+                final int count = requests.incrementAndGet();
+                if (count == 1) {
+                    exchange.getResponseHeaders().set("Last-Modified", LAST_MODIFIED);
+                    StubServer.respond(exchange, 200, "line 1\n");
+                } else if (count == 2) {
+                    StubServer.respond(exchange, 304, "");
+                } else if (count == 3) {
+                    exchange.getResponseHeaders().set("Last-Modified", "Wed, 01 Jan 2014 12:00:05 GMT");
+                    StubServer.respond(exchange, 200, "line 2\n");
+                } else {
+                    StubServer.respond(exchange, 304, "");
+                }
+            }
+        });
+
+        start(false, 10000);
+        waitForRequests(4);
+
+        assertEquals("line 1\nline 2\n", output.toString("UTF-8"));
+        final List<StubServer.Request> received = server.getRequests(PATH);
+        assertNull(received.get(0).getHeader("If-Modified-Since"));
+        assertNull(received.get(0).getHeader("Range"));
+        assertEquals(LAST_MODIFIED, received.get(1).getHeader("If-Modified-Since"));
+        assertEquals("Wed, 01 Jan 2014 12:00:05 GMT", received.get(3).getHeader("If-Modified-Since"));
+    }
+
+    @Test
+    public void requestsOnlyNewBytesOfLog() throws Exception {
+        server.handle(PATH, new StubServer.Handler() {
+            @Override
+            public void handle(final StubServer.Request request, final HttpExchange exchange) throws IOException {
+                final int count = requests.incrementAndGet();
+                if (count == 1) {
+                    exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+                    StubServer.respond(exchange, 200, "a\nb\n");
+                } else if (count == 2) {
+                    exchange.getResponseHeaders().set("Content-Range", "bytes 4-5/6");
+                    StubServer.respond(exchange, 206, "c\n");
+                } else {
+                    exchange.getResponseHeaders().set("Content-Range", "bytes */6");
+                    StubServer.respond(exchange, 416, "");
+                }
+            }
+        });
+
+        start(false, 10000);
+        waitForRequests(4);
+
+        assertEquals("a\nb\nc\n", output.toString("UTF-8"));
+        final List<StubServer.Request> received = server.getRequests(PATH);
+        assertNull(received.get(0).getHeader("Range"));
+        assertEquals("bytes=4-", received.get(1).getHeader("Range"));
+        assertEquals("bytes=6-", received.get(2).getHeader("Range"));
+        assertEquals("bytes=6-", received.get(3).getHeader("Range"));
+        assertNull(received.get(1).getHeader("Accept-Encoding"));
+    }
+
+    @Test
+    public void skipsWrittenBytesWhenRangeIsIgnored() throws Exception {
+        server.handle(PATH, new StubServer.Handler() {
+            @Override
+            public void handle(final StubServer.Request request, final HttpExchange exchange) throws IOException {
+                exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+                StubServer.respond(exchange, 200, requests.incrementAndGet() == 1 ? "a\nb\n" : "a\nb\nc\n");
+            }
+        });
+
+        start(false, 10000);
+        waitForRequests(3);
+
+        assertEquals("a\nb\nc\n", output.toString("UTF-8"));
+        assertEquals("bytes=6-", server.getRequests(PATH).get(2).getHeader("Range"));
+    }
+
+    @Test
+    public void restartsTruncatedLog() throws Exception {
+        server.handle(PATH, new StubServer.Handler() {
+            @Override
+            public void handle(final StubServer.Request request, final HttpExchange exchange) throws IOException {
+                final int count = requests.incrementAndGet();
+                if (count == 1) {
+                    exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+                    StubServer.respond(exchange, 200, "a\nb\n");
+                } else if (count == 2) {
+                    exchange.getResponseHeaders().set("Content-Range", "bytes */2");
+                    StubServer.respond(exchange, 416, "");
+                } else if (count == 3) {
+                    exchange.getResponseHeaders().set("Content-Range", "bytes 0-1/2");
+                    StubServer.respond(exchange, 206, "x\n");
+                } else {
+                    exchange.getResponseHeaders().set("Content-Range", "bytes */2");
+                    StubServer.respond(exchange, 416, "");
+                }
+            }
+        });
+
+        start(false, 10000);
+        waitForRequests(4);
+
+        assertEquals("a\nb\nx\n", output.toString("UTF-8"));
+        final List<StubServer.Request> received = server.getRequests(PATH);
+        assertEquals("bytes=4-", received.get(1).getHeader("Range"));
+        assertEquals("bytes=0-", received.get(2).getHeader("Range"));
+        assertEquals("bytes=2-", received.get(3).getHeader("Range"));
+    }
+
+    @Test
+    public void checkpointsOnlyOutputWrittenBySink() throws Exception {
+        final StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            lines.append("line ").append(i).append('\n');
+        }
+        final byte[] log = lines.toString().getBytes("UTF-8");
+        server.handle(PATH, new StubServer.Handler() {
+            @Override
+            public void handle(final StubServer.Request request, final HttpExchange exchange) throws IOException {
+                requests.incrementAndGet();
+                final String range = request.getHeader("Range");
+                final int start = range == null ? 0 : Integer.parseInt(range.substring(6, range.length() - 1));
+                if (start >= log.length) {
+                    exchange.getResponseHeaders().set("Content-Range", "bytes */" + log.length);
+                    StubServer.respond(exchange, 416, "");
+                    return;
+                }
+                // the log grows by a few lines per poll
+                final int end = Math.min(log.length, start + 100);
+                final byte[] piece = new byte[end - start];
+                System.arraycopy(log, start, piece, 0, piece.length);
+                exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + (end - 1) + "/" +
+                                                                   log.length);
+                StubServer.respond(exchange, 206, piece);
+            }
+        });
+
+        // the output stalls after a few lines, while the whole log fits into the buffer
+        final File file = new File(folder.getRoot(), "checkpoint.properties");
+        final CountDownLatch gate = new CountDownLatch(1);
+        final TailCheckpoint checkpoint = TailCheckpoint.load(file, 0);
+        start(false, 10000, new StallingOutputStream(output, 250, gate), checkpoint);
+        waitForRequests(log.length / 100 + 3);
+
+        // killed now, the shutdown hook saves the checkpoint while the output is still stalled
+        checkpoint.save();
+        final File saved = new File(folder.getRoot(), "saved.properties");
+        FileUtils.copyFile(file, saved);
+        final String printed = output.toString("UTF-8");
+        gate.countDown();
+        stop();
+
+        final TailCheckpoint resumed = TailCheckpoint.load(saved, 0);
+        final long offset = resumed.getOffset();
+        assertTrue(offset + " of " + printed.length(), offset >= 0 && offset <= printed.length());
+
+        output.reset();
+        start(false, 10000, output, resumed);
+        waitForOutput(lines.substring((int) offset));
+        assertTrue(lines.toString().startsWith(printed));
+    }
+
+    /**
+     * Starts tailing the log in a background thread, stopped when the test ends.
+     */
+    private void start(final boolean streaming, final int streamTimeout) {
+        start(streaming, streamTimeout, output, null);
+    }
+
+    /**
+     * Starts tailing the log to given sink in a background thread, stopped when the test ends.
+     */
+    private void start(final boolean streaming,
+                       final int streamTimeout,
+                       final OutputStream sink,
+                       final TailCheckpoint checkpoint) {
+        final RingBufferOutputStream buffer = new RingBufferOutputStream(sink, 64, 64,
+                                                                         RingBufferOutputStream.OverflowPolicy.BLOCK,
+                                                                         new SystemStreamLog());
+        final LogTail tail = new LogTail(TestSessions.mojo(), session, "ia.logs.tail", buffer,
+                                         new PollScheduler(10, 50, 2.0, new Random(1)), checkpoint,
+                                         new TailMetrics("test"), streamTimeout);
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    tail.run(streaming);
+                } catch (InterruptedException ignore) {
+                    // test over
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void stop() throws InterruptedException {
+        thread.interrupt();
+        thread.join(5000);
+        thread = null;
+    }
+
+    private void waitForOutput(final String expected) throws Exception {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (!output.toString("UTF-8").equals(expected) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, output.toString("UTF-8"));
+    }
+
+    private void waitForRequests(final int count) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (requests.get() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(requests.get() >= count);
+    }
+
+    private static void sendEvents(final HttpExchange exchange, final String events) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        StubServer.respond(exchange, 200, events);
+    }
+
+    /**
+     * Stream which stalls once given number of bytes have been written to it, until the gate opens.
+     */
+    private static class StallingOutputStream extends OutputStream {
+
+        private final OutputStream sink;
+
+        private final int limit;
+
+        private final CountDownLatch gate;
+
+        private int written;
+
+        StallingOutputStream(final OutputStream sink, final int limit, final CountDownLatch gate) {
+            this.sink = sink;
+            this.limit = limit;
+            this.gate = gate;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] buffer, final int offset, final int length) throws IOException {
+            if (written >= limit) {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+            }
+            sink.write(buffer, offset, length);
+            written += length;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.appearnetworks.aiq;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.EnumSet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PatternMatchOutputStreamTest {
+
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    @Test
+    public void findsMatchStraddlingWrites() throws IOException {
+        final PatternMatchOutputStream stream = create(EnumSet.of(PatternMatchOutputStream.Action.COUNT),
+                                                       "ERROR", "OutOfMemory");
+        final byte[] data = "ok\nan ERROR here\nan OutOfMemoryError\nfine\n".getBytes("UTF-8");
+        // every split point, so that every pattern straddles a write in some round
+        for (int split = 0; split <= data.length; split++) {
+            stream.write(data, 0, split);
+            stream.write(data, split, data.length - split);
+        }
+        // byte by byte
+        for (byte b : data) {
+            stream.write(b);
+        }
+        stream.close();
+
+        assertArrayEquals(new long[] {data.length + 2, data.length + 2}, stream.getCounts());
+        assertEquals(new String(data, "UTF-8").length() * (data.length + 2), output.toString("UTF-8").length());
+    }
+
+    @Test
+    public void countsLinesOncePerPattern() throws IOException {
+        final PatternMatchOutputStream stream = create(EnumSet.of(PatternMatchOutputStream.Action.COUNT),
+                                                       "ERR", "ERROR", "ROR");
+        stream.write("ERROR ERROR\nERRONEOUS\nHORROR\n".getBytes("UTF-8"));
+        stream.close();
+
+        assertArrayEquals(new long[] {2, 1, 2}, stream.getCounts());
+        assertEquals("ERROR ERROR\nERRONEOUS\nHORROR\n", output.toString("UTF-8"));
+    }
+
+    @Test
+    public void highlightsMatchingLines() throws IOException {
+        final PatternMatchOutputStream stream = create(EnumSet.of(PatternMatchOutputStream.Action.HIGHLIGHT), "ERROR");
+        stream.write("ok\nan ERROR\n".getBytes("UTF-8"));
+        stream.close();
+
+        assertEquals("ok\n\u001b[1;31man ERROR\u001b[0m\n", output.toString("UTF-8"));
+    }
+
+    @Test
+    public void failsOnMatch() throws IOException {
+        final PatternMatchOutputStream stream = create(EnumSet.of(PatternMatchOutputStream.Action.FAIL),
+                                                       "FATAL", "ERROR");
+        stream.write("ok\nan ER".getBytes("UTF-8"));
+        try {
+            stream.write("ROR\nnext\n".getBytes("UTF-8"));
+            fail("The match must fail");
+        } catch (PatternMatchOutputStream.MatchException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Found [ERROR] in the log [test]: an ERROR"));
+        }
+        assertEquals("ok\nan ERROR\n", output.toString("UTF-8"));
+    }
+
+    private PatternMatchOutputStream create(final EnumSet<PatternMatchOutputStream.Action> actions,
+                                            final String... patterns) {
+        return new PatternMatchOutputStream(output, Arrays.asList(patterns), actions, null, "test",
+                                            new SystemStreamLog());
+    }
+}
@@ -0,0 +1,83 @@
+package com.appearnetworks.aiq;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PollSchedulerTest {
+
+    @Test
+    public void growsUpToCeilingWhileNotModified() {
+        final PollScheduler scheduler = new PollScheduler(100, 1000, 2, new Random(1));
+        assertEquals(100, scheduler.getInterval());
+
+        final long[] expected = {200, 400, 800, 1000, 1000};
+        for (long interval : expected) {
+            scheduler.onNotModified();
+            assertEquals(interval, scheduler.getInterval());
+        }
+    }
+
+    @Test
+    public void shrinksToFloorWhileModified() {
+        final PollScheduler scheduler = new PollScheduler(100, 1000, 2, new Random(1));
+        for (int i = 0; i < 10; i++) {
+            scheduler.onNotModified();
+        }
+
+        final long[] expected = {500, 250, 125, 100, 100};
+        for (long interval : expected) {
+            assertEquals(interval, scheduler.onModified());
+            assertEquals(interval, scheduler.getInterval());
+        }
+    }
+
+    @Test
+    public void jittersBetweenHalfAndWholeInterval() {
+        final PollScheduler scheduler = new PollScheduler(100, 10000, 1.5, new Random(2));
+        long lowest = Long.MAX_VALUE;
+        long highest = 0;
+        for (int i = 0; i < 1000; i++) {
+            final long delay = scheduler.onNotModified();
+            final long interval = scheduler.getInterval();
+            assertTrue(delay + " of " + interval, delay >= Math.max(100, interval / 2) && delay <= interval);
+            if (interval == 10000) {
+                lowest = Math.min(lowest, delay);
+                highest = Math.max(highest, delay);
+            }
+        }
+
+        // the delays spread over the whole jitter range
+        assertTrue(String.valueOf(lowest), lowest < 5500);
+        assertTrue(String.valueOf(highest), highest > 9500);
+    }
+
+    @Test
+    public void neverWaitsLessThanFloor() {
+        final PollScheduler scheduler = new PollScheduler(100, 150, 1.2, new Random(3));
+        for (int i = 0; i < 100; i++) {
+            assertTrue(scheduler.onNotModified() >= 100);
+        }
+    }
+
+    @Test
+    public void rejectsInvalidIntervals() {
+        assertInvalid(0, 1000, 2);
+        assertInvalid(1000, 100, 2);
+        assertInvalid(100, 1000, 1);
+        assertInvalid(100, 1000, 0.5);
+    }
+
+    private static void assertInvalid(final long floor, final long ceiling, final double backoff) {
+        try {
+            new PollScheduler(floor, ceiling, backoff, new Random());
+            fail(floor + ", " + ceiling + ", " + backoff);
+        } catch (IllegalArgumentException expected) {
+            // rejected
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.appearnetworks.aiq;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RingBufferOutputStreamTest {
+
+    private static final int CHUNK_SIZE = 64;
+
+    @Test
+    public void blockKeepsAllOutput() throws IOException {
+        for (int capacity = 1; capacity <= 2; capacity++) {
+            final ByteArrayOutputStream sink = new ByteArrayOutputStream();
+            final RingBufferOutputStream stream = new RingBufferOutputStream(new SlowOutputStream(sink), capacity,
+                    CHUNK_SIZE, RingBufferOutputStream.OverflowPolicy.BLOCK, new SystemStreamLog());
+            final byte[] input = lines(500, 50);
+            writeInPieces(stream, input, 13);
+            stream.close();
+
+            assertEquals(0, stream.getDroppedBytes());
+            assertTrue(Arrays.equals(input, sink.toByteArray()));
+        }
+    }
+
+    @Test
+    public void dropOldestDropsWholeLines() throws IOException {
+        assertWholeLines(RingBufferOutputStream.OverflowPolicy.DROP_OLDEST, 50, 13);
+    }
+
+    @Test
+    public void sampleDropsWholeLines() throws IOException {
+        assertWholeLines(RingBufferOutputStream.OverflowPolicy.SAMPLE, 50, 13);
+        assertWholeLines(RingBufferOutputStream.OverflowPolicy.SAMPLE, 50, 100);
+    }
+
+    @Test
+    public void neverJoinsLinesLongerThanChunk() throws IOException {
+        for (RingBufferOutputStream.OverflowPolicy policy : Arrays.asList(
+                RingBufferOutputStream.OverflowPolicy.DROP_OLDEST, RingBufferOutputStream.OverflowPolicy.SAMPLE)) {
+            final String output = writeThroughGate(policy, 200, 29);
+            for (String line : output.split("\n")) {
+                assertTrue(line, line.indexOf("line-", 1) < 0);
+                if (line.startsWith("line-") && line.indexOf(' ') > 0) {
+                    final int number = Integer.parseInt(line.substring(5, line.indexOf(' ')));
+                    assertTrue(line, line(number, 200).startsWith(line));
+                } else {
+                    assertTrue(line, "line-".startsWith(line));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void callsBackOnceSinkHasWritten() throws IOException {
+        final ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        final CountDownLatch gate = new CountDownLatch(1);
+        final RingBufferOutputStream stream = new RingBufferOutputStream(new GatedOutputStream(sink, gate), 4,
+                CHUNK_SIZE, RingBufferOutputStream.OverflowPolicy.BLOCK, new SystemStreamLog());
+        final AtomicInteger written = new AtomicInteger(-1);
+        stream.write(lines(2, 10));
+        stream.whenWritten(new RingBufferOutputStream.Callback() {
+            @Override
+            public void written() {
+                written.set(sink.size());
+            }
+        });
+        assertEquals(-1, written.get());
+
+        gate.countDown();
+        stream.close();
+        assertEquals(lines(2, 10).length, written.get());
+    }
+
+    @Test
+    public void neverCallsBackAfterDroppedOutput() throws IOException {
+        final CountDownLatch gate = new CountDownLatch(1);
+        final RingBufferOutputStream stream = new RingBufferOutputStream(
+                new GatedOutputStream(new ByteArrayOutputStream(), gate), 4, CHUNK_SIZE,
+                RingBufferOutputStream.OverflowPolicy.DROP_OLDEST, new SystemStreamLog());
+        final boolean[] called = new boolean[1];
+        writeInPieces(stream, lines(100, 10), 13);
+        stream.whenWritten(new RingBufferOutputStream.Callback() {
+            @Override
+            public void written() {
+                called[0] = true;
+            }
+        });
+
+        gate.countDown();
+        stream.close();
+        assertTrue(stream.getDroppedBytes() > 0);
+        assertFalse(called[0]);
+    }
+
+    private void assertWholeLines(final RingBufferOutputStream.OverflowPolicy policy,
+                                  final int maxPadding,
+                                  final int pieceSize) throws IOException {
+        final String output = writeThroughGate(policy, maxPadding, pieceSize);
+        assertTrue(output, output.endsWith("\n"));
+
+        int previous = -1;
+        for (String line : output.split("\n")) {
+            final int number = Integer.parseInt(line.substring(5, line.indexOf(' ')));
+            assertEquals(line(number, maxPadding), line + "\n");
+            assertTrue(line, number > previous);
+            previous = number;
+        }
+    }
+
+    /**
+     * Writes numbered lines to a stream of which the sink is held up until all lines are written, so that the ring
+     * overflows.
+     */
+    private String writeThroughGate(final RingBufferOutputStream.OverflowPolicy policy,
+                                    final int maxPadding,
+                                    final int pieceSize) throws IOException {
+        final ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        final CountDownLatch gate = new CountDownLatch(1);
+        final RingBufferOutputStream stream = new RingBufferOutputStream(new GatedOutputStream(sink, gate), 4,
+                                                                         CHUNK_SIZE, policy, new SystemStreamLog());
+        writeInPieces(stream, lines(2000, maxPadding), pieceSize);
+        gate.countDown();
+        stream.close();
+
+        assertTrue(stream.getDroppedBytes() > 0);
+        return sink.toString("UTF-8");
+    }
+
+    private static void writeInPieces(final OutputStream stream, final byte[] input, final int pieceSize)
+            throws IOException {
+        for (int offset = 0; offset < input.length; offset += pieceSize) {
+            stream.write(input, offset, Math.min(pieceSize, input.length - offset));
+        }
+    }
+
+    private static byte[] lines(final int count, final int maxPadding) throws IOException {
+        final StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            lines.append(line(i, maxPadding));
+        }
+        return lines.toString().getBytes("UTF-8");
+    }
+
+    /**
+     * @return line with given number, padded with a letter depending on the number so that joined lines show.
+     */
+    private static String line(final int number, final int maxPadding) {
+        final char[] padding = new char[number * 7 % maxPadding];
+        Arrays.fill(padding, (char) ('a' + number % 26));
+        return "line-" + number + " " + new String(padding) + "\n";
+    }
+
+    private static class GatedOutputStream extends OutputStream {
+
+        private final OutputStream sink;
+
+        private final CountDownLatch gate;
+
+        GatedOutputStream(final OutputStream sink, final CountDownLatch gate) {
+            this.sink = sink;
+            this.gate = gate;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] buffer, final int offset, final int length) throws IOException {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            sink.write(buffer, offset, length);
+        }
+    }
+
+    private static class SlowOutputStream extends OutputStream {
+
+        private final OutputStream sink;
+
+        SlowOutputStream(final OutputStream sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] buffer, final int offset, final int length) throws IOException {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            sink.write(buffer, offset, length);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.appearnetworks.aiq;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RotatingFileOutputStreamTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void rotatesAtLineBoundaryAfterSize() throws IOException {
+        final File file = new File(folder.getRoot(), "server.log");
+        final RotatingFileOutputStream stream = new RotatingFileOutputStream(file, 10, 0, false);
+        stream.write("line one\nli".getBytes("UTF-8"));
+        stream.write("ne two\nline three\n".getBytes("UTF-8"));
+        stream.close();
+
+        final File[] rotated = rotatedFiles("server-", ".log");
+        assertEquals(1, rotated.length);
+        assertEquals("line one\nline two\n", read(rotated[0], false));
+        assertEquals("line three\n", read(file, false));
+    }
+
+    @Test
+    public void gzipsEveryFile() throws IOException {
+        final File file = new File(folder.getRoot(), "ia.log.gz");
+        // the size counts compressed bytes, of which the gzip header alone exceeds the limit
+        final RotatingFileOutputStream stream = new RotatingFileOutputStream(file, 5, 0, true);
+        stream.write("first line\nsecond line\n".getBytes("UTF-8"));
+        stream.close();
+
+        final File[] rotated = rotatedFiles("ia-", ".log.gz");
+        assertEquals(2, rotated.length);
+        final String[] contents = {read(rotated[0], true), read(rotated[1], true)};
+        Arrays.sort(contents);
+        assertEquals(Arrays.asList("first line\n", "second line\n"), Arrays.asList(contents));
+        assertEquals("", read(file, true));
+    }
+
+    @Test
+    public void keepsWritingWithoutLimits() throws IOException {
+        final File file = new File(folder.getRoot(), "logs/server.log");
+        final RotatingFileOutputStream stream = new RotatingFileOutputStream(file, 0, 0, false);
+        final byte[] line = new byte[1000];
+        Arrays.fill(line, (byte) 'x');
+        line[line.length - 1] = '\n';
+        for (int i = 0; i < 2000; i++) {
+            stream.write(line);
+        }
+        stream.close();
+
+        assertEquals(2000 * line.length, file.length());
+        assertEquals(1, file.getParentFile().list().length);
+    }
+
+    private File[] rotatedFiles(final String prefix, final String extension) {
+        final File[] files = folder.getRoot().listFiles();
+        Arrays.sort(files);
+        int count = 0;
+        for (File file : files) {
+            if (file.getName().startsWith(prefix) && file.getName().endsWith(extension)) {
+                files[count++] = file;
+            }
+        }
+        assertTrue(count > 0);
+        return Arrays.copyOf(files, count);
+    }
+
+    private static String read(final File file, final boolean gzip) throws IOException {
+        try (InputStream input = gzip ? new GZIPInputStream(new FileInputStream(file)) : new FileInputStream(file)) {
+            return new String(IOUtils.toByteArray(input), "UTF-8");
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.appearnetworks.aiq;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local HTTP server standing in for the integration supervisor, recording every request it receives.
+ */
+public class StubServer {
+
+    /**
+     * A request received by the server.
+     */
+    public static class Request {
+
+        private final String method;
+
+        private final String path;
+
+        private final String query;
+
+        private final byte[] body;
+
+        private final Headers headers;
+
+        Request(final HttpExchange exchange, final byte[] body) {
+            this.method = exchange.getRequestMethod();
+            this.path = exchange.getRequestURI().getPath();
+            this.query = exchange.getRequestURI().getRawQuery();
+            this.headers = exchange.getRequestHeaders();
+            this.body = body;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public String getQuery() {
+            return query;
+        }
+
+        /**
+         * @return value of given query parameter, or null if the request has no such parameter.
+         */
+        public String getParameter(final String name) {
+            if (query == null) {
+                return null;
+            }
+            for (String pair : query.split("&")) {
+                final int equals = pair.indexOf('=');
+                if (equals > 0 && pair.substring(0, equals).equals(name)) {
+                    try {
+                        return URLDecoder.decode(pair.substring(equals + 1), "UTF-8");
+                    } catch (UnsupportedEncodingException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            }
+            return null;
+        }
+
+        public String getHeader(final String name) {
+            return headers.getFirst(name);
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+    }
+
+    /**
+     * Answers the requests to a path.
+     */
+    public interface Handler {
+
+        /**
+         * Answers given request.
+         *
+         * @param request the request, already recorded.
+         * @param exchange exchange on which to send the response.
+         */
+        void handle(Request request, HttpExchange exchange) throws IOException;
+    }
+
+    private final HttpServer server;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final List<Request> requests = Collections.synchronizedList(new ArrayList<Request>());
+
+    public StubServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Answers the requests to given path, and to all paths below it, with given handler.
+     */
+    public void handle(final String path, final Handler handler) {
+        server.createContext(path, new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                try {
+                    final Request request = new Request(exchange, read(exchange.getRequestBody()));
+                    requests.add(request);
+                    handler.handle(request, exchange);
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+    }
+
+    /**
+     * @return URL of the server root, ending with a slash.
+     */
+    public URL getUrl() {
+        try {
+            return new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+        } catch (MalformedURLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the requests received so far to paths ending with given suffix, in the order they were received.
+     */
+    public List<Request> getRequests(final String pathSuffix) {
+        final List<Request> matching = new ArrayList<>();
+        synchronized (requests) {
+            for (Request request : requests) {
+                if (request.getPath().endsWith(pathSuffix)) {
+                    matching.add(request);
+                }
+            }
+        }
+        return matching;
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Sends a response with given status and body.
+     */
+    public static void respond(final HttpExchange exchange, final int status, final String body) throws IOException {
+        respond(exchange, status, body.getBytes("UTF-8"));
+    }
+
+    /**
+     * Sends a response with given status and body.
+     */
+    public static void respond(final HttpExchange exchange, final int status, final byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        }
+    }
+
+    private static byte[] read(final InputStream input) throws IOException {
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        int read;
+        while ((read = input.read(buffer)) >= 0) {
+            content.write(buffer, 0, read);
+        }
+        return content.toByteArray();
+    }
+}
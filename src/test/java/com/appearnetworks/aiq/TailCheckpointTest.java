@@ -0,0 +1,95 @@
+package com.appearnetworks.aiq;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TailCheckpointTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+
+    @Before
+    public void setUp() {
+        file = new File(folder.getRoot(), "tail.properties");
+    }
+
+    @Test
+    public void startsAtStartOfLogWithoutFile() throws Exception {
+        final TailCheckpoint checkpoint = TailCheckpoint.load(file, 1000);
+        assertNull(checkpoint.getSince());
+        assertEquals(-1, checkpoint.getOffset());
+        assertNull(checkpoint.getEventId());
+        checkpoint.close();
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void savesFirstUpdateAtOnce() throws Exception {
+        final TailCheckpoint checkpoint = TailCheckpoint.load(file, 60 * 1000L);
+        checkpoint.update("Mon, 01 Jan 2024 00:00:00 GMT", 42, "7");
+
+        final TailCheckpoint loaded = TailCheckpoint.load(file, 1000);
+        assertEquals("Mon, 01 Jan 2024 00:00:00 GMT", loaded.getSince());
+        assertEquals(42, loaded.getOffset());
+        assertEquals("7", loaded.getEventId());
+        loaded.close();
+        checkpoint.close();
+    }
+
+    @Test
+    public void savesQuietLogOnceIntervalHasPassed() throws Exception {
+        final TailCheckpoint checkpoint = TailCheckpoint.load(file, 200);
+        checkpoint.update(null, 10, null);
+        checkpoint.update(null, 20, null);
+        assertEquals(10, loadOffset());
+
+        // no more updates, the log has gone quiet
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (loadOffset() != 20 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(20, loadOffset());
+        checkpoint.close();
+    }
+
+    @Test
+    public void savesOnClose() throws Exception {
+        final TailCheckpoint checkpoint = TailCheckpoint.load(file, 60 * 1000L);
+        checkpoint.update(null, 10, null);
+        checkpoint.update(null, 20, null);
+        assertEquals(10, loadOffset());
+
+        checkpoint.close();
+        assertEquals(20, loadOffset());
+    }
+
+    @Test
+    public void resumesFromSavedPosition() throws Exception {
+        final TailCheckpoint checkpoint = TailCheckpoint.load(file, 1000);
+        checkpoint.update(null, 30, "event");
+        checkpoint.close();
+
+        assertTrue(file.exists());
+        final TailCheckpoint resumed = TailCheckpoint.load(file, 1000);
+        assertEquals(30, resumed.getOffset());
+        assertEquals("event", resumed.getEventId());
+        resumed.close();
+    }
+
+    private long loadOffset() throws Exception {
+        final TailCheckpoint loaded = TailCheckpoint.load(file, 1000);
+        loaded.close();
+        return loaded.getOffset();
+    }
+}
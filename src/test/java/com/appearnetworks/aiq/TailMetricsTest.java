@@ -0,0 +1,56 @@
+package com.appearnetworks.aiq;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TailMetricsTest {
+
+    @Test
+    public void summarizesIntervalSincePreviousSummary() {
+        final TailMetrics metrics = new TailMetrics("log");
+        metrics.recordRequest(1000, 200);
+        metrics.recordRequest(1000, 206);
+        metrics.recordRequest(1000, 304);
+        metrics.recordFailure();
+
+        final String first = metrics.summary();
+        assertTrue(first, first.startsWith("[log] last "));
+        assertTrue(first, first.contains(": 4 polls "));
+        assertTrue(first, first.contains(", 1 modified, 1 partial, 1 not modified, 1 failed, "));
+        assertTrue(first, first.contains("latency p50 1024 ms p99 1024 ms"));
+
+        metrics.recordRequest(3, 304);
+        metrics.recordRequest(3, 416);
+        final String second = metrics.summary();
+        assertTrue(second, second.contains(": 2 polls "));
+        assertTrue(second, second.contains(", 0 modified, 0 partial, 2 not modified, 0 failed, "));
+        assertTrue(second, second.contains("latency p50 4 ms p99 4 ms"));
+
+        final String quiet = metrics.summary();
+        assertTrue(quiet, quiet.contains(": 0 polls "));
+        assertTrue(quiet, quiet.contains("latency p50 -1 ms p99 -1 ms, lag unknown"));
+    }
+
+    @Test
+    public void gettersReportTotals() {
+        final TailMetrics metrics = new TailMetrics("log");
+        metrics.recordRequest(1000, 200);
+        metrics.recordContent(100, 2);
+        metrics.summary();
+        metrics.recordRequest(3, 304);
+        metrics.recordContent(50, 1);
+        metrics.recordLag(250);
+        metrics.summary();
+
+        assertEquals(2, metrics.getPolls());
+        assertEquals(1, metrics.getModified());
+        assertEquals(1, metrics.getNotModified());
+        assertEquals(150, metrics.getBytes());
+        assertEquals(3, metrics.getLines());
+        assertEquals(1024, metrics.getLatencyP99());
+        assertEquals(250, metrics.getLag());
+        assertEquals(2L, metrics.toMap().get("polls"));
+    }
+}
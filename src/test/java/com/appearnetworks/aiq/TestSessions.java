@@ -0,0 +1,98 @@
+package com.appearnetworks.aiq;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.util.Properties;
+
+/**
+ * Sessions and goals talking to a {@link StubServer}, already holding an access token so that no authentication
+ * request is made.
+ */
+public final class TestSessions {
+
+    /**
+     * The access token of the sessions.
+     */
+    public static final String TOKEN = "test-token";
+
+    private TestSessions() {
+    }
+
+    /**
+     * @return a goal doing nothing, giving access to the helpers of {@link AbstractAIQMojo}.
+     */
+    public static AbstractAIQMojo mojo() {
+        return new AbstractAIQMojo() {
+            @Override
+            public void execute() throws MojoExecutionException, MojoFailureException {
+            }
+        };
+    }
+
+    /**
+     * Opens a session of org {@code test} on given server.
+     *
+     * @param url URL to the integration supervisor.
+     * @param directory directory in which to write the properties file of the session, distinct for every session.
+     * @return the session, will not be null.
+     */
+    public static AIQSession open(final URL url, final File directory) throws IOException {
+        return open(url, directory, "test");
+    }
+
+    /**
+     * Opens a session of given org on given server.
+     *
+     * @param url URL to the integration supervisor.
+     * @param directory directory in which to write the properties file of the session, distinct for every session.
+     * @param org name of the organization.
+     * @return the session, will not be null.
+     */
+    public static AIQSession open(final URL url, final File directory, final String org) throws IOException {
+        final Properties properties = new Properties();
+        properties.setProperty("aiq.url", url.toString());
+        properties.setProperty("aiq.orgname", org);
+        properties.setProperty("aiq.username", "user");
+        properties.setProperty("aiq.password", "password");
+
+        final File file = new File(directory, "aiq.properties");
+        try (OutputStream output = new FileOutputStream(file)) {
+            properties.store(output, null);
+        }
+
+        final AIQSession session = AIQSession.open(
+                null, url, file.getPath(), new HttpConnectionPool(20, 8, 30000, 60000, 5000, 5000, 5000));
+        session.setAccessToken(new AccessToken(TOKEN, 0));
+        return session;
+    }
+
+    /**
+     * Sets a parameter of a goal as Maven would inject it.
+     *
+     * @param mojo the goal.
+     * @param name name of the parameter field, declared by the goal class or any of its super classes.
+     * @param value value of the parameter.
+     */
+    public static void configure(final Object mojo, final String name, final Object value) {
+        for (Class<?> type = mojo.getClass(); type != null; type = type.getSuperclass()) {
+            try {
+                final Field field = type.getDeclaredField(name);
+                field.setAccessible(true);
+                field.set(mojo, value);
+                return;
+            } catch (NoSuchFieldException ignore) {
+                // declared by a super class
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        throw new IllegalArgumentException("Unknown parameter [" + name + "]");
+    }
+}
@@ -0,0 +1,89 @@
+package com.appearnetworks.aiq;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class TokenCacheTest {
+
+    private static final String URL = "https://aiq.example.com/";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+
+    private TokenCache cache;
+
+    @Before
+    public void setUp() {
+        directory = new File(folder.getRoot(), "tokens");
+        cache = new TokenCache(directory);
+    }
+
+    @Test
+    public void returnsStoredToken() throws Exception {
+        final long expiresAt = System.currentTimeMillis() + 3600 * 1000L;
+        cache.put(URL, "org", "user", new AccessToken("token", expiresAt));
+
+        final AccessToken token = cache.get(URL, "org", "user");
+        assertNotNull(token);
+        assertEquals("token", token.getValue());
+        assertEquals(expiresAt, token.getExpiresAt());
+    }
+
+    @Test
+    public void keepsTokensOfDifferentUsersApart() throws Exception {
+        final long expiresAt = System.currentTimeMillis() + 3600 * 1000L;
+        cache.put(URL, "org", "user", new AccessToken("token", expiresAt));
+
+        assertNull(cache.get(URL, "org", "other"));
+        assertNull(cache.get(URL, "other", "user"));
+        assertNull(cache.get("https://other.example.com/", "org", "user"));
+    }
+
+    @Test
+    public void dropsTokenExpiringWithinMargin() throws Exception {
+        final long expiresAt = System.currentTimeMillis() + TokenCache.EXPIRY_MARGIN / 2;
+        cache.put(URL, "org", "user", new AccessToken("token", expiresAt));
+
+        assertNull(cache.get(URL, "org", "user"));
+        assertEquals(0, directory.list().length);
+    }
+
+    @Test
+    public void doesNotStoreTokenWithoutExpiry() throws Exception {
+        cache.put(URL, "org", "user", new AccessToken("token", 0));
+
+        assertNull(cache.get(URL, "org", "user"));
+    }
+
+    @Test
+    public void invalidatesToken() throws Exception {
+        cache.put(URL, "org", "user", new AccessToken("token", System.currentTimeMillis() + 3600 * 1000L));
+        cache.invalidate(URL, "org", "user");
+
+        assertNull(cache.get(URL, "org", "user"));
+    }
+
+    @Test
+    public void ignoresCorruptEntry() throws Exception {
+        cache.put(URL, "org", "user", new AccessToken("token", System.currentTimeMillis() + 3600 * 1000L));
+        final File file = directory.listFiles()[0];
+        try (OutputStream output = new FileOutputStream(file)) {
+            output.write("accessToken=token\nexpiresAt=soon\n".getBytes("ISO-8859-1"));
+        }
+
+        assertNull(cache.get(URL, "org", "user"));
+        assertEquals(0, directory.list().length);
+    }
+}
@@ -0,0 +1,138 @@
+package com.appearnetworks.aiq;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class TokenRefresherTest {
+
+    private static final long REFRESH_LEAD = 1000;
+
+    private static final long RETRY_DELAY = 50;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicInteger refreshes = new AtomicInteger();
+
+    private final AtomicInteger failures = new AtomicInteger();
+
+    private volatile long lifetime = 3600 * 1000L;
+
+    private AIQSession session;
+
+    private TokenRefresher refresher;
+
+    @Before
+    public void setUp() throws Exception {
+        session = TestSessions.open(new URL("http://127.0.0.1:1/"), folder.getRoot());
+        session.setAccessToken(null);
+        refresher = createRefresher(REFRESH_LEAD);
+    }
+
+    @After
+    public void tearDown() {
+        refresher.close();
+    }
+
+    @Test
+    public void doesNotRefreshTokenIssuedAfterRegistration() throws Exception {
+        refresher.register(session);
+        // the first authentication of the tail only happens after the registration
+        session.setAccessToken(new AccessToken("first", System.currentTimeMillis() + 3600 * 1000L));
+
+        Thread.sleep(10 * RETRY_DELAY);
+        assertEquals(0, refreshes.get());
+        assertEquals("first", session.getAccessToken().getValue());
+    }
+
+    @Test
+    public void doesNotRefreshTokenWithoutExpiry() throws Exception {
+        session.setAccessToken(new AccessToken("forever", 0));
+        refresher.register(session);
+
+        Thread.sleep(10 * RETRY_DELAY);
+        assertEquals(0, refreshes.get());
+    }
+
+    @Test
+    public void refreshesTokenAheadOfExpiry() throws Exception {
+        session.setAccessToken(expiringToken());
+        refresher.register(session);
+
+        waitForRefreshes(1);
+        assertEquals("refreshed", session.getAccessToken().getValue());
+        Thread.sleep(5 * RETRY_DELAY);
+        assertEquals(1, refreshes.get());
+    }
+
+    @Test
+    public void retriesAfterUncheckedFailure() throws Exception {
+        failures.set(2);
+        session.setAccessToken(expiringToken());
+        refresher.register(session);
+
+        waitForRefreshes(1);
+        assertEquals("refreshed", session.getAccessToken().getValue());
+    }
+
+    @Test
+    public void refreshesShortLivedTokenHalfwayThroughItsLifetime() throws Exception {
+        refresher.close();
+        refresher = createRefresher(60 * 1000L);
+        // every token is due as soon as it is issued, as it lives shorter than the expiry margin and refresh lead, but
+        // not so short that the session drops it right away
+        lifetime = 60 * 1000L;
+        session.setAccessToken(new AccessToken("short", System.currentTimeMillis() + lifetime));
+        refresher.register(session);
+
+        waitForRefreshes(1);
+        Thread.sleep(10 * RETRY_DELAY);
+        assertEquals(1, refreshes.get());
+    }
+
+    private TokenRefresher createRefresher(final long refreshLead) {
+        return new TokenRefresher(new AbstractAIQMojo() {
+            @Override
+            public void execute() {
+            }
+
+            @Override
+            protected AccessToken refreshAccessToken(final AIQSession session)
+                    throws MojoExecutionException, MojoFailureException {
+                if (failures.getAndDecrement() > 0) {
+                    throw new IllegalStateException("unexpected");
+                }
+                refreshes.incrementAndGet();
+                final AccessToken token = new AccessToken("refreshed", System.currentTimeMillis() + lifetime);
+                session.setAccessToken(token);
+                return token;
+            }
+        }, refreshLead, RETRY_DELAY);
+    }
+
+    /**
+     * @return token to be refreshed shortly.
+     */
+    private static AccessToken expiringToken() {
+        return new AccessToken("expiring",
+                               System.currentTimeMillis() + TokenCache.EXPIRY_MARGIN + REFRESH_LEAD + RETRY_DELAY);
+    }
+
+    private void waitForRefreshes(final int count) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (refreshes.get() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, refreshes.get());
+    }
+}
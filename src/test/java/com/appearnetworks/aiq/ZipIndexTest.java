@@ -0,0 +1,88 @@
+package com.appearnetworks.aiq;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ZipIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void findsChangedAndRemovedEntries() throws IOException {
+        final ZipIndex base = ZipIndex.read(zip("base.zip",
+                                                "lib/a.jar", "a1",
+                                                "lib/b.jar", "b1",
+                                                "conf/c.xml", "c1"));
+        final ZipIndex target = ZipIndex.read(zip("target.zip",
+                                                  "lib/a.jar", "a1",
+                                                  "lib/b.jar", "b2",
+                                                  "lib/d.jar", "d1"));
+
+        assertEquals(Arrays.asList("lib/b.jar", "lib/d.jar"), target.changedSince(base));
+        assertEquals(Collections.singletonList("conf/c.xml"), target.removedSince(base));
+        assertEquals(3, target.size());
+    }
+
+    @Test
+    public void detectsChangeOfSameSize() throws IOException {
+        final ZipIndex base = ZipIndex.read(zip("base.zip", "a.txt", "abc"));
+        final ZipIndex target = ZipIndex.read(zip("target.zip", "a.txt", "abd"));
+
+        assertEquals(Collections.singletonList("a.txt"), target.changedSince(base));
+    }
+
+    @Test
+    public void ignoresDirectories() throws IOException {
+        final ZipIndex index = ZipIndex.read(zip("a.zip", "lib/", null, "lib/a.jar", "a"));
+
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void storesAndLoadsIndex() throws IOException {
+        final ZipIndex index = ZipIndex.read(zip("a.zip", "a.txt", "a", "b.txt", "b"));
+        final File file = new File(folder.getRoot(), "index/a.properties");
+        index.store(file);
+
+        final ZipIndex loaded = ZipIndex.load(file);
+        assertEquals(2, loaded.size());
+        assertTrue(index.changedSince(loaded).isEmpty());
+        assertTrue(index.removedSince(loaded).isEmpty());
+    }
+
+    @Test
+    public void loadsMissingIndexAsNull() throws IOException {
+        assertNull(ZipIndex.load(new File(folder.getRoot(), "missing.properties")));
+    }
+
+    /**
+     * Writes a zip archive of given names and contents, a null content standing for a directory entry.
+     */
+    private File zip(final String name, final String... entries) throws IOException {
+        final File file = new File(folder.getRoot(), name);
+        try (ZipOutputStream output = new ZipOutputStream(new FileOutputStream(file))) {
+            for (int i = 0; i < entries.length; i += 2) {
+                output.putNextEntry(new ZipEntry(entries[i]));
+                if (entries[i + 1] != null) {
+                    output.write(entries[i + 1].getBytes("UTF-8"));
+                }
+                output.closeEntry();
+            }
+        }
+        return file;
+    }
+}